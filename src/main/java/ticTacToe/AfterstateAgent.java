@@ -0,0 +1,180 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * An agent that learns the values of afterstates: the boards directly after its own move (as X), before the opponent replies,
+ * i.e. the games reached by {@link Game#simulateMove}. It acts greedily over the afterstates reachable from the current game.
+ *
+ * In Tic-Tac-Toe many (state, move) pairs lead to the same afterstate, e.g. playing the corner and then the centre, or the
+ * centre and then the corner. A {@link QLearningAgent} has to learn the value of each of these pairs separately, whereas
+ * this agent learns one value for the afterstate they share, so it needs a smaller table and learns from fewer episodes. The
+ * values are kept in an array indexed by the dense afterstate id from {@link StateIndex#afterstates()}, and the afterstate
+ * hashes are computed arithmetically, so choosing a move allocates nothing.
+ *
+ * Learning is TD(0) with a Q-learning style target: after moving from s into afterstate b, receiving reward r and reaching s',
+ * V(b) is moved towards r + discount * max_b' V(b'), over the afterstates b' reachable from s' (just r if s' is terminal).
+ * The step size is 1/n for the n-th update of an afterstate until that drops below the learning rate.
+ */
+public class AfterstateAgent extends Agent {
+
+	double alpha = 0.05;
+
+	int numOfEpisodes = 50000;
+
+	double discount = 0.9;
+
+	/**
+	 * the probability of exploring with a random move while training
+	 */
+	double epsilon = 0.1;
+
+	/**
+	 * the environment, containing the opponent, that this agent trains in
+	 */
+	TTTEnvironment env;
+
+	final StateIndex index = StateIndex.afterstates();
+
+	/**
+	 * the value of each afterstate, indexed by its id in {@link #index}
+	 */
+	double[] values = new double[index.size()];
+
+	/**
+	 * the number of times each afterstate has been updated
+	 */
+	int[] visits = new int[index.size()];
+
+	SplittableRandom random = RandomSource.newStream();
+
+	/**
+	 * Where training progress is reported to, see {@link TrainingMetrics}. Null if it isn't reported.
+	 */
+	TrainingMetrics metrics = TrainingMetrics.getDefault();
+
+	/**
+	 * Trains against a {@link RandomAgent} with the default parameters.
+	 */
+	public AfterstateAgent() {
+		this(new RandomAgent(), 0.05, 50000, 0.9);
+	}
+
+	/**
+	 * Construct an afterstate agent and train it against {@code opponent}.
+	 * 
+	 * @param opponent
+	 * @param learningRate
+	 * @param numEpisodes
+	 * @param discount
+	 */
+	public AfterstateAgent(Agent opponent, double learningRate, int numEpisodes, double discount) {
+		this.env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numOfEpisodes = numEpisodes;
+		this.discount = discount;
+		train();
+	}
+
+	/**
+	 * Plays {@link #numOfEpisodes} episodes in {@link #env}, exploring epsilon-greedily, and updates the afterstate values
+	 * after every move. Then extracts the greedy policy.
+	 */
+	public void train() {
+		for (int i = 0; i < numOfEpisodes; i++) {
+			while (!env.isTerminal()) {
+				Game g = env.getCurrentGameState();
+				int cell = (random.nextDouble() < epsilon) ? randomCell(g) : greedyCell(g);
+				int b = index.id(StateIndex.afterXMove(g.hashCode(), cell));
+
+				Outcome outcome;
+				try {
+					outcome = env.executeMove(Move.of('X', cell));
+				} catch (IllegalMoveException e) {
+					throw new IllegalStateException("Illegal move by the agent in cell " + cell, e);
+				}
+
+				double target = outcome.localReward;
+				if (!outcome.sPrime.isTerminal())
+					target += discount * values[index.id(StateIndex.afterXMove(outcome.sPrime.hashCode(),
+							greedyCell(outcome.sPrime)))];
+				// average the first 1/alpha targets, which gives rarely visited afterstates a sound estimate quickly, and
+				// then keep tracking them with the constant learning rate
+				double step = Math.max(alpha, 1.0 / ++visits[b]);
+				if (metrics != null)
+					metrics.recordTdError(target - values[b]);
+				values[b] += step * (target - values[b]);
+			}
+			if (metrics != null) {
+				metrics.recordEpisode(env.getCurrentGameState().state);
+				metrics.maybeReport();
+			}
+			env.reset();
+		}
+
+		this.policy = extractPolicy();
+		if (metrics != null)
+			metrics.report();
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @return the empty cell leading to the afterstate with the highest value
+	 */
+	int greedyCell(Game g) {
+		int hash = g.hashCode();
+		char[][] board = g.getBoard();
+		int best = -1;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ') {
+				double v = values[index.id(StateIndex.afterXMove(hash, c))];
+				if (v > max) {
+					max = v;
+					best = c;
+				}
+			}
+		return best;
+	}
+
+	/**
+	 * @return an empty cell chosen uniformly at random
+	 */
+	int randomCell(Game g) {
+		char[][] board = g.getBoard();
+		int empty = 0;
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ')
+				empty++;
+		int k = random.nextInt(empty);
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ' && k-- == 0)
+				return c;
+		throw new IllegalStateException("No empty cell");
+	}
+
+	/**
+	 * @return the greedy policy over the afterstate values, for every non-terminal game where it is X's turn
+	 */
+	public ArrayPolicy extractPolicy() {
+		ArrayPolicy p = new ArrayPolicy();
+		StateIndex states = StateIndex.xStates();
+		for (int id = 0; id < states.size(); id++) {
+			Game g = states.game(id);
+			if (g.isTerminal())
+				continue;
+			p.setMove(states.hash(id), greedyCell(g));
+		}
+		return p;
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @param m a legal move by X
+	 * @return the learned value of the afterstate of playing {@code m} in {@code g}
+	 */
+	public double getValue(Game g, Move m) {
+		return values[index.id(StateIndex.afterXMove(g.hashCode(), m.cell()))];
+	}
+
+}
@@ -1,12 +1,15 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
 
 public class Agent {
 	
 	/**
-	 * A Tic Tac Toe Policy
+	 * A Tic Tac Toe Policy. Volatile so that a policy trained on another thread can be swapped in with
+	 * {@link #setPolicy} while the agent is playing, see {@link BackgroundTrainingAgent}.
 	 */
-	protected Policy policy;
+	protected volatile Policy policy;
 	
 	protected char name; //'X' or 'O'
 	
@@ -36,6 +39,15 @@ public class Agent {
 		return policy.getMove(g);
 	}
 	
+	/**
+	 * Called by {@link Game#playOut} when a game this agent played in is over. Does nothing by default; agents that learn
+	 * from the games they play, such as {@link OnlineLearningAgent}, override it.
+	 * @param g the finished game
+	 */
+	public void gameOver(Game g)
+	{
+	}
+	
 	public char getName()
 	{
 		return name;
@@ -47,6 +59,16 @@ public class Agent {
 		
 	}
 	
+	/**
+	 * Replaces this agent's policy. The next call to {@link #getMove} uses the new policy; a policy must not be modified
+	 * once it has been set.
+	 * @param p
+	 */
+	public void setPolicy(Policy p)
+	{
+		this.policy=p;
+	}
+	
 	public String toString()
 	{
 		return ""+this.getName();
@@ -58,9 +80,22 @@ public class Agent {
 	}
 	
 	
+	/**
+	 * Loads this agent's stored policy, the {@link PolicyFile} named after its class, e.g. ValueIterationAgent.pol, directly
+	 * under the project folder (the working directory).
+	 * @return the policy, or null if there is no stored policy or it can't be read
+	 */
 	public Policy loadPolicyFromFile()
 	{
-		return null;
+		File file=new File(getClass().getSimpleName()+".pol");
+		if (!file.isFile())
+			return null;
+		try {
+			return PolicyFile.read(file).getPolicy();
+		} catch (IOException e) {
+			System.out.println("WARNING: cannot load policy from "+file+": "+e.getMessage());
+			return null;
+		}
 	}
 	
 	
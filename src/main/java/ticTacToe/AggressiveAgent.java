@@ -1,5 +1,7 @@
 package ticTacToe;
 
+import java.util.SplittableRandom;
+
 /**
  * An aggressive agent: if there is a winning move, this agent always plays it. If not, it plays randomly.
  * @author ae187
@@ -12,5 +14,10 @@ public class AggressiveAgent extends Agent {
 	{
 		super(new AggressivePolicy());
 	}
+	
+	public AggressiveAgent(SplittableRandom r)
+	{
+		super(new AggressivePolicy(r));
+	}
 
 }
@@ -0,0 +1,140 @@
+package ticTacToe;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A policy stored as one byte per state: the cell (3*x+y) to play in each state of {@link StateIndex#xStates()}, indexed by
+ * the state's dense id, or {@link #NONE} if the policy has no move there (e.g. terminal states). The whole policy takes a
+ * few KB, and {@link #getMove} is one hash computation and two array loads, returning the shared {@link Move} instances
+ * from {@link Move#of}, so it allocates nothing.
+ */
+public class ArrayPolicy extends Policy {
+
+	/**
+	 * the byte stored for states without a move
+	 */
+	public static final byte NONE = (byte) 0xFF;
+
+	final StateIndex index = StateIndex.xStates();
+
+	/**
+	 * the cell to play in each state, by id, or {@link #NONE}
+	 */
+	final byte[] moves;
+
+	/**
+	 * An empty policy, with no move in any state.
+	 */
+	public ArrayPolicy() {
+		this.moves = new byte[index.size()];
+		Arrays.fill(moves, NONE);
+	}
+
+	/**
+	 * A policy with the given moves, which are used directly, not copied.
+	 * 
+	 * @param moves the cell to play in each state of {@link StateIndex#xStates()} by id, or {@link #NONE}
+	 */
+	public ArrayPolicy(byte[] moves) {
+		if (moves.length != index.size())
+			throw new IllegalArgumentException("Expected " + index.size() + " moves, got " + moves.length);
+		this.moves = moves;
+	}
+
+	/**
+	 * Converts a map from games to moves, such as the map of a map based policy.
+	 * 
+	 * @param map
+	 */
+	public ArrayPolicy(Map<Game, Move> map) {
+		this();
+		putAll(map);
+	}
+
+	/**
+	 * Converts a deterministic policy: copies an array policy, converts the map of a map based policy, and otherwise
+	 * records the move {@code p} chooses in every non-terminal state.
+	 * 
+	 * @param p
+	 */
+	public ArrayPolicy(Policy p) {
+		this();
+		if (p instanceof ArrayPolicy)
+			System.arraycopy(((ArrayPolicy) p).moves, 0, moves, 0, moves.length);
+		else if (p.getClass() == Policy.class)
+			putAll(p.policy);
+		else
+			for (int id = 0; id < index.size(); id++) {
+				if (StateIndex.isTerminal(index.hash(id)))
+					continue;
+				Move m = p.getMove(index.game(id));
+				if (m != null)
+					moves[id] = (byte) m.cell();
+			}
+	}
+
+	private void putAll(Map<Game, Move> map) {
+		for (Map.Entry<Game, Move> e : map.entrySet()) {
+			int id = index.id(e.getKey());
+			if (id >= 0 && e.getValue() != null)
+				moves[id] = (byte) e.getValue().cell();
+		}
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		int id = index.id(g.hashCode());
+		if (id < 0 || moves[id] == NONE)
+			return null;
+		return Move.of(g.whoseTurn.getName(), moves[id]);
+	}
+
+	/**
+	 * Sets the move played in the state with hash {@code hash}.
+	 * 
+	 * @param hash a hash in {@link StateIndex#xStates()}
+	 * @param cell the cell to play, or -1 for none
+	 */
+	public void setMove(int hash, int cell) {
+		moves[index.id(hash)] = (cell < 0) ? NONE : (byte) cell;
+	}
+
+	/**
+	 * @param hash
+	 * @return the cell played in the state with hash {@code hash}, -1 if none
+	 */
+	public int getCell(int hash) {
+		int id = index.id(hash);
+		return (id < 0 || moves[id] == NONE) ? -1 : moves[id];
+	}
+
+	/**
+	 * @param other
+	 * @return the fraction of the states with a move in this policy where {@code other} has a different move, or none,
+	 *         e.g. the policy churn between two checkpoints of training
+	 */
+	public double disagreement(ArrayPolicy other) {
+		int n = 0;
+		int changed = 0;
+		for (int id = 0; id < moves.length; id++)
+			if (moves[id] != NONE) {
+				n++;
+				if (other.moves[id] != moves[id])
+					changed++;
+			}
+		return (n == 0) ? 0.0 : (double) changed / n;
+	}
+
+	/**
+	 * @return the number of states with a move
+	 */
+	public int size() {
+		int n = 0;
+		for (byte m : moves)
+			if (m != NONE)
+				n++;
+		return n;
+	}
+
+}
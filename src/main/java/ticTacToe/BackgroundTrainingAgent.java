@@ -0,0 +1,130 @@
+package ticTacToe;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An agent that can play straight away while it trains on a background thread. Until training has produced a policy, it plays
+ * by a fallback policy (by default a quiet {@link DefensivePolicy}); every improved policy is then swapped in atomically with
+ * {@link Agent#setPolicy}, so {@link Agent#getMove} never blocks or takes a lock, and a game in progress simply continues
+ * with the newer policy.
+ *
+ * Any agent that trains in its constructor, such as {@link ValueIterationAgent} or {@link PolicyIterationAgent}, can be
+ * trained this way by passing its constructor, e.g. {@code new BackgroundTrainingAgent(ValueIterationAgent::new)}; its policy
+ * is published once training is done. A {@link QLearningAgent} created with the untrained constructor can instead be trained
+ * in chunks of episodes, publishing the greedy policy after each chunk.
+ *
+ * The training thread is a daemon thread, so it does not keep the JVM alive.
+ */
+public class BackgroundTrainingAgent extends Agent {
+
+	/**
+	 * the thread training the agent
+	 */
+	final Thread trainer;
+
+	/**
+	 * counted down when training has finished, successfully or not
+	 */
+	final CountDownLatch finished = new CountDownLatch(1);
+
+	/**
+	 * the exception training failed with, null if it hasn't
+	 */
+	volatile Throwable failure = null;
+
+	/**
+	 * Trains the agent built by {@code training} in the background, playing defensively until it is done.
+	 * 
+	 * @param training builds and trains an agent, e.g. {@code ValueIterationAgent::new}
+	 */
+	public BackgroundTrainingAgent(Supplier<? extends Agent> training) {
+		this(quietDefensivePolicy(), training);
+	}
+
+	/**
+	 * Trains the agent built by {@code training} in the background, playing by {@code fallback} until it is done.
+	 * 
+	 * @param fallback the policy to play by until training is done
+	 * @param training builds and trains an agent, e.g. {@code ValueIterationAgent::new}
+	 */
+	public BackgroundTrainingAgent(Policy fallback, Supplier<? extends Agent> training) {
+		super(fallback);
+		this.trainer = start(() -> setPolicy(training.get().getPolicy()));
+	}
+
+	/**
+	 * Trains {@code learner} in the background in chunks of {@code chunk} episodes, publishing its greedy policy after each
+	 * chunk, and playing by {@code fallback} until the first chunk is done.
+	 * 
+	 * @param fallback the policy to play by until the first chunk is done
+	 * @param learner  an agent created with
+	 *                 {@link QLearningAgent#QLearningAgent(TTTEnvironment, double, int, double)}, i.e. not trained yet
+	 * @param chunk    the number of episodes between two published policies
+	 */
+	public BackgroundTrainingAgent(Policy fallback, QLearningAgent learner, int chunk) {
+		super(fallback);
+		if (chunk <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive");
+		this.trainer = start(() -> {
+			while (learner.episodesPlayed < learner.numOfEpisodes) {
+				int target = Math.min(learner.numOfEpisodes, learner.episodesPlayed + chunk);
+				learner.trainEpisodes(target - learner.episodesPlayed);
+				setPolicy(learner.getPolicy());
+				// the checkpoints stopped training early
+				if (learner.episodesPlayed < target)
+					break;
+			}
+		});
+	}
+
+	private Thread start(Runnable training) {
+		Thread t = new Thread(() -> {
+			try {
+				training.run();
+			} catch (RuntimeException | Error e) {
+				failure = e;
+				System.out.println("Background training failed, still playing by the last policy: " + e);
+			} finally {
+				finished.countDown();
+			}
+		}, "background-training");
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	static Policy quietDefensivePolicy() {
+		DefensivePolicy p = new DefensivePolicy();
+		p.setVerbose(false);
+		return p;
+	}
+
+	/**
+	 * @return true if training has finished, successfully or not
+	 */
+	public boolean isTrained() {
+		return finished.getCount() == 0;
+	}
+
+	/**
+	 * Waits for training to finish.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return true if training finished within the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTraining(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	/**
+	 * @return the exception training failed with, or null if it hasn't (yet)
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+}
@@ -0,0 +1,53 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes {@link TrainingMetrics} snapshots as CSV, with a header line before the first snapshot.
+ */
+public class CsvMetricsSink extends MetricsSink {
+
+	static final String HEADER = "name,timestamp_ms,elapsed_s,backups,backups_per_s,episodes,episodes_per_s,iterations,"
+			+ "mean_abs_td_error,policy_churn,win_rate,draw_rate,loss_rate,bytes_per_episode";
+
+	boolean headerWritten = false;
+
+	public CsvMetricsSink(Writer out) {
+		super(out);
+	}
+
+	/**
+	 * Appends to {@code file}.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public CsvMetricsSink(File file) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		headerWritten = file.length() > 0;
+	}
+
+	@Override
+	public synchronized void write(TrainingMetrics.Snapshot s) throws IOException {
+		if (!headerWritten) {
+			out.write(HEADER);
+			out.write('\n');
+			headerWritten = true;
+		}
+		super.write(s);
+	}
+
+	@Override
+	String format(TrainingMetrics.Snapshot s) {
+		return String.format(Locale.ROOT, "%s,%d,%.3f,%d,%.1f,%d,%.1f,%d,%.6f,%.6f,%.4f,%.4f,%.4f,%.1f", s.name,
+				s.timestampMillis, s.elapsedSeconds, s.backups, s.backupsPerSecond, s.episodes, s.episodesPerSecond,
+				s.iterations, s.meanAbsTdError, s.policyChurn, s.winRate, s.drawRate, s.lossRate, s.bytesPerEpisode);
+	}
+
+}
@@ -2,7 +2,7 @@ package ticTacToe;
 
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 /**
  * A defensive policy: if there is a move to block the opponent's X's or O's in a row, this policy finds it and returns it. Otherwise
  * returns random move.
@@ -11,6 +11,28 @@ import java.util.Random;
  */
 public class DefensivePolicy extends Policy {
 	
+	SplittableRandom r;
+	
+	/**
+	 * whether to print whether the move played is defensive or random
+	 */
+	boolean verbose=true;
+	
+	public DefensivePolicy()
+	{
+		this(RandomSource.newStream());
+	}
+	
+	public DefensivePolicy(SplittableRandom r)
+	{
+		this.r=r;
+	}
+	
+	public void setVerbose(boolean verbose)
+	{
+		this.verbose=verbose;
+	}
+	
 public Move getMove(Game g) {
 		
 		
@@ -24,13 +46,14 @@ public Move getMove(Game g) {
 			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
 			{
 				Move newMove=new Move(m.who.getName()=='X'?'O':'X', m.x,m.y);
-				System.out.println("Playing defensive move");
+				if (verbose)
+					System.out.println("Playing defensive move");
 				return newMove;
 			}
 		}
 		
-		Random r=new Random();
-		System.out.println("Playing random move");
+		if (verbose)
+			System.out.println("Playing random move");
 		Move randomMove=moves.get(r.nextInt(moves.size()));
 		Move myMove=new Move(randomMove.who.getName()=='X'?'O':'X', randomMove.x,randomMove.y);
 		
@@ -0,0 +1,56 @@
+package ticTacToe;
+
+/**
+ * Double Q-learning (van Hasselt 2010). Two q-tables, A and B, are learned. After every move one of them, chosen at random,
+ * is updated using the other one to evaluate its own greedy move in s': e.g. Q_A(s,a) is moved towards
+ * r + discount * Q_B(s', argmax_a' Q_A(s',a')). This removes the overestimation bias of taking the max over noisy estimates.
+ *
+ * The agent's own q-table holds the mean of A and B, which is what it explores with and what its policy is extracted from.
+ */
+public class DoubleQRule extends UpdateRule {
+
+	QTable a;
+	QTable b;
+
+	@Override
+	void beginTraining(QLearningAgent agent) {
+		a = agent.qTable.deepCopy();
+		b = agent.qTable.deepCopy();
+	}
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		boolean updateA = agent.random.nextBoolean();
+		QTable learn = updateA ? a : b;
+		QTable evaluate = updateA ? b : a;
+
+		double future = 0.0;
+		if (!o.sPrime.isTerminal())
+			future = evaluate.getQValue(o.sPrime, greedyMove(learn, o.sPrime));
+
+		double tdError = moveTowards(learn, agent.alpha, o.s, o.move, o.localReward + agent.discount * future);
+		agent.qTable.addQValue(o.s, o.move, (a.getQValue(o.s, o.move) + b.getQValue(o.s, o.move)) / 2);
+		return tdError;
+	}
+
+	/**
+	 * @return the available move with the highest q-value in {@code g} according to {@code table}
+	 */
+	static Move greedyMove(QTable table, Game g) {
+		Move best = null;
+		double max = Double.NEGATIVE_INFINITY;
+		char[][] board = g.getBoard();
+		char who = g.whoseTurn.getName();
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ') {
+				Move m = Move.of(who, c);
+				double q = table.getQValue(g, m);
+				if (q > max) {
+					max = q;
+					best = m;
+				}
+			}
+		return best;
+	}
+
+}
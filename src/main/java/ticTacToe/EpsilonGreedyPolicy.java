@@ -1,13 +1,360 @@
 package ticTacToe;
 
+import java.util.SplittableRandom;
+
 /**
- * to do for next year
+ * An exploration policy over a {@link QTable}, as used by learning agents such as {@link QLearningAgent} while they train.
+ *
+ * In epsilon-greedy mode, with probability epsilon the policy explores, i.e. plays a random available move, and with
+ * probability 1-epsilon it exploits, i.e. plays the move with the highest q-value (ties are broken randomly). In Boltzmann mode
+ * it plays each available move m with probability proportional to exp(Q(g,m)/temperature), using a precomputed table of
+ * exponentials.
+ *
+ * The exploration parameter (epsilon, or the temperature) decays from {@link #start} to {@link #end} according to a
+ * {@link Schedule}: per episode (call {@link #endEpisode()} at the end of each one), or per state, according to how often the
+ * state has been visited.
+ *
+ * Choosing a move allocates nothing: moves are the shared instances from {@link Move#of}, and all scratch space is
+ * preallocated. This also means an instance must only be used by one thread at a time.
+ *
  * @author ae187
  *
  */
 public class EpsilonGreedyPolicy extends Policy {
-	
-	
-	
+
+	/**
+	 * How the exploration parameter decays
+	 */
+	public enum Schedule {
+		/**
+		 * always {@link EpsilonGreedyPolicy#start}
+		 */
+		CONSTANT,
+		/**
+		 * from start to end linearly over {@link EpsilonGreedyPolicy#decay} episodes, then end
+		 */
+		LINEAR,
+		/**
+		 * end + (start - end) * exp(-episode / {@link EpsilonGreedyPolicy#decay})
+		 */
+		EXPONENTIAL,
+		/**
+		 * per state: max(end, start * decay / (decay + n)) where n is the number of times the state has been visited
+		 */
+		VISIT_COUNT
+	}
+
+	/**
+	 * The exponentials used in Boltzmann mode are looked up for arguments in [-{@link #EXP_RANGE}, 0]; below that they are
+	 * taken to be 0.
+	 */
+	static final double EXP_RANGE = 20.0;
+
+	/**
+	 * the number of table entries per unit of the argument
+	 */
+	static final int EXP_RESOLUTION = 256;
+
+	/**
+	 * EXP_TABLE[i] = exp(-i / EXP_RESOLUTION)
+	 */
+	static final double[] EXP_TABLE = new double[(int) (EXP_RANGE * EXP_RESOLUTION) + 1];
+
+	static {
+		for (int i = 0; i < EXP_TABLE.length; i++)
+			EXP_TABLE[i] = Math.exp(-(double) i / EXP_RESOLUTION);
+	}
+
+	/**
+	 * the q-table this policy explores over
+	 */
+	QTable qTable;
+
+	Schedule schedule = Schedule.CONSTANT;
+
+	/**
+	 * true for Boltzmann exploration, false for epsilon-greedy
+	 */
+	boolean boltzmann = false;
+
+	/**
+	 * the initial value of epsilon (or the temperature)
+	 */
+	double start = 0.1;
+
+	/**
+	 * the final value of epsilon (or the temperature)
+	 */
+	double end = 0.1;
+
+	/**
+	 * The decay parameter: the number of episodes for {@link Schedule#LINEAR}, the time constant in episodes for
+	 * {@link Schedule#EXPONENTIAL}, and the number of visits at which epsilon is halved for {@link Schedule#VISIT_COUNT}.
+	 */
+	double decay = 1.0;
+
+	/**
+	 * the number of episodes played so far
+	 */
+	int episode = 0;
+
+	/**
+	 * the value of the episode-based schedules for the current episode
+	 */
+	double current;
+
+	/**
+	 * how many times a move was chosen in each state, indexed by {@link Game#hashCode}. Only used by
+	 * {@link Schedule#VISIT_COUNT}.
+	 */
+	int[] visits;
+
+	SplittableRandom random;
+
+	/**
+	 * scratch space: the available cells, and their weights in Boltzmann mode
+	 */
+	private final int[] cells = new int[9];
+	private final double[] weights = new double[9];
+
+	/**
+	 * Constant epsilon-greedy exploration over {@code qTable}.
+	 *
+	 * @param qTable
+	 * @param epsilon
+	 */
+	public EpsilonGreedyPolicy(QTable qTable, double epsilon) {
+		this(qTable, Schedule.CONSTANT, epsilon, epsilon, 1.0, false);
+	}
+
+	/**
+	 *
+	 * @param qTable    the q-table to explore over
+	 * @param schedule  how the exploration parameter decays
+	 * @param start     the initial epsilon (or temperature)
+	 * @param end       the final epsilon (or temperature)
+	 * @param decay     the decay parameter of the schedule, see {@link #decay}
+	 * @param boltzmann true for Boltzmann exploration where start and end are temperatures, false for epsilon-greedy
+	 */
+	public EpsilonGreedyPolicy(QTable qTable, Schedule schedule, double start, double end, double decay,
+			boolean boltzmann) {
+		this(qTable, schedule, start, end, decay, boltzmann, RandomSource.newStream());
+	}
+
+	/**
+	 * As above, drawing from the random stream {@code random}.
+	 */
+	public EpsilonGreedyPolicy(QTable qTable, Schedule schedule, double start, double end, double decay,
+			boolean boltzmann, SplittableRandom random) {
+		if (decay <= 0)
+			throw new IllegalArgumentException("The decay parameter must be positive");
+		if (boltzmann && Math.min(start, end) <= 0)
+			throw new IllegalArgumentException("Temperatures must be positive");
+		this.qTable = qTable;
+		this.schedule = schedule;
+		this.start = start;
+		this.end = end;
+		this.decay = decay;
+		this.boltzmann = boltzmann;
+		this.random = random;
+		if (schedule == Schedule.VISIT_COUNT)
+			this.visits = new int[59049];
+		setEpisode(0);
+	}
+
+	public void setQTable(QTable qTable) {
+		this.qTable = qTable;
+	}
+
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * Sets the number of episodes played so far, e.g. when resuming training.
+	 *
+	 * @param episode
+	 */
+	public void setEpisode(int episode) {
+		this.episode = episode;
+		switch (schedule) {
+		case LINEAR:
+			current = (episode >= decay) ? end : start + (end - start) * episode / decay;
+			break;
+		case EXPONENTIAL:
+			current = end + (start - end) * Math.exp(-episode / decay);
+			break;
+		default:
+			current = start;
+			break;
+		}
+	}
+
+	/**
+	 * Call this at the end of every episode.
+	 */
+	public void endEpisode() {
+		setEpisode(episode + 1);
+	}
+
+	/**
+	 * @param g
+	 * @return the current value of epsilon (or the temperature) in game {@code g}
+	 */
+	public double getEpsilon(Game g) {
+		if (schedule != Schedule.VISIT_COUNT)
+			return current;
+		return Math.max(end, start * decay / (decay + visits[g.hashCode()]));
+	}
+
+	/**
+	 * Chooses a move for the player whose turn it is in {@code g}, exploring as described above.
+	 *
+	 * @return the chosen move, or null if there are no moves available.
+	 */
+	@Override
+	public Move getMove(Game g) {
+		int n = availableCells(g);
+		if (n == 0)
+			return null;
+
+		char who = g.whoseTurn.getName();
+		double epsilon = getEpsilon(g);
+		if (visits != null)
+			visits[g.hashCode()]++;
+
+		int cell;
+		if (boltzmann) {
+			double total = boltzmannWeights(g, who, n, epsilon);
+			double u = random.nextDouble() * total;
+			int k = 0;
+			while (k < n - 1 && u >= weights[k]) {
+				u -= weights[k];
+				k++;
+			}
+			cell = cells[k];
+		} else if (random.nextDouble() < epsilon)
+			cell = cells[random.nextInt(n)];
+		else
+			cell = greedyCell(g, who, n);
+
+		return Move.of(who, cell);
+	}
+
+	/**
+	 * Writes the probability of each move being chosen by {@link #getMove} in game {@code g} into {@code probabilities},
+	 * indexed by cell ({@code 3*x+y}). Unavailable cells get probability 0. Used, e.g., for the expected value of the next
+	 * state under this policy. Ties between greedy moves share the greedy probability.
+	 *
+	 * @param g
+	 * @param probabilities output, of length 9
+	 * @return the number of available moves
+	 */
+	public int getProbabilities(Game g, double[] probabilities) {
+		for (int c = 0; c < 9; c++)
+			probabilities[c] = 0.0;
+		int n = availableCells(g);
+		if (n == 0)
+			return 0;
+
+		char who = g.whoseTurn.getName();
+		double epsilon = getEpsilon(g);
+		if (boltzmann) {
+			double total = boltzmannWeights(g, who, n, epsilon);
+			for (int k = 0; k < n; k++)
+				probabilities[cells[k]] = weights[k] / total;
+			return n;
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+		int ties = 0;
+		for (int k = 0; k < n; k++) {
+			double q = qValue(g, who, cells[k]);
+			if (q > max) {
+				max = q;
+				ties = 1;
+			} else if (q == max)
+				ties++;
+		}
+		for (int k = 0; k < n; k++) {
+			probabilities[cells[k]] = epsilon / n;
+			if (qValue(g, who, cells[k]) == max)
+				probabilities[cells[k]] += (1.0 - epsilon) / ties;
+		}
+		return n;
+	}
+
+	/**
+	 * fills {@link #cells} with the empty cells of {@code g}
+	 *
+	 * @return their number, 0 if the game is over
+	 */
+	private int availableCells(Game g) {
+		if (g.isTerminal())
+			return 0;
+		int n = 0;
+		char[][] board = g.getBoard();
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ')
+				cells[n++] = c;
+		return n;
+	}
+
+	/**
+	 * @return the available cell with the highest q-value, ties broken uniformly at random
+	 */
+	private int greedyCell(Game g, char who, int n) {
+		double max = Double.NEGATIVE_INFINITY;
+		int best = cells[0];
+		int ties = 0;
+		for (int k = 0; k < n; k++) {
+			double q = qValue(g, who, cells[k]);
+			if (q > max) {
+				max = q;
+				best = cells[k];
+				ties = 1;
+			} else if (q == max && random.nextInt(++ties) == 0)
+				best = cells[k];
+		}
+		return best;
+	}
+
+	/**
+	 * fills {@link #weights} with the unnormalised Boltzmann weights of the available cells
+	 *
+	 * @return the sum of the weights
+	 */
+	private double boltzmannWeights(Game g, char who, int n, double temperature) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < n; k++) {
+			weights[k] = qValue(g, who, cells[k]);
+			max = Math.max(max, weights[k]);
+		}
+		double total = 0.0;
+		for (int k = 0; k < n; k++) {
+			weights[k] = exp((weights[k] - max) / temperature);
+			total += weights[k];
+		}
+		return total;
+	}
+
+	/**
+	 * @return the q-value of the move by {@code who} in {@code cell}, 0 if it is not in the table
+	 */
+	private double qValue(Game g, char who, int cell) {
+		Double q = qTable.getQValue(g, Move.of(who, cell));
+		return (q == null) ? 0.0 : q;
+	}
+
+	/**
+	 * @param x must be at most 0
+	 * @return exp(x), from the precomputed table
+	 */
+	static double exp(double x) {
+		double i = -x * EXP_RESOLUTION;
+		if (i >= EXP_TABLE.length - 1)
+			return 0.0;
+		return EXP_TABLE[(int) (i + 0.5)];
+	}
 
 }
@@ -0,0 +1,27 @@
+package ticTacToe;
+
+/**
+ * The Expected SARSA update: Q(s,a) is moved towards r + discount * sum_a' pi(a'|s') Q(s',a'), where pi is the agent's
+ * exploration policy. It learns the same values as {@link SarsaRule} but without the variance from sampling a'.
+ */
+public class ExpectedSarsaRule extends UpdateRule {
+
+	/**
+	 * scratch space for the move probabilities, indexed by cell
+	 */
+	private final double[] probabilities = new double[9];
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		double future = 0.0;
+		if (!o.sPrime.isTerminal()) {
+			agent.explorationPolicy.getProbabilities(o.sPrime, probabilities);
+			char who = o.sPrime.whoseTurn.getName();
+			for (int c = 0; c < 9; c++)
+				if (probabilities[c] > 0.0)
+					future += probabilities[c] * agent.qTable.getQValue(o.sPrime, Move.of(who, c));
+		}
+		return moveTowards(agent.qTable, agent.alpha, o.s, o.move, o.localReward + agent.discount * future);
+	}
+
+}
@@ -0,0 +1,289 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Learns a policy for X offline, from a log of recorded games (see {@link GameRecord}), instead of by interacting with a
+ * {@link TTTEnvironment}. It runs fitted Q-iteration: each sweep computes the target r + discount * max_a' Q(s',a') of every
+ * transition of X in the log under the current q-values, and the new q-value of every (state, move) pair is the average of
+ * its targets, i.e. the least squares fit of a table. Sweeps are repeated until no q-value changes by more than
+ * {@link #tolerance}.
+ *
+ * The log is streamed from disk in every sweep, never loaded into the heap. A sweep is split across threads by ranges of
+ * records; each thread sums the targets into its own arrays, indexed by {@link StateIndex#xStates()} id * 9 + cell, and
+ * the arrays are merged when all threads are done, so no locks are needed.
+ *
+ * Since the data decides which moves are ever tried, the maximum in the target, and the greedy policy, only consider moves
+ * that occur in the log; a state where no move occurs has value 0, and the policy plays its first empty cell there.
+ */
+public class FittedQIteration {
+
+	final StateIndex index = StateIndex.xStates();
+
+	double discount = 0.9;
+
+	double winReward = 10.0;
+	double loseReward = -50.0;
+	double livingReward = -1.0;
+	double drawReward = 0.0;
+
+	/**
+	 * the maximum number of sweeps
+	 */
+	int maxSweeps = 100;
+
+	/**
+	 * stop when no q-value changes by more than this in a sweep
+	 */
+	double tolerance = 1e-4;
+
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * the q-values, indexed by state id * 9 + cell
+	 */
+	double[] q;
+
+	/**
+	 * the number of transitions in the log for each (state, move), indexed like {@link #q}
+	 */
+	int[] counts;
+
+	/**
+	 * the number of records that do not describe a legal game, and were skipped
+	 */
+	long invalidRecords = 0;
+
+	/**
+	 * @param discount
+	 * @param maxSweeps the maximum number of sweeps
+	 * @param tolerance stop when no q-value changes by more than this in a sweep
+	 */
+	public FittedQIteration(double discount, int maxSweeps, double tolerance) {
+		this.discount = discount;
+		this.maxSweeps = maxSweeps;
+		this.tolerance = tolerance;
+	}
+
+	public void setRewards(double winReward, double loseReward, double livingReward, double drawReward) {
+		this.winReward = winReward;
+		this.loseReward = loseReward;
+		this.livingReward = livingReward;
+		this.drawReward = drawReward;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * the targets summed by one thread over its range of the log
+	 */
+	private static class Accumulator {
+		final double[] sums;
+		final int[] counts;
+		long invalid = 0;
+
+		Accumulator(int size) {
+			sums = new double[size];
+			counts = new int[size];
+		}
+	}
+
+	/**
+	 * Runs fitted Q-iteration over the games in {@code log}.
+	 * 
+	 * @param log a game log
+	 * @return the number of sweeps run
+	 * @throws IOException if the log can't be read
+	 */
+	public int fit(File log) throws IOException {
+		int size = index.size() * 9;
+		q = new double[size];
+		counts = new int[size];
+		double[] next = new double[size];
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		GameRecordReader reader = new GameRecordReader(log);
+		try {
+			int sweep = 0;
+			double change;
+			do {
+				List<Accumulator> parts = sweep(reader, pool);
+				// merge the threads' sums into the new q-values
+				Arrays.fill(next, 0.0);
+				Arrays.fill(counts, 0);
+				invalidRecords = 0;
+				for (Accumulator part : parts) {
+					for (int i = 0; i < size; i++) {
+						next[i] += part.sums[i];
+						counts[i] += part.counts[i];
+					}
+					invalidRecords += part.invalid;
+				}
+				change = 0.0;
+				for (int i = 0; i < size; i++) {
+					double v = (counts[i] == 0) ? 0.0 : next[i] / counts[i];
+					change = Math.max(change, Math.abs(v - q[i]));
+					q[i] = v;
+				}
+				sweep++;
+				System.out.println("Sweep " + sweep + ": max q-value change " + change);
+			} while (change > tolerance && sweep < maxSweeps);
+			if (invalidRecords > 0)
+				System.out.println("Skipped " + invalidRecords + " invalid game records");
+			return sweep;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} finally {
+			pool.shutdown();
+			reader.close();
+		}
+	}
+
+	/**
+	 * Sums the targets of all transitions under the current q-values, in parallel over ranges of the log.
+	 */
+	private List<Accumulator> sweep(GameRecordReader reader, ExecutorService pool)
+			throws IOException, InterruptedException {
+		long records = reader.size();
+		long per = (records + threads - 1) / threads;
+		List<Callable<Accumulator>> tasks = new ArrayList<Callable<Accumulator>>();
+		for (long from = 0; from < records; from += per) {
+			final GameRecordReader.Cursor cursor = reader.cursor(from, Math.min(records, from + per));
+			tasks.add(() -> accumulate(cursor));
+		}
+		List<Accumulator> parts = new ArrayList<Accumulator>();
+		try {
+			for (Future<Accumulator> f : pool.invokeAll(tasks))
+				parts.add(f.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		return parts;
+	}
+
+	private Accumulator accumulate(GameRecordReader.Cursor cursor) throws IOException {
+		Accumulator acc = new Accumulator(q.length);
+		GameRecord r = new GameRecord();
+		long[] transitions = new long[5];
+		while (cursor.next(r)) {
+			int n = r.transitions(transitions);
+			if (n < 0) {
+				acc.invalid++;
+				continue;
+			}
+			for (int k = 0; k < n; k++) {
+				long t = transitions[k];
+				int i = index.id(TransitionQueue.state(t)) * 9 + TransitionQueue.cell(t);
+				int kind = TransitionQueue.kind(t);
+				double target = reward(kind);
+				if (kind == TransitionQueue.ONGOING)
+					target += discount * value(index.id(TransitionQueue.nextState(t)));
+				acc.sums[i] += target;
+				acc.counts[i]++;
+			}
+		}
+		return acc;
+	}
+
+	private double reward(int kind) {
+		switch (kind) {
+		case TransitionQueue.WIN:
+			return winReward;
+		case TransitionQueue.LOSS:
+			return loseReward;
+		case TransitionQueue.DRAW:
+			return drawReward;
+		default:
+			return livingReward;
+		}
+	}
+
+	/**
+	 * @return the maximum q-value over the moves that occur in the log in the state with this id, 0 if there are none. In
+	 *         the first sweep, before any counts are known, this is 0.
+	 */
+	private double value(int id) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = id * 9; i < id * 9 + 9; i++)
+			if (counts[i] > 0 && q[i] > max)
+				max = q[i];
+		return (max == Double.NEGATIVE_INFINITY) ? 0.0 : max;
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @param m
+	 * @return the learned q-value, 0 if the move never occurs in the log in {@code g}
+	 */
+	public double getQValue(Game g, Move m) {
+		return q[index.id(g) * 9 + m.cell()];
+	}
+
+	/**
+	 * @return the greedy policy over the moves that occur in the log, for every non-terminal game where it is X's turn
+	 */
+	public ArrayPolicy extractPolicy() {
+		ArrayPolicy p = new ArrayPolicy();
+		for (int id = 0; id < index.size(); id++) {
+			int hash = index.hash(id);
+			if (StateIndex.isTerminal(hash))
+				continue;
+			int best = -1;
+			for (int c = 0; c < 9; c++) {
+				if (StateIndex.cell(hash, c) != 0)
+					continue;
+				int i = id * 9 + c;
+				if (best < 0 || (counts[i] > 0 && (counts[id * 9 + best] == 0 || q[i] > q[id * 9 + best])))
+					best = c;
+			}
+			p.setMove(hash, best);
+		}
+		return p;
+	}
+
+	/**
+	 * @return an agent playing the {@link #extractPolicy() extracted policy}, recorded in game logs as
+	 *         {@link GameRecord#FITTED_Q}
+	 */
+	public Agent extractAgent() {
+		return new FittedQAgent(extractPolicy());
+	}
+
+	/**
+	 * An agent playing a policy learned by fitted Q iteration, a type of its own so game logs can tell it apart.
+	 */
+	public static class FittedQAgent extends Agent {
+		public FittedQAgent(Policy p) {
+			super(p);
+		}
+	}
+
+	/**
+	 * Learns a policy from a game log. Usage: {@code FittedQIteration <log file> [discount]}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java -cp target/classes ticTacToe.FittedQIteration <log file> [discount]");
+			return;
+		}
+		double discount = (args.length > 1) ? Double.parseDouble(args[1]) : 0.9;
+		FittedQIteration fqi = new FittedQIteration(discount, 100, 1e-4);
+		fqi.fit(new File(args[0]));
+		System.out.println("Policy for " + fqi.extractPolicy().size() + " states");
+	}
+
+}
@@ -1,5 +1,7 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -50,6 +52,22 @@ public class Game {
 
 	Agent whoseTurn;
 
+	/**
+	 * The cells (3*x+y) of the moves played in this game so far, in order, packed into nibbles: move k is in bits 4k to
+	 * 4k+3. A game set up other than by playing moves from the empty board, e.g. by {@link #inverseHash}, has no history.
+	 */
+	long history = 0L;
+
+	/**
+	 * the number of moves in {@link #history}
+	 */
+	int historyLength = 0;
+
+	/**
+	 * If set, every game played out with {@link #playOut()} is appended to this log.
+	 */
+	static volatile GameRecordWriter recorder = null;
+
 	/**
 	 * new game with new X and O agents with null policies
 	 */
@@ -114,6 +132,8 @@ public class Game {
 		this.x = g.x;
 		this.o = g.o;
 		this.whoseTurn = g.whoseTurn;
+		this.history = g.history;
+		this.historyLength = g.historyLength;
 		// WARNING: Currently Agents are not deep copied
 
 		for (int i = 0; i < 3; i++)
@@ -437,6 +457,7 @@ public class Game {
 
 		Game copy = clone();
 		copy.board[m.x][m.y] = m.who.getName();
+		copy.addToHistory(m.cell());
 		if (m.who.getName() == 'X')
 			copy.whoseTurn = copy.o;
 		else if (m.who.getName() == 'O')
@@ -466,6 +487,7 @@ public class Game {
 			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not empty");
 
 		board[m.x][m.y] = m.who.getName();
+		addToHistory(m.cell());
 		if (whoseTurn.getName() == 'X')
 			whoseTurn = o;
 		else if (m.who.getName() == 'O')
@@ -491,6 +513,37 @@ public class Game {
 
 	}
 
+	private void addToHistory(int cell) {
+		if (historyLength < 9)
+			history |= (long) cell << (4 * historyLength++);
+	}
+
+	/**
+	 * @return the number of moves played in this game, as recorded in its history
+	 */
+	public int getHistoryLength() {
+		return historyLength;
+	}
+
+	/**
+	 * @param k
+	 * @return the cell (3*x+y) of the k-th move played in this game
+	 */
+	public int getHistoryMove(int k) {
+		if (k < 0 || k >= historyLength)
+			throw new IndexOutOfBoundsException("Move " + k + " of " + historyLength);
+		return (int) (history >>> (4 * k)) & 0xF;
+	}
+
+	/**
+	 * Sets the log that every game played out with {@link #playOut()} is appended to.
+	 * 
+	 * @param writer the log, or null to stop recording games
+	 */
+	public static void setRecorder(GameRecordWriter writer) {
+		recorder = writer;
+	}
+
 	/**
 	 * 
 	 * /** This method will play out the game to the end using moves from the X and
@@ -528,6 +581,18 @@ public class Game {
 		} else
 			System.out.println("It's a draw.");
 
+		this.x.gameOver(this);
+		this.o.gameOver(this);
+
+		GameRecordWriter r = recorder;
+		if (r != null) {
+			try {
+				r.append(this);
+			} catch (IOException e) {
+				System.out.println("WARNING: could not record the game: " + e.getMessage());
+			}
+		}
+
 	}
 
 	/**
@@ -555,27 +620,27 @@ public class Game {
 		// ' ' ->0
 		// 'X' ->1
 		// 'O' ->2
-		String s = "";
+		// computed arithmetically (Horner's scheme) rather than by building and parsing the base 3 string, since this is
+		// called on every lookup of a game in a map.
+		int h = 0;
 		for (int i = 0; i < 3; i++)
 			for (int j = 0; j < 3; j++) {
 				switch (board[i][j]) {
 				case 'X':
-					s += "1";
+					h = 3 * h + 1;
 					break;
 				case 'O':
-					s += "2";
+					h = 3 * h + 2;
 					break;
-				case ' ':
-					s += "0";
+				default:
+					h = 3 * h;
 					break;
 				}
 
 			}
 		// also encode whose turn it is. Either 1 or 2 (x or o)
 
-		s += (whoseTurn == x) ? "1" : "2";
-
-		return Integer.parseInt(s, 3);
+		return 3 * h + ((whoseTurn == x) ? 1 : 2);
 
 	}
 
@@ -651,9 +716,11 @@ public class Game {
 		return this.state != ONGOING;
 	}
 
-	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, random, agg, def, human>"
+	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, ql, as, mc, lin, nn, random, agg, def, human>"
 			+ "\n -o the O agent: -o <random, agg, def, human>"
-			+ "\n -s the agent that starts the game (x or o): -s <x or o>";
+			+ "\n -s the agent that starts the game (x or o): -s <x or o>"
+			+ "\n -seed the seed for all random choices, to make the run reproducible: -seed <number>"
+			+ "\n -log append the game to a binary game log: -log <file>";
 
 	// public static void main(String args[]) throws IllegalMoveException
 	// {
@@ -697,6 +764,21 @@ public class Game {
 			return;
 		}
 
+		// the seed has to be set before any of the agents are created
+		int seedIndex = args.indexOf("-seed");
+		if (seedIndex >= 0) {
+			if (seedIndex + 1 >= args.size()) {
+				System.out.println("Error: -seed should be followed by a number");
+				return;
+			}
+			try {
+				RandomSource.setSeed(Long.parseLong(args.get(seedIndex + 1)));
+			} catch (NumberFormatException e) {
+				System.out.println("Error: -seed should be followed by a number");
+				return;
+			}
+		}
+
 		Agent x = null;
 		Agent o = null;
 		String whoseTurn = null;
@@ -709,12 +791,12 @@ public class Game {
 			case "-x":
 				next = iter.next();
 				if (next == null || next.startsWith("-")) {
-					System.out.println("-x should be followed by the agent name, vi, pi, random, agg, def, or human");
+					System.out.println("-x should be followed by the agent name: pi, vi, ql, as, mc, lin, nn, random, agg, def or human");
 					return;
 				}
 				if (next.equals("vi")) {
 					System.out.println("x is vi agent.");
-					x = new ValueIterationAgent();
+					x = ResourcePolicy.agent();
 				} else if (next.equals("pi")) {
 					System.out.println("X is pi agent.");
 					x = new PolicyIterationAgent();
@@ -734,8 +816,20 @@ public class Game {
 				} else if (next.equals("ql")) {
 					System.out.println("X is q learning agent.");
 					x = new QLearningAgent();
+				} else if (next.equals("as")) {
+					System.out.println("X is afterstate learning agent.");
+					x = new AfterstateAgent();
+				} else if (next.equals("mc")) {
+					System.out.println("X is monte carlo agent.");
+					x = new MonteCarloAgent();
+				} else if (next.equals("lin")) {
+					System.out.println("X is linear q learning agent.");
+					x = new LinearQAgent();
+				} else if (next.equals("nn")) {
+					System.out.println("X is neural network agent.");
+					x = new NeuralValueAgent();
 				} else {
-					System.out.println("-x should be followed by the agent type: vi, pi, ql, random or human");
+					System.out.println("-x should be followed by the agent type: pi, vi, ql, as, mc, lin, nn, random, agg, def or human");
 					return;
 
 				}
@@ -790,6 +884,23 @@ public class Game {
 					return;
 				}
 				break;
+			case "-seed":
+				// already handled above
+				iter.next();
+				break;
+			case "-log":
+				next = iter.hasNext() ? iter.next() : null;
+				if (next == null) {
+					System.out.println("Error: -log should be followed by the file to append the game to");
+					return;
+				}
+				try {
+					setRecorder(new GameRecordWriter(new File(next)));
+				} catch (IOException e) {
+					System.out.println("Error: cannot open game log " + next + ": " + e.getMessage());
+					return;
+				}
+				break;
 
 			}
 
@@ -814,7 +925,18 @@ public class Game {
 		else
 			g = new Game(x, o, o);
 
-		g.playOut();
+		try {
+			g.playOut();
+		} finally {
+			if (recorder != null) {
+				try {
+					recorder.close();
+				} catch (IOException e) {
+					System.out.println("WARNING: could not close the game log: " + e.getMessage());
+				}
+				setRecorder(null);
+			}
+		}
 
 	}
 
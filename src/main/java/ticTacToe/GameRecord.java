@@ -0,0 +1,279 @@
+package ticTacToe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * One game in a binary game log, and the log format itself. A log file is a {@link #HEADER_SIZE} byte header (the magic
+ * number {@link #MAGIC}, the format {@link #VERSION} and the record size) followed by fixed-size records of
+ * {@link #RECORD_SIZE} bytes, so the n-th game can be found without reading the ones before it, and a file can be split into
+ * ranges of records to be read in parallel. All numbers are big-endian. A record is:
+ *
+ * <pre>
+ * byte  0      the X player, one of the player codes below
+ * byte  1      the O player
+ * byte  2      bit 0: 1 if O moved first; bits 1-2: the outcome ({@link Game#ONGOING}, {@link Game#X_WON}, {@link Game#O_WON}
+ *              or {@link Game#DRAW}); bits 4-7: the number of moves, 0 to 9
+ * bytes 3-7    the moves, the cell (3*x+y) of each packed into a nibble: move k is in byte 3+k/2, in the low nibble for even k
+ * bytes 8-15   the time the game ended, in milliseconds since the epoch
+ * </pre>
+ *
+ * Instances are mutable and meant to be reused: a reader decodes each record into the same instance.
+ */
+public class GameRecord {
+
+	public static final int MAGIC = 0x54545447; // "TTTG"
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 16;
+
+	/**
+	 * player codes
+	 */
+	public static final int OTHER = 0, HUMAN = 1, RANDOM = 2, AGGRESSIVE = 3, DEFENSIVE = 4, VALUE_ITERATION = 5,
+			POLICY_ITERATION = 6, Q_LEARNING = 7, AFTERSTATE = 8, SNAPSHOT = 9, ONLINE_LEARNING = 10, MONTE_CARLO = 11,
+			LINEAR_Q = 12, NEURAL_VALUE = 13, BACKGROUND = 14, FITTED_Q = 15;
+
+	static final String[] PLAYER_NAMES = { "other", "human", "random", "aggressive", "defensive", "vi", "pi", "ql", "as",
+			"snapshot", "online", "mc", "lin", "nn", "bg", "fqi" };
+
+	int xPlayer = OTHER;
+	int oPlayer = OTHER;
+
+	/**
+	 * 'X' or 'O'
+	 */
+	char starter = 'X';
+
+	int outcome = Game.ONGOING;
+
+	int moveCount = 0;
+
+	/**
+	 * the cell of each move, in the order played
+	 */
+	final byte[] moves = new byte[9];
+
+	long timestamp = 0L;
+
+	/**
+	 * @param a
+	 * @return the player code of {@code a}'s type
+	 */
+	public static int playerCode(Agent a) {
+		if (a instanceof HumanAgent)
+			return HUMAN;
+		if (a instanceof RandomAgent)
+			return RANDOM;
+		if (a instanceof AggressiveAgent)
+			return AGGRESSIVE;
+		if (a instanceof DefensiveAgent)
+			return DEFENSIVE;
+		if (a instanceof ValueIterationAgent)
+			return VALUE_ITERATION;
+		if (a instanceof PolicyIterationAgent)
+			return POLICY_ITERATION;
+		if (a instanceof QLearningAgent)
+			return Q_LEARNING;
+		if (a instanceof AfterstateAgent)
+			return AFTERSTATE;
+		if (a instanceof SnapshotAgent)
+			return SNAPSHOT;
+		if (a instanceof OnlineLearningAgent)
+			return ONLINE_LEARNING;
+		if (a instanceof MonteCarloAgent)
+			return MONTE_CARLO;
+		if (a instanceof LinearQAgent)
+			return LINEAR_Q;
+		if (a instanceof NeuralValueAgent)
+			return NEURAL_VALUE;
+		if (a instanceof BackgroundTrainingAgent)
+			return BACKGROUND;
+		if (a instanceof FittedQIteration.FittedQAgent)
+			return FITTED_Q;
+		return OTHER;
+	}
+
+	/**
+	 * @param code
+	 * @return the short name of a player code, as used on the command line, e.g. "ql"
+	 */
+	public static String playerName(int code) {
+		return (code >= 0 && code < PLAYER_NAMES.length) ? PLAYER_NAMES[code] : "other";
+	}
+
+	/**
+	 * Writes the log file header at the buffer's position.
+	 */
+	public static void writeHeader(ByteBuffer b) {
+		b.putInt(MAGIC);
+		b.putShort(VERSION);
+		b.putShort((short) RECORD_SIZE);
+		b.putLong(0L);
+	}
+
+	/**
+	 * Reads and checks the log file header at the buffer's position.
+	 * 
+	 * @throws IOException if it is not the header of a game log this version can read
+	 */
+	public static void checkHeader(ByteBuffer b) throws IOException {
+		if (b.remaining() < HEADER_SIZE || b.getInt() != MAGIC)
+			throw new IOException("Not a game log");
+		short version = b.getShort();
+		short size = b.getShort();
+		if (version != VERSION || size != RECORD_SIZE)
+			throw new IOException("Unsupported game log version " + version + " with records of " + size + " bytes");
+		b.getLong();
+	}
+
+	/**
+	 * Decodes the record at the buffer's position into this instance.
+	 */
+	public void read(ByteBuffer b) {
+		xPlayer = b.get() & 0xFF;
+		oPlayer = b.get() & 0xFF;
+		int flags = b.get() & 0xFF;
+		starter = ((flags & 1) == 0) ? 'X' : 'O';
+		outcome = (flags >> 1) & 3;
+		moveCount = Math.min(9, flags >> 4);
+		for (int k = 0; k < 10; k += 2) {
+			int packed = b.get() & 0xFF;
+			if (k < 9)
+				moves[k] = (byte) (packed & 0xF);
+			if (k + 1 < 9)
+				moves[k + 1] = (byte) (packed >> 4);
+		}
+		timestamp = b.getLong();
+	}
+
+	/**
+	 * Encodes this record at the buffer's position.
+	 */
+	public void write(ByteBuffer b) {
+		b.put((byte) xPlayer);
+		b.put((byte) oPlayer);
+		b.put((byte) ((starter == 'O' ? 1 : 0) | (outcome << 1) | (moveCount << 4)));
+		for (int k = 0; k < 10; k += 2) {
+			int low = (k < moveCount) ? moves[k] : 0;
+			int high = (k + 1 < moveCount) ? moves[k + 1] : 0;
+			b.put((byte) (low | (high << 4)));
+		}
+		b.putLong(timestamp);
+	}
+
+	/**
+	 * Sets this record to describe {@code g}, from its move history.
+	 * 
+	 * @param g
+	 * @param timestamp the time the game ended, in milliseconds since the epoch
+	 * @return false if {@code g} has no complete move history, e.g. because it was set up with {@link Game#inverseHash},
+	 *         in which case the record is left unchanged
+	 */
+	public boolean set(Game g, long timestamp) {
+		int n = g.getHistoryLength();
+		int pieces = 0;
+		for (int c = 0; c < 9; c++)
+			if (g.board[c / 3][c % 3] != ' ')
+				pieces++;
+		if (pieces != n)
+			return false;
+		xPlayer = playerCode(g.x);
+		oPlayer = playerCode(g.o);
+		// players alternate, so after an even number of moves the starter is to move again
+		char toMove = g.whoseTurn.getName();
+		starter = (n % 2 == 0) ? toMove : (toMove == 'X' ? 'O' : 'X');
+		outcome = g.getState();
+		moveCount = n;
+		for (int k = 0; k < n; k++)
+			moves[k] = (byte) g.getHistoryMove(k);
+		this.timestamp = timestamp;
+		return true;
+	}
+
+	/**
+	 * Replays this record's moves into a new game between two plain agents.
+	 * 
+	 * @return the game after the recorded moves
+	 * @throws IllegalMoveException if the record does not describe a legal game
+	 */
+	public Game toGame() throws IllegalMoveException {
+		Game g = new Game(starter);
+		char who = starter;
+		for (int k = 0; k < moveCount; k++) {
+			if (moves[k] > 8 || g.isTerminal())
+				throw new IllegalMoveException("Illegal move " + k + " in game record");
+			g.executeMove(Move.of(who, moves[k]));
+			who = (who == 'X') ? 'O' : 'X';
+		}
+		return g;
+	}
+
+	/**
+	 * Extracts the transitions of the player X from this game, each packed with {@link TransitionQueue#pack}: for every move
+	 * by X, the state X moved in, the cell, the kind of reward received and the next state where it is X's turn again (or
+	 * the final state). A game that is not over yields no transition for X's last move.
+	 * 
+	 * @param out receives the transitions, of length at least 5
+	 * @return the number of transitions, or -1 if the record does not describe a legal game
+	 */
+	public int transitions(long[] out) {
+		int hash = (starter == 'X') ? 1 : 2;
+		int n = 0;
+		int s = -1;
+		int a = -1;
+		for (int k = 0; k < moveCount; k++) {
+			int cell = moves[k];
+			if (cell > 8 || StateIndex.cell(hash, cell) != 0 || StateIndex.isTerminal(hash))
+				return -1;
+			if (hash % 3 == 1) {
+				// X's turn: complete X's previous transition, which ended here
+				if (s >= 0)
+					out[n++] = TransitionQueue.pack(s, a, TransitionQueue.ONGOING, hash);
+				s = hash;
+				a = cell;
+				hash = StateIndex.afterXMove(hash, cell);
+			} else
+				hash = StateIndex.afterOMove(hash, cell);
+		}
+		if (s >= 0 && outcome != Game.ONGOING) {
+			int kind = (outcome == Game.X_WON) ? TransitionQueue.WIN
+					: (outcome == Game.O_WON) ? TransitionQueue.LOSS : TransitionQueue.DRAW;
+			out[n++] = TransitionQueue.pack(s, a, kind, hash);
+		}
+		return n;
+	}
+
+	public int getXPlayer() {
+		return xPlayer;
+	}
+
+	public int getOPlayer() {
+		return oPlayer;
+	}
+
+	public char getStarter() {
+		return starter;
+	}
+
+	public int getOutcome() {
+		return outcome;
+	}
+
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * @param k
+	 * @return the cell (3*x+y) of the k-th move
+	 */
+	public int getMove(int k) {
+		return moves[k];
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+}
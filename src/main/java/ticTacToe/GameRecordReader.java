@@ -0,0 +1,131 @@
+package ticTacToe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the records of a binary game log (see {@link GameRecord} for the format). The file is memory-mapped a chunk of
+ * {@link #CHUNK_RECORDS} records at a time, so logs of tens of millions of games are read at the speed of the page cache
+ * without ever being loaded into the heap, and nothing is allocated per record.
+ *
+ * Since records have a fixed size, a log can be split into ranges that are read by several threads at once: each thread
+ * opens its own {@link Cursor} with {@link #cursor(long, long)}. The reader itself can be shared between threads.
+ */
+public class GameRecordReader implements Closeable {
+
+	/**
+	 * the number of records mapped at a time, 64MB
+	 */
+	static final int CHUNK_RECORDS = 1 << 22;
+
+	final FileChannel channel;
+
+	/**
+	 * the number of complete records in the file
+	 */
+	final long records;
+
+	/**
+	 * Opens a game log and checks its header.
+	 * 
+	 * @param file
+	 * @throws IOException if the file can't be read or is not a game log
+	 */
+	public GameRecordReader(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+				;
+			header.flip();
+			GameRecord.checkHeader(header);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		// a partly written last record, e.g. after a crash, is ignored
+		this.records = (channel.size() - GameRecord.HEADER_SIZE) / GameRecord.RECORD_SIZE;
+	}
+
+	/**
+	 * @return the number of records in the log
+	 */
+	public long size() {
+		return records;
+	}
+
+	/**
+	 * @return a cursor over all records
+	 */
+	public Cursor cursor() {
+		return new Cursor(0, records);
+	}
+
+	/**
+	 * @param from the first record, inclusive
+	 * @param to   the last record, exclusive
+	 * @return a cursor over the records in [from, to)
+	 */
+	public Cursor cursor(long from, long to) {
+		if (from < 0 || to > records || from > to)
+			throw new IndexOutOfBoundsException("Records [" + from + ", " + to + ") of " + records);
+		return new Cursor(from, to);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Iterates over a range of records, mapping one chunk at a time. A cursor must only be used by one thread.
+	 */
+	public class Cursor {
+
+		/**
+		 * the next record to read, and the end of the range
+		 */
+		long next;
+		final long end;
+
+		MappedByteBuffer chunk = null;
+
+		private Cursor(long from, long to) {
+			this.next = from;
+			this.end = to;
+		}
+
+		/**
+		 * Decodes the next record into {@code r}.
+		 * 
+		 * @param r
+		 * @return false if there are no more records in the range
+		 * @throws IOException
+		 */
+		public boolean next(GameRecord r) throws IOException {
+			if (next >= end)
+				return false;
+			if (chunk == null || !chunk.hasRemaining()) {
+				long n = Math.min(CHUNK_RECORDS, end - next);
+				chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+						GameRecord.HEADER_SIZE + next * GameRecord.RECORD_SIZE, n * GameRecord.RECORD_SIZE);
+			}
+			r.read(chunk);
+			next++;
+			return true;
+		}
+
+		/**
+		 * @return the index of the record {@link #next} decodes
+		 */
+		public long position() {
+			return next;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package ticTacToe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends games to a binary game log (see {@link GameRecord} for the format), creating the log if it doesn't exist.
+ * Records are encoded into a direct buffer of a batch of records, which is written to the file in one system call
+ * when it is full, so appending a game is a few stores into the buffer and allocates nothing. Call {@link #flush()} to
+ * write the buffered games out, e.g. at the end of a batch of simulations, and {@link #close()} when done.
+ *
+ * The methods are synchronized, so the games of several threads can be recorded in the same log; for very high rates,
+ * give each thread its own writer and log instead.
+ */
+public class GameRecordWriter implements Closeable {
+
+	/**
+	 * the default number of records buffered between writes, 64KB
+	 */
+	public static final int DEFAULT_BATCH = 4096;
+
+	final FileChannel channel;
+
+	final ByteBuffer buffer;
+
+	/**
+	 * reused for every game appended
+	 */
+	private final GameRecord record = new GameRecord();
+
+	/**
+	 * the number of games appended, and the number of games that couldn't be recorded because they had no history
+	 */
+	long written = 0;
+	long skipped = 0;
+
+	public GameRecordWriter(File file) throws IOException {
+		this(file, DEFAULT_BATCH);
+	}
+
+	/**
+	 * Opens a game log for appending. If it is empty, the header is written first; otherwise the header is checked, and a
+	 * partly written last record, e.g. after a crash, is cut off.
+	 *
+	 * @param file
+	 * @param batchSize the number of records buffered between writes
+	 * @throws IOException if the file can't be opened, or is not a game log
+	 */
+	public GameRecordWriter(File file, int batchSize) throws IOException {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("The batch size must be positive");
+		this.buffer = ByteBuffer.allocateDirect(batchSize * GameRecord.RECORD_SIZE);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_SIZE);
+			if (size == 0) {
+				GameRecord.writeHeader(header);
+				header.flip();
+				while (header.hasRemaining())
+					channel.write(header, header.position());
+				size = GameRecord.HEADER_SIZE;
+			} else {
+				while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+					;
+				header.flip();
+				GameRecord.checkHeader(header);
+				long complete = GameRecord.HEADER_SIZE
+						+ (size - GameRecord.HEADER_SIZE) / GameRecord.RECORD_SIZE * GameRecord.RECORD_SIZE;
+				if (complete != size) {
+					channel.truncate(complete);
+					size = complete;
+				}
+			}
+			channel.position(size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @param r
+	 * @throws IOException
+	 */
+	public synchronized void append(GameRecord r) throws IOException {
+		if (!buffer.hasRemaining())
+			flushBuffer();
+		r.write(buffer);
+		written++;
+	}
+
+	/**
+	 * Appends a game, described by its move history, with the current time.
+	 *
+	 * @param g
+	 * @return false if the game has no complete move history and so wasn't recorded
+	 * @throws IOException
+	 */
+	public synchronized boolean append(Game g) throws IOException {
+		if (!record.set(g, System.currentTimeMillis())) {
+			skipped++;
+			return false;
+		}
+		append(record);
+		return true;
+	}
+
+	/**
+	 * Writes the buffered records to the file.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		flushBuffer();
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * @return the number of games appended so far
+	 */
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	/**
+	 * @return the number of games that couldn't be appended because they had no move history
+	 */
+	public synchronized long getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Writes the buffered records and closes the log.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		try {
+			flushBuffer();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
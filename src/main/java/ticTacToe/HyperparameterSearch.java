@@ -0,0 +1,250 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for good {@link QLearningAgent} hyperparameters (learning rate, discount and exploration epsilon) by successive
+ * halving: all configurations are trained for a small number of episodes and evaluated, the best {@code 1/eta} of them
+ * (rounded up) are trained {@code eta} times as long and evaluated again, and so on, so most of the training time is spent on the promising
+ * configurations. Hyperband amounts to running several such searches with different numbers of configurations and minimum
+ * episodes.
+ *
+ * The configurations of a rung are trained and evaluated in parallel, each by one task of a thread pool. Training is
+ * incremental ({@link QLearningAgent#trainEpisodes}), so a configuration that survives a rung continues from where it was.
+ * A configuration is scored by the greedy policy's average result (1 for a win, 0.5 for a draw, 0 for a loss) in games as X
+ * against fixed opponents: random, defensive and aggressive. The evaluation games are played without printing anything.
+ */
+public class HyperparameterSearch {
+
+	/**
+	 * A point in the search space
+	 */
+	public static class Config {
+		public final double alpha;
+		public final double discount;
+		public final double epsilon;
+
+		public Config(double alpha, double discount, double epsilon) {
+			this.alpha = alpha;
+			this.discount = discount;
+			this.epsilon = epsilon;
+		}
+
+		public String toString() {
+			return String.format("alpha=%.4f, discount=%.3f, epsilon=%.4f", alpha, discount, epsilon);
+		}
+	}
+
+	/**
+	 * a configuration being trained, with its agent and latest score
+	 */
+	static class Trial {
+		final Config config;
+		final QLearningAgent agent;
+		final SplittableRandom random;
+		double score = 0.0;
+
+		Trial(Config config) {
+			this.config = config;
+			this.agent = new QLearningAgent(new TTTEnvironment(), config.alpha, Integer.MAX_VALUE, config.discount);
+			this.agent.setExplorationPolicy(new EpsilonGreedyPolicy(agent.qTable, EpsilonGreedyPolicy.Schedule.CONSTANT,
+					config.epsilon, config.epsilon, 1.0, false, agent.random));
+			this.random = RandomSource.newStream();
+		}
+	}
+
+	final List<Config> configs;
+
+	/**
+	 * the number of episodes every configuration is trained for in the first rung
+	 */
+	int minEpisodes = 1000;
+
+	/**
+	 * the reduction factor: each rung keeps the best ceil(n/eta) of its n configurations and trains them eta times as long
+	 */
+	int eta = 3;
+
+	/**
+	 * the number of rungs
+	 */
+	int rungs = 4;
+
+	/**
+	 * the number of evaluation games against each opponent
+	 */
+	int evaluationGames = 100;
+
+	/**
+	 * the number of configurations trained at the same time
+	 */
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * the best trial of the last search
+	 */
+	Trial best = null;
+
+	/**
+	 * @param configs     the configurations to search over
+	 * @param minEpisodes the number of episodes every configuration is trained for in the first rung
+	 * @param eta         the reduction factor, at least 2
+	 * @param rungs       the number of rungs
+	 */
+	public HyperparameterSearch(List<Config> configs, int minEpisodes, int eta, int rungs) {
+		if (configs.isEmpty())
+			throw new IllegalArgumentException("No configurations to search");
+		if (minEpisodes <= 0 || eta < 2 || rungs <= 0)
+			throw new IllegalArgumentException("Invalid successive halving parameters");
+		this.configs = configs;
+		this.minEpisodes = minEpisodes;
+		this.eta = eta;
+		this.rungs = rungs;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setEvaluationGames(int evaluationGames) {
+		this.evaluationGames = evaluationGames;
+	}
+
+	/**
+	 * Samples {@code n} random configurations: the learning rate and epsilon log-uniformly from [0.01, 0.5] and
+	 * [0.01, 0.3], the discount uniformly from [0.8, 0.99].
+	 * 
+	 * @param n
+	 * @param r
+	 * @return the configurations
+	 */
+	public static List<Config> sample(int n, SplittableRandom r) {
+		List<Config> configs = new ArrayList<Config>();
+		for (int i = 0; i < n; i++)
+			configs.add(new Config(logUniform(0.01, 0.5, r), 0.8 + 0.19 * r.nextDouble(), logUniform(0.01, 0.3, r)));
+		return configs;
+	}
+
+	private static double logUniform(double min, double max, SplittableRandom r) {
+		return Math.exp(Math.log(min) + (Math.log(max) - Math.log(min)) * r.nextDouble());
+	}
+
+	/**
+	 * Runs the search.
+	 * 
+	 * @return the best configuration
+	 * @throws InterruptedException
+	 */
+	public Config run() throws InterruptedException {
+		List<Trial> trials = new ArrayList<Trial>();
+		for (Config c : configs)
+			trials.add(new Trial(c));
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			int episodes = minEpisodes;
+			for (int rung = 0; rung < rungs; rung++) {
+				final int budget = episodes;
+				List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for (final Trial t : trials)
+					tasks.add(() -> {
+						t.agent.trainEpisodes(budget - t.agent.episodesPlayed);
+						t.score = score(t);
+						return null;
+					});
+				for (Future<Void> f : pool.invokeAll(tasks))
+					f.get();
+
+				Collections.sort(trials, (a, b) -> Double.compare(b.score, a.score));
+				System.out.println("Rung " + rung + ": " + trials.size() + " configurations after " + budget + " episodes");
+				for (Trial t : trials)
+					System.out.println(String.format("  %.4f  %s", t.score, t.config));
+
+				if (rung < rungs - 1) {
+					trials = new ArrayList<Trial>(trials.subList(0, (trials.size() + eta - 1) / eta));
+					episodes *= eta;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Training a configuration failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		best = trials.get(0);
+		System.out.println("Best configuration: " + best.config + " with score " + best.score);
+		return best.config;
+	}
+
+	/**
+	 * @return the agent trained with the best configuration in the last search, or null if there was none
+	 */
+	public QLearningAgent getBestAgent() {
+		return (best == null) ? null : best.agent;
+	}
+
+	/**
+	 * Scores a trial once it has been trained for the episodes of its rung, from one of the threads of the pool.
+	 * 
+	 * @return the average result of its greedy policy against the fixed opponents, see {@link #evaluate}
+	 */
+	double score(Trial t) {
+		return evaluate(t.agent.getPolicy(), evaluationGames, t.random);
+	}
+
+	/**
+	 * Plays {@code games} games as X (and moving first) against each of the fixed opponents, without printing.
+	 * 
+	 * @param policy the policy to evaluate
+	 * @param games  the number of games against each opponent
+	 * @param r
+	 * @return the average result: 1 for a win, 0.5 for a draw and 0 for a loss
+	 */
+	static double evaluate(Policy policy, int games, SplittableRandom r) {
+		DefensivePolicy defensive = new DefensivePolicy(r.split());
+		defensive.setVerbose(false);
+		Policy[] opponents = { new RandomPolicy(r.split()), defensive, new AggressivePolicy(r.split()) };
+
+		Agent x = new Agent(policy);
+		double total = 0.0;
+		for (Policy opponent : opponents) {
+			Agent o = new Agent(opponent);
+			for (int i = 0; i < games; i++) {
+				Game g = new Game(x, o, x);
+				try {
+					while (!g.isTerminal())
+						g.executeMove(g.whoseTurn.getMove(g));
+				} catch (IllegalMoveException e) {
+					// an illegal move loses the game
+					continue;
+				}
+				if (g.getState() == Game.X_WON)
+					total += 1.0;
+				else if (g.getState() == Game.DRAW)
+					total += 0.5;
+			}
+		}
+		return total / (games * opponents.length);
+	}
+
+	/**
+	 * Searches over randomly sampled configurations. Usage: {@code HyperparameterSearch [configurations] [minEpisodes] [eta]
+	 * [rungs]}
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 27;
+		int minEpisodes = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		int eta = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+		int rungs = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+		new HyperparameterSearch(sample(n, RandomSource.newStream()), minEpisodes, eta, rungs).run();
+	}
+
+}
@@ -0,0 +1,48 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes {@link TrainingMetrics} snapshots as JSON lines: one JSON object per snapshot and line. Values that are not known
+ * (NaN) are written as null.
+ */
+public class JsonLinesMetricsSink extends MetricsSink {
+
+	public JsonLinesMetricsSink(Writer out) {
+		super(out);
+	}
+
+	/**
+	 * Appends to {@code file}.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public JsonLinesMetricsSink(File file) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	@Override
+	String format(TrainingMetrics.Snapshot s) {
+		return "{\"name\":\"" + s.name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"" + ",\"timestamp_ms\":"
+				+ s.timestampMillis + ",\"elapsed_s\":" + number(s.elapsedSeconds) + ",\"backups\":" + s.backups
+				+ ",\"backups_per_s\":" + number(s.backupsPerSecond) + ",\"episodes\":" + s.episodes
+				+ ",\"episodes_per_s\":" + number(s.episodesPerSecond) + ",\"iterations\":" + s.iterations
+				+ ",\"mean_abs_td_error\":" + number(s.meanAbsTdError) + ",\"policy_churn\":" + number(s.policyChurn)
+				+ ",\"win_rate\":" + number(s.winRate) + ",\"draw_rate\":" + number(s.drawRate) + ",\"loss_rate\":"
+				+ number(s.lossRate) + ",\"bytes_per_episode\":" + number(s.bytesPerEpisode) + "}";
+	}
+
+	static String number(double d) {
+		if (Double.isNaN(d) || Double.isInfinite(d))
+			return "null";
+		return String.format(Locale.ROOT, "%.6g", d);
+	}
+
+}
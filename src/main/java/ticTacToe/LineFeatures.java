@@ -0,0 +1,122 @@
+package ticTacToe;
+
+/**
+ * Features of a Tic-Tac-Toe board computed from its lines, for function approximation (see {@link LinearQAgent}). Rather
+ * than one entry per state, a board is described by a handful of numbers that carry over to boards never seen before: how
+ * many lines hold only X's (one, two or three of them), only O's, or both; how many forks (empty cells where a move would
+ * make two lines of two) each player has; and who holds the centre and the corners.
+ *
+ * Features are written in sparse form, as parallel arrays of feature indices and values of which only the first n (the
+ * non-zero ones) are used, so they can be dotted with a weight vector without allocating, e.g. with {@link #dot}. They are
+ * computed from the {@link Game#hashCode} alone.
+ */
+public final class LineFeatures {
+
+	/**
+	 * feature indices
+	 */
+	public static final int BIAS = 0, X_ONE = 1, X_TWO = 2, X_THREE = 3, O_ONE = 4, O_TWO = 5, O_THREE = 6, BLOCKED = 7,
+			X_FORKS = 8, O_FORKS = 9, X_CENTRE = 10, O_CENTRE = 11, X_CORNERS = 12, O_CORNERS = 13;
+
+	/**
+	 * the number of features, i.e. the size of a weight vector
+	 */
+	public static final int SIZE = 14;
+
+	static final int[] CORNERS = { 0, 2, 6, 8 };
+
+	/**
+	 * scratch space: the board, and the dense feature values
+	 */
+	private final int[] board = new int[9];
+	private final double[] dense = new double[SIZE];
+
+	/**
+	 * Computes the features of the board with the given hash. An instance reuses its scratch space, so it must only be used
+	 * by one thread at a time.
+	 * 
+	 * @param hash    a {@link Game#hashCode}
+	 * @param indices output: the indices of the non-zero features, of length at least {@link #SIZE}
+	 * @param values  output: their values
+	 * @return the number of non-zero features
+	 */
+	public int extract(int hash, int[] indices, double[] values) {
+		for (int c = 0; c < 9; c++)
+			board[c] = StateIndex.cell(hash, c);
+		for (int f = 0; f < SIZE; f++)
+			dense[f] = 0.0;
+
+		dense[BIAS] = 1.0;
+		for (int[] line : StateIndex.LINES) {
+			int xs = 0;
+			int os = 0;
+			for (int c : line) {
+				if (board[c] == 1)
+					xs++;
+				else if (board[c] == 2)
+					os++;
+			}
+			if (xs > 0 && os > 0)
+				dense[BLOCKED]++;
+			else if (xs > 0)
+				dense[X_ONE + xs - 1]++;
+			else if (os > 0)
+				dense[O_ONE + os - 1]++;
+		}
+		for (int c = 0; c < 9; c++) {
+			if (board[c] != 0)
+				continue;
+			if (twos(c, 1) >= 2)
+				dense[X_FORKS]++;
+			if (twos(c, 2) >= 2)
+				dense[O_FORKS]++;
+		}
+		if (board[4] != 0)
+			dense[board[4] == 1 ? X_CENTRE : O_CENTRE] = 1.0;
+		for (int c : CORNERS)
+			if (board[c] != 0)
+				dense[board[c] == 1 ? X_CORNERS : O_CORNERS]++;
+
+		int n = 0;
+		for (int f = 0; f < SIZE; f++)
+			if (dense[f] != 0.0) {
+				indices[n] = f;
+				values[n] = dense[f];
+				n++;
+			}
+		return n;
+	}
+
+	/**
+	 * @return the number of lines through the empty cell {@code cell} that would hold two of {@code player}'s pieces and no
+	 *         opponent piece if {@code player} played there
+	 */
+	private int twos(int cell, int player) {
+		int n = 0;
+		for (int[] line : StateIndex.LINES) {
+			if (line[0] != cell && line[1] != cell && line[2] != cell)
+				continue;
+			int own = 0;
+			boolean open = true;
+			for (int c : line)
+				if (board[c] == player)
+					own++;
+				else if (board[c] != 0)
+					open = false;
+			if (open && own == 1)
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return the dot product of the sparse features with {@code weights}
+	 */
+	public static double dot(double[] weights, int[] indices, double[] values, int n) {
+		double sum = 0.0;
+		for (int k = 0; k < n; k++)
+			sum += weights[indices[k]] * values[k];
+		return sum;
+	}
+
+}
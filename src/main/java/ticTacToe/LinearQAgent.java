@@ -0,0 +1,149 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * A Q-learning agent that approximates the q-values with a linear function of {@link LineFeatures} instead of storing them
+ * in a {@link QTable}: Q(s,a) = w . phi(b), where b is the board after X plays a in s (the afterstate). The weight vector w has
+ * {@link LineFeatures#SIZE} entries however many states there are, and what is learned about one board carries over to all
+ * boards with similar features.
+ *
+ * It trains in a {@link TTTEnvironment} with the same episode loop as {@link QLearningAgent}, playing epsilon-greedily, and
+ * after every move applies the semi-gradient Q-learning update w += alpha * (r + discount * max_a' Q(s',a') - Q(s,a)) * phi.
+ * Features are extracted into preallocated sparse arrays, so neither choosing a move nor updating allocates.
+ */
+public class LinearQAgent extends Agent {
+
+	double alpha = 0.01;
+
+	int numOfEpisodes = 50000;
+
+	double discount = 0.9;
+
+	double epsilon = 0.1;
+
+	TTTEnvironment env;
+
+	/**
+	 * the weight of each feature
+	 */
+	double[] weights = new double[LineFeatures.SIZE];
+
+	final LineFeatures features = new LineFeatures();
+
+	/**
+	 * scratch space for sparse features
+	 */
+	private final int[] indices = new int[LineFeatures.SIZE];
+	private final double[] values = new double[LineFeatures.SIZE];
+
+	SplittableRandom random = RandomSource.newStream();
+
+	/**
+	 * Trains against a {@link RandomAgent} with the default parameters.
+	 */
+	public LinearQAgent() {
+		this(new RandomAgent(), 0.01, 50000, 0.9);
+	}
+
+	/**
+	 * Construct a linear Q-learning agent and train it against {@code opponent}.
+	 * 
+	 * @param opponent
+	 * @param learningRate
+	 * @param numEpisodes
+	 * @param discount
+	 */
+	public LinearQAgent(Agent opponent, double learningRate, int numEpisodes, double discount) {
+		this.env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numOfEpisodes = numEpisodes;
+		this.discount = discount;
+		train();
+	}
+
+	/**
+	 * Plays {@link #numOfEpisodes} episodes in {@link #env}, exploring epsilon-greedily, and updates the weights after every
+	 * move. Then extracts the greedy policy.
+	 */
+	public void train() {
+		for (int i = 0; i < numOfEpisodes; i++) {
+			while (!env.isTerminal()) {
+				Game g = env.getCurrentGameState();
+				int cell = (random.nextDouble() < epsilon) ? MonteCarloAgent.randomCell(g, random) : greedyCell(g);
+				int hash = g.hashCode();
+
+				Outcome outcome;
+				try {
+					outcome = env.executeMove(Move.of('X', cell));
+				} catch (IllegalMoveException e) {
+					throw new IllegalStateException("Illegal move by the agent in cell " + cell, e);
+				}
+
+				double target = outcome.localReward;
+				if (!outcome.sPrime.isTerminal())
+					target += discount * qValue(outcome.sPrime.hashCode(), greedyCell(outcome.sPrime));
+
+				int n = features.extract(StateIndex.afterXMove(hash, cell), indices, values);
+				double tdError = target - LineFeatures.dot(weights, indices, values, n);
+				for (int k = 0; k < n; k++)
+					weights[indices[k]] += alpha * tdError * values[k];
+			}
+			env.reset();
+		}
+
+		this.policy = extractPolicy();
+	}
+
+	/**
+	 * @param hash the hash of a game where it's X's turn
+	 * @param cell an empty cell
+	 * @return the approximate q-value of X playing in {@code cell}
+	 */
+	double qValue(int hash, int cell) {
+		int n = features.extract(StateIndex.afterXMove(hash, cell), indices, values);
+		return LineFeatures.dot(weights, indices, values, n);
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @return the empty cell with the highest approximate q-value
+	 */
+	int greedyCell(Game g) {
+		int hash = g.hashCode();
+		int best = -1;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < 9; c++)
+			if (StateIndex.cell(hash, c) == 0) {
+				double v = qValue(hash, c);
+				if (v > max) {
+					max = v;
+					best = c;
+				}
+			}
+		return best;
+	}
+
+	/**
+	 * @return the greedy policy over the approximate q-values, for every non-terminal game where it is X's turn
+	 */
+	public ArrayPolicy extractPolicy() {
+		ArrayPolicy p = new ArrayPolicy();
+		StateIndex states = StateIndex.xStates();
+		for (int id = 0; id < states.size(); id++) {
+			Game g = states.game(id);
+			if (g.isTerminal())
+				continue;
+			p.setMove(states.hash(id), greedyCell(g));
+		}
+		return p;
+	}
+
+	/**
+	 * @return a copy of the learned weights, indexed by the feature constants in {@link LineFeatures}
+	 */
+	public double[] getWeights() {
+		return weights.clone();
+	}
+
+}
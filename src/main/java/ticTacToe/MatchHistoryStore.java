@@ -0,0 +1,513 @@
+package ticTacToe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A queryable store of the games in a binary game log (see {@link GameRecord}), built once with {@link #build} and then
+ * opened with {@link #open}. The store is a directory of segments of up to {@link #SEGMENT_GAMES} games each. Each segment is
+ * one file, memory-mapped when the store is opened, holding:
+ *
+ * <ul>
+ * <li>the games as columns: the X players, the O players, the flags (starter, outcome and number of moves, as in a record),
+ * the moves (9 nibbles in a long) and the timestamps, so that {@link #read} decodes any game by its number without a
+ * scan;</li>
+ * <li>an aggregate index: the number of games for every X player, O player, opening (the cell of X's first move) and
+ * outcome, so that {@link #count} and {@link #winRate} take microseconds whatever the number of games;</li>
+ * <li>a position index in compressed sparse row form: for every {@link Game#hashCode}, the numbers of the games that
+ * reached that position, in order, so that {@link #countReaching} is two array loads per segment and
+ * {@link #gamesReaching} reads just the games it returns.</li>
+ * </ul>
+ *
+ * All numbers are little-endian. Games are numbered in log order, from 0. Only games that describe legal play from the
+ * empty board are in the position index.
+ */
+public class MatchHistoryStore implements Closeable {
+
+	public static final int MAGIC = 0x5454544D; // "TTTM"
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+
+	/**
+	 * the maximum number of games in a segment, which keeps each mapped region of a segment below 2GB
+	 */
+	public static final int SEGMENT_GAMES = 1 << 24;
+
+	/**
+	 * a wildcard for the players and the outcome in queries
+	 */
+	public static final int ANY = -1;
+
+	/**
+	 * the number of player codes in the aggregate index; higher codes are counted as {@link GameRecord#OTHER}
+	 */
+	static final int PLAYERS = 16;
+
+	/**
+	 * the opening of games in which X never moved
+	 */
+	static final int NO_OPENING = 9;
+
+	/**
+	 * Openings for queries, as bit masks of the cell of X's first move
+	 */
+	public static final int CORNER = (1 << 0) | (1 << 2) | (1 << 6) | (1 << 8);
+	public static final int EDGE = (1 << 1) | (1 << 3) | (1 << 5) | (1 << 7);
+	public static final int CENTRE = 1 << 4;
+	public static final int ANY_OPENING = (1 << (NO_OPENING + 1)) - 1;
+
+	/**
+	 * the number of counters in the aggregate index
+	 */
+	static final int AGGREGATES = PLAYERS * PLAYERS * (NO_OPENING + 1) * 4;
+
+	/**
+	 * the bytes per game in the columns: x player, o player and flags, then moves and timestamp
+	 */
+	static final int COLUMN_BYTES = 1 + 1 + 1 + 8 + 8;
+
+	static final String SUFFIX = ".mhs";
+
+	/**
+	 * One segment file, mapped.
+	 */
+	static class Segment {
+		final long firstGame;
+		final int games;
+		final ByteBuffer columns;
+		final ByteBuffer offsets;
+		final ByteBuffer postings;
+
+		Segment(long firstGame, int games, ByteBuffer columns, ByteBuffer offsets, ByteBuffer postings) {
+			this.firstGame = firstGame;
+			this.games = games;
+			this.columns = columns;
+			this.offsets = offsets;
+			this.postings = postings;
+		}
+
+		int xPlayer(int g) {
+			return columns.get(g) & 0xFF;
+		}
+
+		int oPlayer(int g) {
+			return columns.get(games + g) & 0xFF;
+		}
+
+		int flags(int g) {
+			return columns.get(2 * games + g) & 0xFF;
+		}
+
+		long moves(int g) {
+			return columns.getLong(3 * games + 8 * g);
+		}
+
+		long timestamp(int g) {
+			return columns.getLong(11 * games + 8 * g);
+		}
+
+		/**
+		 * @return the index in {@link #postings} of the first game that reached position {@code hash}
+		 */
+		int offset(int hash) {
+			return offsets.getInt(4 * hash);
+		}
+	}
+
+	final List<Segment> segments;
+
+	/**
+	 * the aggregate index over all segments
+	 */
+	final long[] aggregates;
+
+	final long games;
+
+	/**
+	 * set by {@link #close()}, after which queries fail
+	 */
+	private boolean closed = false;
+
+	private MatchHistoryStore(List<Segment> segments, long[] aggregates) {
+		this.segments = segments;
+		this.aggregates = aggregates;
+		long n = 0;
+		for (Segment s : segments)
+			n += s.games;
+		this.games = n;
+	}
+
+	/**
+	 * @return the player code a game by player {@code code} is counted under in the aggregate index
+	 */
+	static int player(int code) {
+		return (code < PLAYERS) ? code : GameRecord.OTHER;
+	}
+
+	/**
+	 * @return the index of a game in the aggregate index
+	 */
+	static int aggregate(int xPlayer, int oPlayer, int opening, int outcome) {
+		return ((player(xPlayer) * PLAYERS + player(oPlayer)) * (NO_OPENING + 1) + opening) * 4 + outcome;
+	}
+
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException("The match history store is closed");
+	}
+
+	/**
+	 * Writes the positions a game reached into {@code hashes}.
+	 *
+	 * @param r
+	 * @param hashes of length at least 10
+	 * @return the number of positions, 0 if the record doesn't describe legal play
+	 */
+	static int positions(GameRecord r, int[] hashes) {
+		int hash = (r.starter == 'X') ? 1 : 2;
+		hashes[0] = hash;
+		for (int k = 0; k < r.moveCount; k++) {
+			int cell = r.moves[k];
+			if (cell > 8 || StateIndex.cell(hash, cell) != 0 || StateIndex.isTerminal(hash))
+				return 0;
+			hash = (hash % 3 == 1) ? StateIndex.afterXMove(hash, cell) : StateIndex.afterOMove(hash, cell);
+			hashes[k + 1] = hash;
+		}
+		return r.moveCount + 1;
+	}
+
+	/**
+	 * @return the cell of X's first move, or {@link #NO_OPENING}
+	 */
+	static int opening(GameRecord r) {
+		int k = (r.starter == 'X') ? 0 : 1;
+		return (k < r.moveCount) ? r.moves[k] : NO_OPENING;
+	}
+
+	/**
+	 * Builds a store from a game log, replacing any store in {@code directory}.
+	 *
+	 * @param log
+	 * @param directory
+	 * @return the store, opened
+	 * @throws IOException
+	 */
+	public static MatchHistoryStore build(File log, File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory);
+		for (File f : segmentFiles(directory))
+			if (!f.delete())
+				throw new IOException("Cannot delete " + f);
+
+		GameRecordReader reader = new GameRecordReader(log);
+		try {
+			int segment = 0;
+			for (long from = 0; from < reader.size(); from += SEGMENT_GAMES)
+				buildSegment(reader, from, Math.min(reader.size(), from + SEGMENT_GAMES),
+						new File(directory, String.format("segment-%05d%s", segment++, SUFFIX)));
+		} finally {
+			reader.close();
+		}
+		return open(directory);
+	}
+
+	/**
+	 * Writes the games [from, to) of the log as a segment, in two passes: the first writes the columns and counts the games
+	 * per position, the second fills in the position index. The header is written last, so an interrupted build leaves
+	 * no valid segment behind.
+	 */
+	static void buildSegment(GameRecordReader reader, long from, long to, File file) throws IOException {
+		int n = (int) (to - from);
+		GameRecord r = new GameRecord();
+		int[] hashes = new int[10];
+		long[] aggregates = new long[AGGREGATES];
+		int[] offsets = new int[StateIndex.HASH_SPACE + 1];
+
+		long aggregatesAt = HEADER_SIZE;
+		long offsetsAt = aggregatesAt + 8L * AGGREGATES;
+		long columnsAt = offsetsAt + 4L * offsets.length;
+		long postingsAt = columnsAt + (long) COLUMN_BYTES * n;
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedByteBuffer columns = channel.map(FileChannel.MapMode.READ_WRITE, columnsAt, (long) COLUMN_BYTES * n);
+			columns.order(ByteOrder.LITTLE_ENDIAN);
+			GameRecordReader.Cursor cursor = reader.cursor(from, to);
+			for (int g = 0; cursor.next(r); g++) {
+				int flags = (r.starter == 'O' ? 1 : 0) | (r.outcome << 1) | (r.moveCount << 4);
+				long moves = 0;
+				for (int k = 0; k < r.moveCount; k++)
+					moves |= (long) r.moves[k] << (4 * k);
+				columns.put(g, (byte) r.xPlayer);
+				columns.put(n + g, (byte) r.oPlayer);
+				columns.put(2 * n + g, (byte) flags);
+				columns.putLong(3 * n + 8 * g, moves);
+				columns.putLong(11 * n + 8 * g, r.timestamp);
+				aggregates[aggregate(r.xPlayer, r.oPlayer, opening(r), r.outcome)]++;
+				int p = positions(r, hashes);
+				for (int k = 0; k < p; k++)
+					offsets[hashes[k] + 1]++;
+			}
+			columns.force();
+
+			// prefix sums: offsets[h] is where the games that reached h start
+			for (int h = 0; h < StateIndex.HASH_SPACE; h++)
+				offsets[h + 1] += offsets[h];
+			int total = offsets[StateIndex.HASH_SPACE];
+
+			int[] next = Arrays.copyOf(offsets, StateIndex.HASH_SPACE);
+			MappedByteBuffer postings = channel.map(FileChannel.MapMode.READ_WRITE, postingsAt, 4L * total);
+			postings.order(ByteOrder.LITTLE_ENDIAN);
+			cursor = reader.cursor(from, to);
+			for (int g = 0; cursor.next(r); g++) {
+				int p = positions(r, hashes);
+				for (int k = 0; k < p; k++)
+					postings.putInt(4 * next[hashes[k]]++, g);
+			}
+			postings.force();
+
+			MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, aggregatesAt, columnsAt - aggregatesAt);
+			index.order(ByteOrder.LITTLE_ENDIAN);
+			for (long a : aggregates)
+				index.putLong(a);
+			for (int o : offsets)
+				index.putInt(o);
+			index.force();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putShort(VERSION);
+			header.putShort((short) HEADER_SIZE);
+			header.putInt(n);
+			header.putInt(total);
+			header.putLong(from);
+			header.flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	static File[] segmentFiles(File directory) {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("segment-") && name.endsWith(SUFFIX));
+		if (files == null)
+			return new File[0];
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * Opens a store built with {@link #build}.
+	 *
+	 * @param directory
+	 * @return the store
+	 * @throws IOException if a segment can't be read or is not a valid segment
+	 */
+	public static MatchHistoryStore open(File directory) throws IOException {
+		List<Segment> segments = new ArrayList<Segment>();
+		long[] aggregates = new long[AGGREGATES];
+		for (File f : segmentFiles(directory)) {
+			FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+					;
+				if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION)
+					throw new IOException(f + " is not a match history segment of version " + VERSION);
+				int n = header.getInt(8);
+				int total = header.getInt(12);
+				long firstGame = header.getLong(16);
+
+				long aggregatesAt = HEADER_SIZE;
+				long offsetsAt = aggregatesAt + 8L * AGGREGATES;
+				long columnsAt = offsetsAt + 4L * (StateIndex.HASH_SPACE + 1);
+				long postingsAt = columnsAt + (long) COLUMN_BYTES * n;
+				if (channel.size() < postingsAt + 4L * total)
+					throw new IOException(f + " is truncated");
+
+				ByteBuffer counts = channel.map(FileChannel.MapMode.READ_ONLY, aggregatesAt, offsetsAt - aggregatesAt)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				for (int a = 0; a < AGGREGATES; a++)
+					aggregates[a] += counts.getLong(8 * a);
+				// the mappings stay valid after the channel is closed
+				segments.add(new Segment(firstGame, n,
+						channel.map(FileChannel.MapMode.READ_ONLY, columnsAt, postingsAt - columnsAt)
+								.order(ByteOrder.LITTLE_ENDIAN),
+						channel.map(FileChannel.MapMode.READ_ONLY, offsetsAt, columnsAt - offsetsAt)
+								.order(ByteOrder.LITTLE_ENDIAN),
+						channel.map(FileChannel.MapMode.READ_ONLY, postingsAt, 4L * total)
+								.order(ByteOrder.LITTLE_ENDIAN)));
+			} finally {
+				channel.close();
+			}
+		}
+		return new MatchHistoryStore(segments, aggregates);
+	}
+
+	/**
+	 * @return the number of games in the store
+	 */
+	public long size() {
+		checkOpen();
+		return games;
+	}
+
+	/**
+	 * Counts games from the aggregate index.
+	 *
+	 * @param xPlayer  the player code of X, see {@link GameRecord}, or {@link #ANY}
+	 * @param oPlayer  the player code of O, or {@link #ANY}
+	 * @param openings the cells X may have opened in, as a bit mask, e.g. {@link #CORNER} or {@link #ANY_OPENING}
+	 * @param outcome  {@link Game#X_WON}, {@link Game#O_WON}, {@link Game#DRAW}, {@link Game#ONGOING} or {@link #ANY}
+	 * @return the number of games that match
+	 */
+	public long count(int xPlayer, int oPlayer, int openings, int outcome) {
+		checkOpen();
+		long n = 0;
+		for (int x = 0; x < PLAYERS; x++) {
+			if (xPlayer != ANY && x != player(xPlayer))
+				continue;
+			for (int o = 0; o < PLAYERS; o++) {
+				if (oPlayer != ANY && o != player(oPlayer))
+					continue;
+				for (int c = 0; c <= NO_OPENING; c++) {
+					if ((openings & (1 << c)) == 0)
+						continue;
+					for (int r = 0; r < 4; r++)
+						if (outcome == ANY || r == outcome)
+							n += aggregates[aggregate(x, o, c, r)];
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @param xPlayer
+	 * @param oPlayer
+	 * @param openings
+	 * @return the fraction of the matching games that X won, NaN if there are none
+	 */
+	public double winRate(int xPlayer, int oPlayer, int openings) {
+		long all = count(xPlayer, oPlayer, openings, ANY);
+		return (all == 0) ? Double.NaN : (double) count(xPlayer, oPlayer, openings, Game.X_WON) / all;
+	}
+
+	/**
+	 * @param hash a {@link Game#hashCode}
+	 * @return the number of games that reached that position
+	 */
+	public long countReaching(int hash) {
+		checkOpen();
+		if (hash < 0 || hash >= StateIndex.HASH_SPACE)
+			return 0;
+		long n = 0;
+		for (Segment s : segments)
+			n += s.offset(hash + 1) - s.offset(hash);
+		return n;
+	}
+
+	/**
+	 * @param hash  a {@link Game#hashCode}
+	 * @param limit the maximum number of games returned, at least 0
+	 * @return the numbers of the first games, in log order, that reached that position; none for a hash out of range
+	 */
+	public long[] gamesReaching(int hash, int limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException("Negative limit " + limit);
+		long[] result = new long[(int) Math.min(limit, countReaching(hash))];
+		if (result.length == 0)
+			return result;
+		int n = 0;
+		for (Segment s : segments) {
+			int end = s.offset(hash + 1);
+			for (int i = s.offset(hash); i < end && n < result.length; i++)
+				result[n++] = s.firstGame + s.postings.getInt(4 * i);
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes a game into {@code r}, e.g. to replay it with {@link GameRecord#toGame()}.
+	 *
+	 * @param game the number of the game
+	 * @param r
+	 */
+	public void read(long game, GameRecord r) {
+		checkOpen();
+		for (Segment s : segments)
+			if (game >= s.firstGame && game < s.firstGame + s.games) {
+				int g = (int) (game - s.firstGame);
+				r.xPlayer = s.xPlayer(g);
+				r.oPlayer = s.oPlayer(g);
+				int flags = s.flags(g);
+				r.starter = ((flags & 1) == 0) ? 'X' : 'O';
+				r.outcome = (flags >> 1) & 3;
+				r.moveCount = Math.min(9, flags >> 4);
+				long moves = s.moves(g);
+				for (int k = 0; k < 9; k++)
+					r.moves[k] = (byte) ((moves >>> (4 * k)) & 0xF);
+				r.timestamp = s.timestamp(g);
+				return;
+			}
+		throw new IndexOutOfBoundsException("Game " + game + " of " + games);
+	}
+
+	/**
+	 * Drops the segments, which stay mapped until they are garbage collected; every query after this throws an
+	 * {@link IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		segments.clear();
+	}
+
+	/**
+	 * Builds a store, or prints the outcomes of a pairing by X's opening. Usage:
+	 * {@code MatchHistoryStore build <log file> <directory>} or {@code MatchHistoryStore stats <directory> <x> <o>}, where
+	 * the players are named as on the command line of {@link Game}, e.g. ql, or "any".
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 3 && args[0].equals("build")) {
+			long start = System.currentTimeMillis();
+			MatchHistoryStore store = build(new File(args[1]), new File(args[2]));
+			System.out.println("Indexed " + store.size() + " games in " + (System.currentTimeMillis() - start) + "ms");
+		} else if (args.length == 4 && args[0].equals("stats")) {
+			MatchHistoryStore store = open(new File(args[1]));
+			int x = playerCode(args[2]);
+			int o = playerCode(args[3]);
+			String[] names = { "corner", "edge", "centre" };
+			int[] openings = { CORNER, EDGE, CENTRE };
+			for (int k = 0; k < openings.length; k++) {
+				long all = store.count(x, o, openings[k], ANY);
+				System.out.println(names[k] + ": " + all + " games, X won " + store.count(x, o, openings[k], Game.X_WON)
+						+ ", O won " + store.count(x, o, openings[k], Game.O_WON) + ", draws "
+						+ store.count(x, o, openings[k], Game.DRAW) + ", X win rate " + store.winRate(x, o, openings[k]));
+			}
+		} else
+			System.out.println("Usage: MatchHistoryStore build <log file> <directory> | stats <directory> <x> <o>");
+	}
+
+	static int playerCode(String name) {
+		if (name.equalsIgnoreCase("any"))
+			return ANY;
+		for (int c = 0; c < GameRecord.PLAYER_NAMES.length; c++)
+			if (GameRecord.PLAYER_NAMES[c].equalsIgnoreCase(name))
+				return c;
+		throw new IllegalArgumentException("Unknown player " + name);
+	}
+
+}
@@ -0,0 +1,41 @@
+package ticTacToe;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Where {@link TrainingMetrics} write their snapshots to. Subclasses format each snapshot as one line of text, see
+ * {@link CsvMetricsSink} and {@link JsonLinesMetricsSink}. Lines are flushed as they are written, so the file can be followed
+ * while training runs.
+ */
+public abstract class MetricsSink {
+
+	final Writer out;
+
+	MetricsSink(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a snapshot.
+	 *
+	 * @param s
+	 * @throws IOException
+	 */
+	public synchronized void write(TrainingMetrics.Snapshot s) throws IOException {
+		out.write(format(s));
+		out.write('\n');
+		out.flush();
+	}
+
+	/**
+	 * @param s
+	 * @return the snapshot as one line, without the line break
+	 */
+	abstract String format(TrainingMetrics.Snapshot s);
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
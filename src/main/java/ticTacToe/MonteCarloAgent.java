@@ -0,0 +1,254 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A Monte Carlo control agent: it plays whole episodes epsilon-greedily and sets the q-value of each (state, move) pair to
+ * the average return that followed it, with no bootstrapping, which makes it an unbiased baseline for the TD learners such as
+ * {@link QLearningAgent}. With first-visit averaging only the first occurrence of a pair in an episode counts, with
+ * every-visit averaging all of them do; since a Tic-Tac-Toe board never repeats within a game the two coincide here, but both
+ * are provided for other reward or environment settings.
+ *
+ * Episodes are generated in batches on a {@link ForkJoinPool}. Each worker has its own {@link TTTEnvironment}, with its own
+ * opponent and random stream, and sums the returns of its episodes into its own arrays; at the end of each batch the workers'
+ * sums are merged into the q-values, which the next batch explores with. The q-values are kept in arrays indexed by
+ * {@link StateIndex#xStates()} id * 9 + cell.
+ */
+public class MonteCarloAgent extends Agent {
+
+	int numOfEpisodes = 100000;
+
+	double discount = 0.9;
+
+	/**
+	 * the probability of exploring with a random move while training
+	 */
+	double epsilon = 0.1;
+
+	/**
+	 * true for first-visit, false for every-visit averaging
+	 */
+	boolean firstVisit = true;
+
+	/**
+	 * the number of episodes generated between two merges
+	 */
+	int batchSize = 2000;
+
+	int workers = Runtime.getRuntime().availableProcessors();
+
+	final StateIndex index = StateIndex.xStates();
+
+	/**
+	 * the sum of the returns, and their number, for each (state, move)
+	 */
+	double[] returns = new double[index.size() * 9];
+	long[] counts = new long[index.size() * 9];
+
+	/**
+	 * the q-values, the average returns
+	 */
+	double[] q = new double[index.size() * 9];
+
+	/**
+	 * Trains against {@link RandomAgent}s with the default parameters.
+	 */
+	public MonteCarloAgent() {
+		this(RandomAgent::new, 100000, 0.9, 0.1, true);
+	}
+
+	/**
+	 * Construct a Monte Carlo agent and train it.
+	 * 
+	 * @param opponents   creates an opponent for each worker's environment, e.g. {@code RandomAgent::new}
+	 * @param numEpisodes the number of episodes to train for
+	 * @param discount
+	 * @param epsilon     the exploration probability
+	 * @param firstVisit  true for first-visit, false for every-visit averaging
+	 */
+	public MonteCarloAgent(Supplier<? extends Agent> opponents, int numEpisodes, double discount, double epsilon,
+			boolean firstVisit) {
+		this.numOfEpisodes = numEpisodes;
+		this.discount = discount;
+		this.epsilon = epsilon;
+		this.firstVisit = firstVisit;
+		train(opponents);
+	}
+
+	/**
+	 * One worker: an environment, a random stream and the returns summed since the last merge
+	 */
+	private class Worker implements Callable<Void> {
+		final TTTEnvironment env;
+		final SplittableRandom random;
+		final double[] sums = new double[q.length];
+		final long[] visits = new long[q.length];
+
+		/**
+		 * the pairs and rewards of the current episode
+		 */
+		final int[] pairs = new int[9];
+		final double[] rewards = new double[9];
+
+		int episodes;
+
+		Worker(Agent opponent, SplittableRandom random) {
+			this.env = new TTTEnvironment(opponent);
+			this.random = random;
+		}
+
+		@Override
+		public Void call() throws IllegalMoveException {
+			for (int e = 0; e < episodes; e++) {
+				int steps = 0;
+				while (!env.isTerminal()) {
+					Game g = env.getCurrentGameState();
+					int cell = (random.nextDouble() < epsilon) ? randomCell(g, random) : greedyCell(g);
+					pairs[steps] = index.id(g) * 9 + cell;
+					rewards[steps] = env.executeMove(Move.of('X', cell)).localReward;
+					steps++;
+				}
+				env.reset();
+
+				double g = 0.0;
+				for (int t = steps - 1; t >= 0; t--) {
+					g = rewards[t] + discount * g;
+					if (firstVisit && occursBefore(pairs[t], t))
+						continue;
+					sums[pairs[t]] += g;
+					visits[pairs[t]]++;
+				}
+			}
+			return null;
+		}
+
+		private boolean occursBefore(int pair, int t) {
+			for (int k = 0; k < t; k++)
+				if (pairs[k] == pair)
+					return true;
+			return false;
+		}
+	}
+
+	/**
+	 * Generates {@link #numOfEpisodes} episodes in batches, merging the returns after each batch, and then extracts the greedy
+	 * policy.
+	 *
+	 * @throws IllegalStateException if training is interrupted (with the interrupt flag set again) or a worker fails
+	 */
+	void train(Supplier<? extends Agent> opponents) {
+		// create the workers up front, so their random streams don't depend on thread scheduling
+		SplittableRandom[] streams = RandomSource.newStreams(workers);
+		List<Worker> all = new ArrayList<Worker>();
+		for (int w = 0; w < workers; w++)
+			all.add(new Worker(opponents.get(), streams[w]));
+
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		try {
+			for (int done = 0; done < numOfEpisodes;) {
+				int batch = Math.min(batchSize, numOfEpisodes - done);
+				for (int w = 0; w < workers; w++)
+					all.get(w).episodes = batch / workers + ((w < batch % workers) ? 1 : 0);
+				for (Future<Void> f : pool.invokeAll(all))
+					f.get();
+				merge(all);
+				done += batch;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Monte Carlo training was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generating episodes failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		this.policy = extractPolicy();
+	}
+
+	/**
+	 * adds the workers' returns to the totals, clears them, and updates the q-values
+	 */
+	private void merge(List<Worker> all) {
+		for (Worker w : all) {
+			for (int i = 0; i < q.length; i++) {
+				if (w.visits[i] == 0)
+					continue;
+				returns[i] += w.sums[i];
+				counts[i] += w.visits[i];
+				w.sums[i] = 0.0;
+				w.visits[i] = 0;
+			}
+		}
+		for (int i = 0; i < q.length; i++)
+			if (counts[i] > 0)
+				q[i] = returns[i] / counts[i];
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @return the empty cell with the highest q-value
+	 */
+	int greedyCell(Game g) {
+		int base = index.id(g) * 9;
+		char[][] board = g.getBoard();
+		int best = -1;
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ' && (best < 0 || q[base + c] > q[base + best]))
+				best = c;
+		return best;
+	}
+
+	static int randomCell(Game g, SplittableRandom random) {
+		char[][] board = g.getBoard();
+		int empty = 0;
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ')
+				empty++;
+		int k = random.nextInt(empty);
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ' && k-- == 0)
+				return c;
+		throw new IllegalStateException("No empty cell");
+	}
+
+	/**
+	 * @return the greedy policy over the q-values, for every non-terminal game where it is X's turn
+	 */
+	public ArrayPolicy extractPolicy() {
+		ArrayPolicy p = new ArrayPolicy();
+		for (int id = 0; id < index.size(); id++) {
+			Game g = index.game(id);
+			if (g.isTerminal())
+				continue;
+			p.setMove(index.hash(id), greedyCell(g));
+		}
+		return p;
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @param m
+	 * @return the average return after playing {@code m} in {@code g}, 0 if that was never played
+	 */
+	public double getQValue(Game g, Move m) {
+		return q[index.id(g) * 9 + m.cell()];
+	}
+
+	/**
+	 * @param g a game where it's X's turn
+	 * @param m
+	 * @return the number of returns averaged into the q-value of {@code m} in {@code g}
+	 */
+	public long getVisits(Game g, Move m) {
+		return counts[index.id(g) * 9 + m.cell()];
+	}
+
+}
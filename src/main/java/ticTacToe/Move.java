@@ -49,6 +49,45 @@ public class Move {
 	
 	}
 	
+	/**
+	 * shared instances returned by {@link #of}: the 9 moves by X followed by the 9 moves by O
+	 */
+	private static final Move[] FLYWEIGHTS=new Move[18];
+	
+	static {
+		for (int cell=0;cell<9;cell++)
+		{
+			FLYWEIGHTS[cell]=new Move('X', cell/3, cell%3);
+			FLYWEIGHTS[9+cell]=new Move('O', cell/3, cell%3);
+		}
+	}
+	
+	/**
+	 * Returns a shared move instance, so that code on a hot path (e.g. looking up q-values) doesn't need to allocate a new
+	 * move every time. The returned move is shared and so MUST NOT be modified.
+	 * @param who either 'X' or 'O'
+	 * @param cell the index of the cell, {@code 3*x+y}, between 0 and 8 inclusive
+	 * @return the move by {@code who} in {@code cell}
+	 */
+	public static Move of(char who, int cell)
+	{
+		if (cell<0 || cell>8)
+			throw new IllegalArgumentException("Invalid cell");
+		if (who=='X')
+			return FLYWEIGHTS[cell];
+		else if (who=='O')
+			return FLYWEIGHTS[9+cell];
+		throw new IllegalArgumentException("Can only be a move by X or by O");
+	}
+	
+	/**
+	 * @return the index of the cell of this move, {@code 3*x+y}, as used by {@link HumanAgent}
+	 */
+	public int cell()
+	{
+		return 3*x+y;
+	}
+	
 	public String toString()
 	{
 		return who+"("+x+","+y+")";
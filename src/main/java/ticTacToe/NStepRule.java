@@ -0,0 +1,95 @@
+package ticTacToe;
+
+/**
+ * n-step returns: Q(s_t,a_t) is moved towards r_t + discount * r_t+1 + ... + discount^(n-1) * r_t+n-1 + discount^n * Q_n,
+ * where Q_n bootstraps from the state n moves later. Rewards thus propagate back n moves per update instead of one. With
+ * {@code sarsa} set, Q_n is Q(s_t+n, a_t+n) for the move actually played (n-step SARSA); otherwise it is
+ * max_a Q(s_t+n, a) as in Q-learning. When the episode ends, the remaining moves are updated with the truncated returns.
+ *
+ * Since the agent plays at most 5 moves per game, n = 5 or more amounts to Monte Carlo returns. Until n moves have been
+ * played in an episode no q-value is updated, and {@link #update} returns NaN.
+ */
+public class NStepRule extends UpdateRule {
+
+	final int n;
+
+	final boolean sarsa;
+
+	/**
+	 * The last (up to) n source states, moves and rewards that have not been updated yet, in a ring buffer starting at
+	 * {@link #first}.
+	 */
+	private final Game[] states;
+	private final Move[] moves;
+	private final double[] rewards;
+	private int first = 0;
+	private int pending = 0;
+
+	/**
+	 * @param n     the number of moves to look ahead, at least 1
+	 * @param sarsa true to bootstrap from the move actually played, false to bootstrap from the best move
+	 */
+	public NStepRule(int n, boolean sarsa) {
+		if (n < 1)
+			throw new IllegalArgumentException("n must be at least 1");
+		this.n = n;
+		this.sarsa = sarsa;
+		this.states = new Game[n];
+		this.moves = new Move[n];
+		this.rewards = new double[n];
+	}
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		int last = (first + pending) % n;
+		// o.s is a copy made by the environment, so it is safe to keep
+		states[last] = o.s;
+		moves[last] = o.move;
+		rewards[last] = o.localReward;
+		pending++;
+
+		if (o.sPrime.isTerminal())
+			return flush(agent);
+
+		if (pending < n)
+			return Double.NaN;
+
+		double bootstrap = sarsa ? agent.qTable.getQValue(o.sPrime, next) : maxQValue(agent.qTable, o.sPrime);
+		return updateFirst(agent, bootstrap);
+	}
+
+	@Override
+	void endEpisode(QLearningAgent agent) {
+		flush(agent);
+	}
+
+	/**
+	 * updates all pending moves with their truncated returns
+	 *
+	 * @return the td error of the last update, NaN if there were no pending moves
+	 */
+	private double flush(QLearningAgent agent) {
+		double tdError = Double.NaN;
+		while (pending > 0)
+			tdError = updateFirst(agent, 0.0);
+		first = 0;
+		return tdError;
+	}
+
+	/**
+	 * updates the oldest pending move with the return of all pending rewards, plus {@code bootstrap} discounted by the
+	 * number of pending moves, and removes it.
+	 */
+	private double updateFirst(QLearningAgent agent, double bootstrap) {
+		double ret = bootstrap;
+		for (int k = pending - 1; k >= 0; k--)
+			ret = rewards[(first + k) % n] + agent.discount * ret;
+
+		double tdError = moveTowards(agent.qTable, agent.alpha, states[first], moves[first], ret);
+		states[first] = null;
+		first = (first + 1) % n;
+		pending--;
+		return tdError;
+	}
+
+}
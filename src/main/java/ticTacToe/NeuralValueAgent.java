@@ -0,0 +1,258 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * An agent that learns the values of afterstates (the boards directly after its own move as X, as in
+ * {@link AfterstateAgent}) with a {@link ValueNetwork} instead of a table, so its storage does not grow with the number of
+ * states. A board is fed to the network as 18 inputs: for each cell, one that is 1 if it holds an X and one that is 1 if it
+ * holds an O.
+ *
+ * It trains by TD(0) in a {@link TTTEnvironment}: after moving into afterstate b, receiving reward r and reaching s', the
+ * target for V(b) is r + discount * max_b' V(b') over the afterstates b' reachable from s' (just r if s' is terminal). The
+ * (afterstate, target) pairs are collected into mini-batches of {@link #batchSize} for the network's multithreaded
+ * gradient step, with a learning rate annealed linearly to 0 over the episodes. Rewards are divided by
+ * {@link #REWARD_SCALE} so that the values the network learns stay near [-1, 1].
+ *
+ * Choosing a move evaluates all the afterstates reachable from a game in one batched forward pass, and
+ * {@link #evaluate(Game[], float[])} and {@link #extractPolicy()} evaluate thousands of boards per pass.
+ */
+public class NeuralValueAgent extends Agent {
+
+	/**
+	 * rewards are divided by this before they are learned
+	 */
+	static final double REWARD_SCALE = 50.0;
+
+	/**
+	 * the number of boards evaluated per forward pass by {@link #evaluate(Game[], float[])} and {@link #extractPolicy()}
+	 */
+	static final int EVALUATION_BATCH = 4096;
+
+	/**
+	 * the initial learning rate, and the current one
+	 */
+	float learningRate = 0.5f;
+	float stepSize = 0.5f;
+
+	int numOfEpisodes = 50000;
+
+	double discount = 0.9;
+
+	double epsilon = 0.1;
+
+	/**
+	 * the number of (afterstate, target) pairs per gradient step
+	 */
+	int batchSize = 32;
+
+	TTTEnvironment env;
+
+	final ValueNetwork network;
+
+	SplittableRandom random = RandomSource.newStream();
+
+	/**
+	 * the workspace for evaluating the (at most 9) afterstates of one game
+	 */
+	private final ValueNetwork.Workspace moveSpace;
+
+	/**
+	 * the cells of the afterstates in {@link #moveSpace}, and their number
+	 */
+	private final int[] moveCells = new int[9];
+	private int moveCount = 0;
+
+	/**
+	 * the mini-batch being collected
+	 */
+	private final float[] batchInputs;
+	private final float[] batchTargets;
+	private int batchFill = 0;
+
+	/**
+	 * Trains against a {@link RandomAgent} with the default parameters.
+	 */
+	public NeuralValueAgent() {
+		this(new RandomAgent(), 0.5, 50000, 0.9);
+	}
+
+	/**
+	 * Construct an agent with a network with one hidden layer of 64 units, and train it against {@code opponent}.
+	 * 
+	 * @param opponent
+	 * @param learningRate
+	 * @param numEpisodes
+	 * @param discount
+	 */
+	public NeuralValueAgent(Agent opponent, double learningRate, int numEpisodes, double discount) {
+		this.env = new TTTEnvironment(opponent);
+		this.learningRate = (float) learningRate;
+		this.numOfEpisodes = numEpisodes;
+		this.discount = discount;
+		this.network = new ValueNetwork(new int[] { 18, 64, 1 }, random.split());
+		this.moveSpace = network.newWorkspace(9);
+		this.batchInputs = new float[batchSize * 18];
+		this.batchTargets = new float[batchSize];
+		train();
+	}
+
+	/**
+	 * Writes the 18 network inputs of the board with the given hash into {@code in}, starting at {@code offset}.
+	 */
+	static void encode(int hash, float[] in, int offset) {
+		for (int c = 0; c < 9; c++) {
+			int d = StateIndex.cell(hash, c);
+			in[offset + c] = (d == 1) ? 1.0f : 0.0f;
+			in[offset + 9 + c] = (d == 2) ? 1.0f : 0.0f;
+		}
+	}
+
+	/**
+	 * Evaluates all the afterstates reachable from the game with hash {@code hash} (where it's X's turn) in one forward pass
+	 * through {@link #moveSpace}.
+	 * 
+	 * @return the index in {@link #moveCells} of the best one
+	 */
+	private int evaluateMoves(int hash) {
+		moveCount = 0;
+		float[] in = moveSpace.input();
+		for (int c = 0; c < 9; c++)
+			if (StateIndex.cell(hash, c) == 0) {
+				encode(StateIndex.afterXMove(hash, c), in, moveCount * 18);
+				moveCells[moveCount++] = c;
+			}
+		network.forward(moveSpace, moveCount);
+		float[] out = moveSpace.output();
+		int best = 0;
+		for (int k = 1; k < moveCount; k++)
+			if (out[k] > out[best])
+				best = k;
+		return best;
+	}
+
+	/**
+	 * Plays {@link #numOfEpisodes} episodes in {@link #env}, exploring epsilon-greedily, and trains the network on the TD
+	 * targets. Then extracts the greedy policy.
+	 */
+	public void train() {
+		for (int i = 0; i < numOfEpisodes; i++) {
+			// anneal the learning rate linearly towards 0, so the values settle rather than follow the latest games
+			stepSize = learningRate * (1.0f - (float) i / numOfEpisodes);
+			Game g = env.getCurrentGameState();
+			int best = evaluateMoves(g.hashCode());
+			while (!env.isTerminal()) {
+				int hash = env.getCurrentGameState().hashCode();
+				int cell = (random.nextDouble() < epsilon) ? moveCells[random.nextInt(moveCount)] : moveCells[best];
+
+				Outcome outcome;
+				try {
+					outcome = env.executeMove(Move.of('X', cell));
+				} catch (IllegalMoveException e) {
+					throw new IllegalStateException("Illegal move by the agent in cell " + cell, e);
+				}
+
+				double target = outcome.localReward / REWARD_SCALE;
+				if (!outcome.sPrime.isTerminal()) {
+					// the afterstates of s' give both the target and the next move
+					best = evaluateMoves(outcome.sPrime.hashCode());
+					target += discount * moveSpace.output()[best];
+				}
+				add(StateIndex.afterXMove(hash, cell), (float) target);
+			}
+			env.reset();
+		}
+		if (batchFill > 0)
+			network.train(batchInputs, batchTargets, batchFill, stepSize);
+		batchFill = 0;
+
+		this.policy = extractPolicy();
+	}
+
+	/**
+	 * adds an (afterstate, target) pair to the mini-batch, and takes a gradient step when it is full
+	 */
+	private void add(int afterstate, float target) {
+		encode(afterstate, batchInputs, batchFill * 18);
+		batchTargets[batchFill++] = target;
+		if (batchFill == batchSize) {
+			network.train(batchInputs, batchTargets, batchFill, stepSize);
+			batchFill = 0;
+		}
+	}
+
+	/**
+	 * Evaluates many boards in batched forward passes.
+	 * 
+	 * @param boards the boards, e.g. afterstates
+	 * @param values output: the value of each board, in units of reward
+	 */
+	public void evaluate(Game[] boards, float[] values) {
+		ValueNetwork.Workspace ws = network.newWorkspace(Math.min(EVALUATION_BATCH, boards.length));
+		for (int from = 0; from < boards.length; from += ws.capacity) {
+			int n = Math.min(ws.capacity, boards.length - from);
+			for (int k = 0; k < n; k++)
+				encode(boards[from + k].hashCode(), ws.input(), k * 18);
+			network.forward(ws, n);
+			for (int k = 0; k < n; k++)
+				values[from + k] = (float) (ws.output()[k] * REWARD_SCALE);
+		}
+	}
+
+	/**
+	 * @return the greedy policy over the afterstate values, for every non-terminal game where it is X's turn. The afterstates
+	 *         of many games are evaluated in each forward pass.
+	 */
+	public ArrayPolicy extractPolicy() {
+		ArrayPolicy p = new ArrayPolicy();
+		StateIndex states = StateIndex.xStates();
+		ValueNetwork.Workspace ws = network.newWorkspace(EVALUATION_BATCH);
+		// the states whose afterstates are in the current batch, and where each one's rows start
+		int[] ids = new int[EVALUATION_BATCH];
+		int[] starts = new int[ids.length + 1];
+		int count = 0;
+		int rows = 0;
+		for (int id = 0; id <= states.size(); id++) {
+			boolean flush = (id == states.size()) || rows + 9 > EVALUATION_BATCH;
+			if (flush && count > 0) {
+				network.forward(ws, rows);
+				starts[count] = rows;
+				for (int k = 0; k < count; k++)
+					p.setMove(states.hash(ids[k]), bestCell(states.hash(ids[k]), ws.output(), starts[k]));
+				count = 0;
+				rows = 0;
+			}
+			if (id == states.size())
+				break;
+			int hash = states.hash(id);
+			if (StateIndex.isTerminal(hash))
+				continue;
+			ids[count] = id;
+			starts[count++] = rows;
+			for (int c = 0; c < 9; c++)
+				if (StateIndex.cell(hash, c) == 0)
+					encode(StateIndex.afterXMove(hash, c), ws.input(), 18 * rows++);
+		}
+		return p;
+	}
+
+	/**
+	 * @return the empty cell of the game with hash {@code hash} whose afterstate has the highest of the values starting at
+	 *         {@code start} (one per empty cell, in order)
+	 */
+	private static int bestCell(int hash, float[] values, int start) {
+		int best = -1;
+		float max = Float.NEGATIVE_INFINITY;
+		int k = start;
+		for (int c = 0; c < 9; c++)
+			if (StateIndex.cell(hash, c) == 0) {
+				if (values[k] > max) {
+					max = values[k];
+					best = c;
+				}
+				k++;
+			}
+		return best;
+	}
+
+}
@@ -0,0 +1,181 @@
+package ticTacToe;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps improving a trained {@link QLearningAgent} from the games it plays in production. {@link OnlineLearningAgent}s
+ * created with {@link #newAgent()} play by the latest published greedy policy and record each of their transitions into a
+ * bounded {@link TransitionQueue}; a dedicated learner thread drains the queue, applies the one-step Q-learning update to the
+ * agent's q-table, and republishes the greedy policy every {@link #publishInterval} updates (and whenever the queue runs
+ * dry after an update).
+ *
+ * The serving side never waits for the learner: recording a transition is a single lock-free offer, which drops the
+ * transition if the queue is full, and the policy is read through a volatile reference. Only the learner thread touches the
+ * q-table.
+ *
+ * The rewards are the ones of the agent's {@link TTTEnvironment}, and only games where the agents play X are learned from.
+ */
+public class OnlineLearner {
+
+	/**
+	 * the agent whose q-table is updated
+	 */
+	final QLearningAgent learner;
+
+	final TransitionQueue queue;
+
+	/**
+	 * the number of updates between two published policies
+	 */
+	final int publishInterval;
+
+	/**
+	 * the latest published greedy policy
+	 */
+	volatile Policy policy;
+
+	/**
+	 * the number of updates applied so far. Only written by the learner thread.
+	 */
+	volatile long updates = 0;
+
+	volatile boolean running = false;
+
+	Thread thread;
+
+	/**
+	 * Games reconstructed from their hashes, indexed by hash. Only used by the learner thread.
+	 */
+	private final Game[] games = new Game[StateIndex.HASH_SPACE];
+
+	/**
+	 * @param learner         a trained agent
+	 * @param capacity        the maximum number of transitions waiting to be learned from
+	 * @param publishInterval the number of updates between two published policies
+	 */
+	public OnlineLearner(QLearningAgent learner, int capacity, int publishInterval) {
+		if (publishInterval <= 0)
+			throw new IllegalArgumentException("Publish interval must be positive");
+		this.learner = learner;
+		this.queue = new TransitionQueue(capacity);
+		this.publishInterval = publishInterval;
+		this.policy = (learner.getPolicy() != null) ? learner.getPolicy() : learner.extractPolicy();
+	}
+
+	/**
+	 * @return a new agent that plays by this learner's latest policy and feeds its games back to it
+	 */
+	public OnlineLearningAgent newAgent() {
+		return new OnlineLearningAgent(this);
+	}
+
+	/**
+	 * Starts the learner thread, a daemon thread.
+	 */
+	public synchronized void start() {
+		if (running)
+			return;
+		running = true;
+		thread = new Thread(this::run, "online-learner");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the learner thread after it has learned from all transitions queued so far, and publishes the final policy.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (!running)
+			return;
+		running = false;
+		thread.join();
+	}
+
+	void record(long transition) {
+		queue.offer(transition);
+	}
+
+	private void run() {
+		long sincePublish = 0;
+		while (true) {
+			long t = queue.poll();
+			if (t == TransitionQueue.EMPTY) {
+				if (sincePublish > 0) {
+					publish();
+					sincePublish = 0;
+				}
+				if (!running)
+					return;
+				LockSupport.parkNanos(1000000L);
+				continue;
+			}
+			update(t);
+			updates++;
+			if (++sincePublish >= publishInterval) {
+				publish();
+				sincePublish = 0;
+			}
+		}
+	}
+
+	/**
+	 * Applies the Q-learning update for a packed transition: Q(s,a) += alpha * (r + discount * max_a' Q(s',a') - Q(s,a)).
+	 */
+	void update(long t) {
+		Game s = game(TransitionQueue.state(t));
+		Game sPrime = game(TransitionQueue.nextState(t));
+		Move m = Move.of('X', TransitionQueue.cell(t));
+		double target = reward(TransitionQueue.kind(t)) + learner.discount * UpdateRule.maxQValue(learner.qTable, sPrime);
+		UpdateRule.moveTowards(learner.qTable, learner.alpha, s, m, target);
+	}
+
+	private double reward(int kind) {
+		switch (kind) {
+		case TransitionQueue.WIN:
+			return learner.env.winReward;
+		case TransitionQueue.LOSS:
+			return learner.env.loseReward;
+		case TransitionQueue.DRAW:
+			return learner.env.drawReward;
+		default:
+			return learner.env.livingReward;
+		}
+	}
+
+	private Game game(int hash) {
+		Game g = games[hash];
+		if (g == null) {
+			g = Game.inverseHash(hash);
+			g.evaluateGameState();
+			games[hash] = g;
+		}
+		return g;
+	}
+
+	private void publish() {
+		Policy p = learner.extractPolicy();
+		learner.setPolicy(p);
+		policy = p;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the number of transitions learned from so far
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return the number of transitions dropped because the learner could not keep up
+	 */
+	public long getDropped() {
+		return queue.getDropped();
+	}
+
+}
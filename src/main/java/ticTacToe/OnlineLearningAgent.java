@@ -0,0 +1,61 @@
+package ticTacToe;
+
+/**
+ * An agent that plays by the latest policy of an {@link OnlineLearner} and feeds every transition of the games it plays as X
+ * back to it: on each move the previous (state, move) pair is completed with the state the agent is now in, and when the game
+ * is over ({@link #gameOver}) with the final state and its reward. Recording a transition is a single lock-free offer to the
+ * learner's queue, so it adds practically nothing to the time taken to choose a move.
+ *
+ * An instance keeps track of the game it is playing, so it must only play one game at a time; create one agent per
+ * concurrent game with {@link OnlineLearner#newAgent()}, all feeding the same learner.
+ */
+public class OnlineLearningAgent extends Agent {
+
+	final OnlineLearner learner;
+
+	/**
+	 * the game being played, and the state (hash) and cell of this agent's last move in it; -1 if there is none
+	 */
+	private Game game = null;
+	private int lastState = -1;
+	private int lastCell = -1;
+
+	OnlineLearningAgent(OnlineLearner learner) {
+		super(learner.getPolicy());
+		this.learner = learner;
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		Policy p = learner.getPolicy();
+		this.policy = p;
+		Move m = p.getMove(g);
+		if (getName() != 'X' || m == null)
+			return m;
+
+		int s = g.hashCode();
+		if (g == game && lastState >= 0)
+			learner.record(TransitionQueue.pack(lastState, lastCell, TransitionQueue.ONGOING, s));
+		game = g;
+		lastState = s;
+		lastCell = m.cell();
+		return m;
+	}
+
+	@Override
+	public void gameOver(Game g) {
+		if (g == game && lastState >= 0) {
+			int kind;
+			if (g.getState() == Game.X_WON)
+				kind = TransitionQueue.WIN;
+			else if (g.getState() == Game.O_WON)
+				kind = TransitionQueue.LOSS;
+			else
+				kind = TransitionQueue.DRAW;
+			learner.record(TransitionQueue.pack(lastState, lastCell, kind, g.hashCode()));
+		}
+		game = null;
+		lastState = -1;
+	}
+
+}
@@ -0,0 +1,99 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A league of opponents for self-play training: the fixed {@link RandomAgent}, {@link AggressiveAgent} and
+ * {@link DefensiveAgent}, plus a bounded pool of frozen snapshots of the learning agent's policy. A {@link TTTEnvironment}
+ * created with a league samples a new opponent from it for every game.
+ *
+ * Snapshots are published lock-free: the pool is an immutable array behind an {@link AtomicReference}, which
+ * {@link #publish} replaces by compare-and-set with a copy that includes the new snapshot. Training threads sampling
+ * opponents only ever read the current array, so they never block, and never see a half-updated pool.
+ */
+public class OpponentLeague {
+
+	/**
+	 * the published snapshots, oldest first. The arrays are never modified once published.
+	 */
+	final AtomicReference<Policy[]> snapshots = new AtomicReference<Policy[]>(new Policy[0]);
+
+	/**
+	 * When more snapshots than this have been published, the oldest are dropped
+	 */
+	int maxSnapshots = 8;
+
+	/**
+	 * The probability of playing against a snapshot rather than one of the fixed opponents, once there are snapshots
+	 */
+	double snapshotProbability = 0.5;
+
+	public OpponentLeague() {
+	}
+
+	/**
+	 * @param maxSnapshots        the maximum number of snapshots kept
+	 * @param snapshotProbability the probability of sampling a snapshot rather than a fixed opponent
+	 */
+	public OpponentLeague(int maxSnapshots, double snapshotProbability) {
+		if (maxSnapshots < 1)
+			throw new IllegalArgumentException("maxSnapshots must be at least 1");
+		this.maxSnapshots = maxSnapshots;
+		this.snapshotProbability = snapshotProbability;
+	}
+
+	/**
+	 * Adds a frozen snapshot to the pool, dropping the oldest if the pool is full. Safe to call from any thread.
+	 *
+	 * @param snapshot a policy for X, which must not be modified afterwards
+	 */
+	public void publish(Policy snapshot) {
+		while (true) {
+			Policy[] current = snapshots.get();
+			int keep = Math.min(current.length, maxSnapshots - 1);
+			Policy[] next = new Policy[keep + 1];
+			System.arraycopy(current, current.length - keep, next, 0, keep);
+			next[keep] = snapshot;
+			if (snapshots.compareAndSet(current, next))
+				return;
+		}
+	}
+
+	/**
+	 * @return the snapshots currently in the pool, oldest first. The array must not be modified.
+	 */
+	public Policy[] getSnapshots() {
+		return snapshots.get();
+	}
+
+	/**
+	 * Creates a set of the fixed opponents for one environment (and so one thread), drawing from streams split off
+	 * {@code random}.
+	 *
+	 * @param random
+	 * @return a random, an aggressive and a (quiet) defensive agent
+	 */
+	Agent[] newFixedOpponents(SplittableRandom random) {
+		DefensivePolicy defensive = new DefensivePolicy(random.split());
+		defensive.setVerbose(false);
+		return new Agent[] { new RandomAgent(random.split()), new AggressiveAgent(random.split()),
+				new Agent(defensive) };
+	}
+
+	/**
+	 * Samples an opponent: with probability {@link #snapshotProbability} (if there are any snapshots) a uniformly chosen
+	 * snapshot, otherwise a uniformly chosen fixed opponent.
+	 *
+	 * @param fixed  the caller's own instances of the fixed opponents, see {@link #newFixedOpponents}
+	 * @param random the caller's random stream
+	 * @return the opponent
+	 */
+	public Agent sample(Agent[] fixed, SplittableRandom random) {
+		Policy[] pool = snapshots.get();
+		if (pool.length > 0 && random.nextDouble() < snapshotProbability)
+			return new SnapshotAgent(pool[random.nextInt(pool.length)], random.split());
+		return fixed[random.nextInt(fixed.length)];
+	}
+
+}
@@ -1,17 +1,22 @@
 package ticTacToe;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 
 /**
- * A Tic Tac Toe Policy implemented via a HashMap
+ * A Tic Tac Toe Policy. All policies are used through {@link Policy#getMove}; subclasses override it, e.g.
+ * {@link ArrayPolicy}, which the agents' policy extraction methods return, stores one byte per state. This class itself
+ * is the original implementation via a HashMap, kept for policies built by hand and for existing code that fills in
+ * {@link Policy#policy}.
  * @author ae187
  *
  */
 public class Policy {
 	
 	/**
-	 * a hash map that stores the policy
+	 * a hash map that stores the policy. Only used by this map based implementation, it's empty in subclasses.
 	 */
 	HashMap<Game, Move> policy=new HashMap<Game, Move>();
 	
@@ -44,19 +49,28 @@ public class Policy {
 	}
 	
 	/**
-	 * loads policy from file. One possible format for storing a policy is as a sequence of lines where each line
-	 * specifies the action/move determined by the policy in a particular game state. The game states should not
-	 * explicitly stored, only their hashes are stored. The {@link Game} object itself can be constructed using the 
-	 * {@link Game#inverseHash} method.
+	 * loads policy from file. The file is a binary {@link PolicyFile}, which stores the move for each state by its
+	 * dense id rather than the game states themselves; the {@link Game} objects of this map based policy are
+	 * constructed using the {@link Game#inverseHash} method. Use {@link PolicyFile#read} instead to load the policy as an
+	 * {@link ArrayPolicy} without constructing any games.
 	 *  
 	 * @param file
 	 */
 	public Policy(String file)
 	{
-		/* implement this constructor to load a stored policy from file. */
-		
+		PolicyFile f;
+		try {
+			f = PolicyFile.read(new File(file));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot load policy from " + file + ": " + e.getMessage(), e);
+		}
+		StateIndex index = StateIndex.xStates();
+		for (int id = 0; id < index.size(); id++) {
+			int cell = f.policy.moves[id];
+			if (cell != ArrayPolicy.NONE)
+				policy.put(index.game(id), Move.of('X', cell));
+		}
 	}
-
 	
 	
 	
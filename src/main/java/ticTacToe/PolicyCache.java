@@ -0,0 +1,246 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An on-disk cache of trained policies, so that agents whose training is deterministic, such as {@link ValueIterationAgent},
+ * don't retrain every time the game is started. Each policy is stored as a {@link PolicyFile} named after a {@link Key}: a
+ * SHA-256 digest of the algorithm and everything its result depends on, i.e. the discount factor, the rewards, the number of
+ * iterations or episodes, the random seed, and any further parameters of the algorithm, such as the opponent it trains
+ * against.
+ *
+ * By default the cache is the directory {@link #DEFAULT_DIRECTORY} under the project folder (the working directory). The
+ * system property {@code ttt.policyCache} sets a different directory, or turns the cache off if it is {@code off}. Bump
+ * {@link #CACHE_VERSION} whenever a change to the training code changes the policies it computes, so that stale entries are
+ * no longer used.
+ */
+public class PolicyCache {
+
+	/**
+	 * The name of the system property that sets the cache directory
+	 */
+	public static final String PROPERTY = "ttt.policyCache";
+
+	public static final String DEFAULT_DIRECTORY = "policy-cache";
+
+	/**
+	 * part of every key
+	 */
+	static final int CACHE_VERSION = 2;
+
+	/**
+	 * The parameters a cached policy was trained with.
+	 */
+	public static class Key {
+		final String algorithm;
+		final double discount;
+		final double winReward;
+		final double loseReward;
+		final double livingReward;
+		final double drawReward;
+		final long episodes;
+		final Long seed;
+		final String parameters;
+
+		/**
+		 * @param algorithm the name of the algorithm, e.g. the agent's class name
+		 * @param discount
+		 * @param winReward
+		 * @param loseReward
+		 * @param livingReward
+		 * @param drawReward
+		 * @param episodes  the number of iterations or episodes trained for, 0 if training runs until convergence
+		 * @param seed      the {@link RandomSource} seed, or null if training doesn't depend on it
+		 */
+		public Key(String algorithm, double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, long episodes, Long seed) {
+			this(algorithm, discount, winReward, loseReward, livingReward, drawReward, episodes, seed, "");
+		}
+
+		/**
+		 * As above, for an algorithm whose result also depends on {@code parameters}.
+		 *
+		 * @param parameters the other parameters, e.g. "opponent=RandomAgent, alpha=0.1"
+		 */
+		public Key(String algorithm, double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, long episodes, Long seed, String parameters) {
+			this.algorithm = algorithm;
+			this.discount = discount;
+			this.winReward = winReward;
+			this.loseReward = loseReward;
+			this.livingReward = livingReward;
+			this.drawReward = drawReward;
+			this.episodes = episodes;
+			this.seed = seed;
+			this.parameters = parameters;
+		}
+
+		/**
+		 * A key for a deterministic algorithm that computes a policy for {@code mdp}.
+		 */
+		public Key(String algorithm, double discount, TTTMDP mdp, long episodes) {
+			this(algorithm, discount, mdp.winReward, mdp.loseReward, mdp.livingReward, mdp.drawReward, episodes, null);
+		}
+
+		/**
+		 * @return the hex SHA-256 digest of the parameters
+		 */
+		public String digest() {
+			String s = CACHE_VERSION + "|" + algorithm + "|" + discount + "|" + winReward + "|" + loseReward + "|"
+					+ livingReward + "|" + drawReward + "|" + episodes + "|" + seed + "|" + parameters;
+			try {
+				byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+				StringBuilder hex = new StringBuilder(2 * d.length);
+				for (byte b : d)
+					hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+				return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+				// every Java platform has SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * @return the name of the cache file
+		 */
+		String fileName() {
+			return algorithm + "-" + digest().substring(0, 16) + ".pol";
+		}
+
+		/**
+		 * @param f
+		 * @return true if {@code f} was written for these parameters
+		 */
+		boolean matches(PolicyFile f) {
+			return f.getDiscount() == discount && f.getWinReward() == winReward && f.getLoseReward() == loseReward
+					&& f.getLivingReward() == livingReward && f.getDrawReward() == drawReward;
+		}
+
+		@Override
+		public String toString() {
+			return algorithm + "(discount=" + discount + ", rewards=" + winReward + "/" + loseReward + "/" + livingReward
+					+ "/" + drawReward + ", episodes=" + episodes + ", seed=" + seed
+					+ (parameters.isEmpty() ? "" : ", " + parameters) + ")";
+		}
+	}
+
+	private static PolicyCache defaultCache;
+
+	private static boolean defaultInitialised = false;
+
+	final File directory;
+
+	public PolicyCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the cache set by the system property {@code ttt.policyCache}, or in {@link #DEFAULT_DIRECTORY}; null if the
+	 *         cache is turned off
+	 */
+	public static synchronized PolicyCache getDefault() {
+		if (!defaultInitialised) {
+			String dir = System.getProperty(PROPERTY, DEFAULT_DIRECTORY).trim();
+			defaultCache = dir.equalsIgnoreCase("off") ? null : new PolicyCache(new File(dir));
+			defaultInitialised = true;
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Sets the cache used by the agents' default constructors.
+	 *
+	 * @param cache the cache, or null to turn caching off
+	 */
+	public static synchronized void setDefault(PolicyCache cache) {
+		defaultCache = cache;
+		defaultInitialised = true;
+	}
+
+	/**
+	 * Loads the policy cached for {@code key}. A cache file that can't be read, or that was written for other parameters, is
+	 * deleted.
+	 *
+	 * @param key
+	 * @return the cached policy, or null on a miss
+	 */
+	public Policy load(Key key) {
+		File file = new File(directory, key.fileName());
+		if (!file.isFile()) {
+			System.out.println("Policy cache miss: " + key);
+			return null;
+		}
+		try {
+			PolicyFile f = PolicyFile.read(file);
+			if (key.matches(f)) {
+				System.out.println("Policy cache hit: " + key + " from " + file);
+				return f.getPolicy();
+			}
+			System.out.println("Policy cache: invalidating " + file + ", it was written for other parameters");
+		} catch (IOException e) {
+			System.out.println("Policy cache: invalidating " + file + ": " + e.getMessage());
+		}
+		if (!file.delete())
+			System.out.println("WARNING: could not delete " + file);
+		return null;
+	}
+
+	/**
+	 * Stores {@code policy} as the policy trained with {@code key}'s parameters. Failing to write the cache is not fatal.
+	 *
+	 * @param key
+	 * @param policy
+	 */
+	public void store(Key key, Policy policy) {
+		File file = new File(directory, key.fileName());
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Cannot create " + directory);
+			ArrayPolicy p = (policy instanceof ArrayPolicy) ? (ArrayPolicy) policy : new ArrayPolicy(policy);
+			new PolicyFile(p, key.discount, key.winReward, key.loseReward, key.livingReward, key.drawReward).write(file);
+			System.out.println("Policy cache: stored " + key + " in " + file);
+		} catch (IOException e) {
+			System.out.println("WARNING: could not write policy cache " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Deletes every cached policy.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File f : files)
+			if (f.getName().endsWith(".pol") && !f.delete())
+				System.out.println("WARNING: could not delete " + f);
+	}
+
+	/**
+	 * Looks {@code key} up in the {@link #getDefault() default cache}.
+	 *
+	 * @param key
+	 * @return the cached policy, or null on a miss or if the cache is turned off
+	 */
+	static Policy lookup(Key key) {
+		PolicyCache cache = getDefault();
+		return (cache == null) ? null : cache.load(key);
+	}
+
+	/**
+	 * Stores {@code policy} in the {@link #getDefault() default cache}, if it is turned on.
+	 *
+	 * @param key
+	 * @param policy
+	 */
+	static void remember(Key key, Policy policy) {
+		PolicyCache cache = getDefault();
+		if (cache != null && policy != null)
+			cache.store(key, policy);
+	}
+
+}
@@ -0,0 +1,183 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a deterministic {@link Policy} into the Java source of a {@link Policy} subclass whose moves are a static
+ * {@code byte[]} indexed directly by {@link Game#hashCode}, i.e. by the base 3 number of the board and whose turn it is.
+ * Choosing a move is then one hash computation, one array load and one {@link Move#of} lookup, with no map and no
+ * {@link StateIndex}, which the JIT can inline into the loop of a tournament. The table takes {@link StateIndex#HASH_SPACE}
+ * bytes, and is stored in the class as a string literal of one character per hash, which is decoded when the class is
+ * loaded.
+ *
+ * The source can be written to a file with {@link #write}, and built with the rest of the code, or compiled and loaded at
+ * runtime with {@link #compile}, which needs a JDK (the {@link javax.tools} compiler).
+ */
+public class PolicyCompiler {
+
+	/**
+	 * the character stored for hashes without a move
+	 */
+	static final char NONE = '-';
+
+	/**
+	 * the number of table characters per line of the generated source
+	 */
+	static final int LINE = 243;
+
+	private PolicyCompiler() {
+	}
+
+	/**
+	 * @param p a deterministic policy for X
+	 * @return the cell played by {@code p} for each hash, or {@link ArrayPolicy#NONE}
+	 */
+	static byte[] table(Policy p) {
+		StateIndex index = StateIndex.xStates();
+		byte[] moves = new byte[StateIndex.HASH_SPACE];
+		Arrays.fill(moves, ArrayPolicy.NONE);
+		for (int id = 0; id < index.size(); id++) {
+			int hash = index.hash(id);
+			int cell;
+			if (p instanceof ArrayPolicy)
+				cell = ((ArrayPolicy) p).getCell(hash);
+			else {
+				Game g = index.game(id);
+				Move m = g.isTerminal() ? null : p.getMove(g);
+				cell = (m == null) ? -1 : m.cell();
+			}
+			if (cell >= 0)
+				moves[hash] = (byte) cell;
+		}
+		return moves;
+	}
+
+	/**
+	 * Generates the source of a policy class.
+	 *
+	 * @param p         a deterministic policy for X
+	 * @param className the fully qualified name of the generated class
+	 * @return the source
+	 */
+	public static String generate(Policy p, String className) {
+		int dot = className.lastIndexOf('.');
+		String pkg = (dot < 0) ? null : className.substring(0, dot);
+		String simpleName = className.substring(dot + 1);
+		byte[] moves = table(p);
+
+		StringBuilder s = new StringBuilder(moves.length + 4096);
+		if (pkg != null)
+			s.append("package ").append(pkg).append(";\n\n");
+		s.append("import ticTacToe.Game;\nimport ticTacToe.Move;\nimport ticTacToe.Policy;\n\n");
+		s.append("/**\n * Generated by {@link ticTacToe.PolicyCompiler}, do not edit.\n */\n");
+		s.append("public final class ").append(simpleName).append(" extends Policy {\n\n");
+		s.append("\t/**\n\t * the cell to play by {@link Game#hashCode}, or -1\n\t */\n");
+		s.append("\tstatic final byte[] MOVES = decode(\n");
+		for (int i = 0; i < moves.length; i += LINE) {
+			s.append("\t\t\t").append(i == 0 ? "\"" : "+ \"");
+			for (int h = i; h < Math.min(i + LINE, moves.length); h++)
+				s.append(moves[h] == ArrayPolicy.NONE ? NONE : (char) ('0' + moves[h]));
+			s.append("\"\n");
+		}
+		s.append("\t\t);\n\n");
+		s.append("\tprivate static byte[] decode(String s) {\n");
+		s.append("\t\tbyte[] moves = new byte[s.length()];\n");
+		s.append("\t\tfor (int h = 0; h < moves.length; h++)\n");
+		s.append("\t\t\tmoves[h] = (byte) (s.charAt(h) == '").append(NONE).append("' ? -1 : s.charAt(h) - '0');\n");
+		s.append("\t\treturn moves;\n\t}\n\n");
+		s.append("\t@Override\n\tpublic Move getMove(Game g) {\n");
+		s.append("\t\tint h = g.hashCode();\n");
+		s.append("\t\tint cell = MOVES[h];\n");
+		s.append("\t\treturn (cell < 0) ? null : Move.of((h % 3 == 1) ? 'X' : 'O', cell);\n\t}\n\n");
+		s.append("}\n");
+		return s.toString();
+	}
+
+	/**
+	 * Writes the source of a policy class under a source directory, e.g. src/main/java.
+	 *
+	 * @param p
+	 * @param className  the fully qualified name of the generated class
+	 * @param sourceRoot
+	 * @return the source file
+	 * @throws IOException
+	 */
+	public static File write(Policy p, String className, File sourceRoot) throws IOException {
+		File file = new File(sourceRoot, className.replace('.', '/') + ".java");
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create " + dir);
+		Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		try {
+			out.write(generate(p, className));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Generates, compiles and loads a policy class.
+	 *
+	 * @param p
+	 * @param className the fully qualified name of the generated class
+	 * @return an instance of it
+	 * @throws IOException           if the source or classes can't be written
+	 * @throws IllegalStateException if there is no Java compiler, e.g. when running on a JRE, or compilation fails
+	 */
+	public static Policy compile(Policy p, String className) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null)
+			throw new IllegalStateException("No Java compiler available, run on a JDK to compile policies");
+
+		File dir = Files.createTempDirectory("policy").toFile();
+		File source = write(p, className, dir);
+		String classPath = System.getProperty("java.class.path");
+		try {
+			// where this class was loaded from, which may not be on the class path, e.g. under a build tool
+			classPath = new File(PolicyCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+					+ File.pathSeparator + classPath;
+		} catch (URISyntaxException e) {
+		}
+		int status = compiler.run(null, null, null, "-nowarn", "-classpath", classPath, "-d", dir.getPath(),
+				source.getPath());
+		if (status != 0)
+			throw new IllegalStateException("Compiling " + source + " failed");
+
+		URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() },
+				PolicyCompiler.class.getClassLoader());
+		try {
+			return (Policy) loader.loadClass(className).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot load " + className, e);
+		}
+	}
+
+	/**
+	 * Generates the source of a policy class from a {@link PolicyFile}.
+	 *
+	 * @param args the policy file, the source directory, and the fully qualified name of the class
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.out.println("Usage: PolicyCompiler <policy file> <source directory> <class name>");
+			return;
+		}
+		PolicyFile f = PolicyFile.read(new File(args[0]));
+		File source = write(f.getPolicy(), args[2], new File(args[1]));
+		System.out.println("Wrote " + source);
+	}
+
+}
@@ -0,0 +1,192 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary policy file: an {@link ArrayPolicy} together with the parameters of the MDP it was computed for. The file is a
+ * {@link #HEADER_SIZE} byte header followed by one byte per state of {@link StateIndex#xStates()}, in id order: the cell to
+ * play, or {@link ArrayPolicy#NONE}. All numbers are little-endian. The header is:
+ *
+ * <pre>
+ * int    magic number {@link #MAGIC}
+ * short  format {@link #VERSION}
+ * short  header size
+ * int    number of states
+ * int    CRC32 of the moves
+ * double discount, win reward, lose reward, living reward, draw reward
+ * (zero padding up to the header size)
+ * </pre>
+ *
+ * Files are written and read through a {@link MappedByteBuffer}; loading one is a single copy of a few KB and constructs no
+ * {@link Game} objects.
+ */
+public class PolicyFile {
+
+	public static final int MAGIC = 0x54545450; // "TTTP"
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+
+	final ArrayPolicy policy;
+	final double discount;
+	final double winReward;
+	final double loseReward;
+	final double livingReward;
+	final double drawReward;
+
+	/**
+	 * @param policy
+	 * @param discount the discount factor the policy was computed with
+	 * @param mdp      the rewards it was computed with
+	 */
+	public PolicyFile(ArrayPolicy policy, double discount, TTTMDP mdp) {
+		this(policy, discount, mdp.winReward, mdp.loseReward, mdp.livingReward, mdp.drawReward);
+	}
+
+	public PolicyFile(ArrayPolicy policy, double discount, double winReward, double loseReward, double livingReward,
+			double drawReward) {
+		this.policy = policy;
+		this.discount = discount;
+		this.winReward = winReward;
+		this.loseReward = loseReward;
+		this.livingReward = livingReward;
+		this.drawReward = drawReward;
+	}
+
+	/**
+	 * Writes this policy file. It is written to a temporary file first and then moved into place, so readers never see a
+	 * partly written file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		byte[] moves = policy.moves;
+		File tmp = new File(file.getPath() + ".tmp");
+		FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + moves.length);
+			b.order(ByteOrder.LITTLE_ENDIAN);
+			b.putInt(MAGIC);
+			b.putShort(VERSION);
+			b.putShort((short) HEADER_SIZE);
+			b.putInt(moves.length);
+			b.putInt(checksum(moves));
+			b.putDouble(discount);
+			b.putDouble(winReward);
+			b.putDouble(loseReward);
+			b.putDouble(livingReward);
+			b.putDouble(drawReward);
+			b.position(HEADER_SIZE);
+			b.put(moves);
+			b.force();
+		} finally {
+			channel.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads a policy file and verifies its checksum.
+	 * 
+	 * @param file
+	 * @return the policy and its MDP parameters
+	 * @throws IOException if the file can't be read, is not a policy file of this version, or is corrupt
+	 */
+	public static PolicyFile read(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException(file + " is not a policy file");
+			MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(b, file.toString());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a policy file from a buffer, e.g. a mapped file or a class path resource.
+	 * 
+	 * @param b      the file's contents, from its position
+	 * @param source where the contents come from, for error messages
+	 * @return the policy and its MDP parameters
+	 * @throws IOException if it is not a policy file of this version, or it is corrupt
+	 */
+	static PolicyFile read(ByteBuffer b, String source) throws IOException {
+		b.order(ByteOrder.LITTLE_ENDIAN);
+		int start = b.position();
+		if (b.remaining() < HEADER_SIZE || b.getInt() != MAGIC)
+			throw new IOException(source + " is not a policy file");
+		short version = b.getShort();
+		short headerSize = b.getShort();
+		if (version != VERSION)
+			throw new IOException(source + " has unsupported policy file version " + version);
+		int count = b.getInt();
+		int crc = b.getInt();
+		double discount = b.getDouble();
+		double win = b.getDouble();
+		double lose = b.getDouble();
+		double living = b.getDouble();
+		double draw = b.getDouble();
+		if (count != StateIndex.xStates().size() || b.limit() - start < headerSize + count)
+			throw new IOException(source + " has " + count + " states, expected " + StateIndex.xStates().size());
+
+		byte[] moves = new byte[count];
+		b.position(start + headerSize);
+		b.get(moves);
+		if (checksum(moves) != crc)
+			throw new IOException(source + " is corrupt: checksum mismatch");
+		return new PolicyFile(new ArrayPolicy(moves), discount, win, lose, living, draw);
+	}
+
+	static int checksum(byte[] moves) {
+		CRC32 crc = new CRC32();
+		crc.update(moves, 0, moves.length);
+		return (int) crc.getValue();
+	}
+
+	public ArrayPolicy getPolicy() {
+		return policy;
+	}
+
+	public double getDiscount() {
+		return discount;
+	}
+
+	public double getWinReward() {
+		return winReward;
+	}
+
+	public double getLoseReward() {
+		return loseReward;
+	}
+
+	public double getLivingReward() {
+		return livingReward;
+	}
+
+	public double getDrawReward() {
+		return drawReward;
+	}
+
+	/**
+	 * @param discount
+	 * @param mdp
+	 * @return true if this policy was computed for the given parameters
+	 */
+	public boolean matches(double discount, TTTMDP mdp) {
+		return this.discount == discount && winReward == mdp.winReward && loseReward == mdp.loseReward
+				&& livingReward == mdp.livingReward && drawReward == mdp.drawReward;
+	}
+
+}
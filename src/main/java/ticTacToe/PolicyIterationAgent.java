@@ -1,11 +1,13 @@
 package ticTacToe;
 
 
+import java.io.File;
+import java.io.IOException;
 //import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.Random;
+import java.util.SplittableRandom;
 /**
  * A policy iteration agent. You should implement the following methods:
  * (1) {@link PolicyIterationAgent#evaluatePolicy}: this is the policy evaluation step from your lectures
@@ -35,21 +37,41 @@ public class PolicyIterationAgent extends Agent {
 	
 	double discount=0.9;
 	
+	/**
+	 * Where training progress is reported to, see {@link TrainingMetrics}. Null if it isn't reported.
+	 */
+	TrainingMetrics metrics=TrainingMetrics.getDefault();
+	
 	/**
 	 * The mdp model used, see {@link TTTMDP}
 	 */
 	TTTMDP mdp;
 	
 	/**
-	 * loads the policy from file if one exists. Policies should be stored in .pol files directly under the project folder.
+	 * Solves the default {@link TTTMDP}. Where several moves are equally good, the policy found depends on the random initial
+	 * policy, so it is only kept in (and taken from) the {@link PolicyCache} if a {@link RandomSource} seed is set: the
+	 * initial policy is then drawn from a {@link RandomSource#namedStream} of that seed, and the seed is part of the key.
 	 */
 	public PolicyIterationAgent() {
 		super();
 		this.mdp=new TTTMDP();
+		PolicyCache.Key key=null;
+		if (RandomSource.isSeeded())
+		{
+			key=new PolicyCache.Key("PolicyIterationAgent", discount, mdp.winReward, mdp.loseReward, mdp.livingReward,
+					mdp.drawReward, 0, RandomSource.getSeed());
+			Policy cached=PolicyCache.lookup(key);
+			if (cached!=null)
+			{
+				this.policy=cached;
+				return;
+			}
+		}
 		initValues();
-		initRandomPolicy();
+		initRandomPolicy(RandomSource.namedStream("PolicyIterationAgent"));
 		train();
-		
+		if (key!=null)
+			PolicyCache.remember(key, policy);
 		
 	}
 	
@@ -112,7 +134,14 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	public void initRandomPolicy()
 	{
-		Random r = new Random();
+		initRandomPolicy(RandomSource.newStream());
+	}
+
+	/**
+	 * As {@link #initRandomPolicy()}, drawing the moves from {@code r}
+	 */
+	void initRandomPolicy(SplittableRandom r)
+	{
 		for (Game g : this.policyValues.keySet()){
 
 			// if g is terminal upper bound of r.nextInt would be 0 so skip it
@@ -151,6 +180,8 @@ public class PolicyIterationAgent extends Agent {
 						// Store the utility of V(s) before we update with the new value
 						lastV = this.policyValues.get(g);
 						this.policyValues.put(g, v);
+						if (metrics!=null)
+							metrics.recordBackups(1);
 
 						// until V values converge for this policy
 					} while (!converges(delta, this.policyValues.get(g), lastV));
@@ -177,8 +208,7 @@ public class PolicyIterationAgent extends Agent {
 	protected boolean improvePolicy()
 	{
 		// save deep copy of old policy for comparison later
-				Policy np = new Policy();
-				np.policy = deepcopy(this.curPolicy);
+				HashMap<Game, Move> old = deepcopy(this.curPolicy);
 
 				// single step expectimax over all game states and moves
 				for(Game g : this.curPolicy.keySet()){
@@ -196,8 +226,18 @@ public class PolicyIterationAgent extends Agent {
 						}
 					}
 				}
+				if (metrics!=null)
+				{
+					int changed=0;
+					for (Entry<Game, Move> e : this.curPolicy.entrySet())
+						if (!e.getValue().equals(old.get(e.getKey())))
+							changed++;
+					metrics.recordChurn(curPolicy.isEmpty() ? 0.0 : (double) changed/curPolicy.size());
+					metrics.recordIteration();
+					metrics.maybeReport();
+				}
 				// compare current policy to deepcopy of last policy
-				if (this.curPolicy.equals(np.policy))
+				if (this.curPolicy.equals(old))
 					return false;
 				else{
 					return true;
@@ -232,8 +272,38 @@ public class PolicyIterationAgent extends Agent {
 				}while(this.improvePolicy());
 
 				// give policy to agent
-				Policy np = new Policy(curPolicy);
-				super.policy = np;
+				super.policy = new ArrayPolicy(curPolicy);
+				if (metrics!=null)
+					metrics.report();
+	}
+	
+	/**
+	 * Appends the current {@link #policyValues} to a {@link TableSnapshot} file, e.g. to warm-start another run.
+	 * @param file
+	 * @param quantise true to store the values as floats
+	 * @throws IOException
+	 */
+	public void saveValues(File file, boolean quantise) throws IOException
+	{
+		TableSnapshot.append(file, 0, 1, TableSnapshot.stateValues(policyValues), quantise);
+	}
+	
+	/**
+	 * Loads the latest values in a {@link TableSnapshot} file into {@link #policyValues}, so that policy evaluation starts
+	 * from them.
+	 * @param file
+	 * @return false if the file has no complete snapshot
+	 * @throws IOException
+	 */
+	public boolean loadValues(File file) throws IOException
+	{
+		TableSnapshot s=TableSnapshot.open(file);
+		if (s==null)
+			return false;
+		if (policyValues.isEmpty())
+			initValues();
+		s.fillStateValues(policyValues);
+		return true;
 	}
 	
 	public static void main(String[] args) throws IllegalMoveException
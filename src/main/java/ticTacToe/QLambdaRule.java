@@ -0,0 +1,88 @@
+package ticTacToe;
+
+/**
+ * Q(lambda) with eligibility traces: after every move the td error is used to update not just the last (state, move) pair
+ * but every recently visited pair, weighted by its trace, which decays by discount*lambda per move. Credit for a win or a
+ * loss thus propagates back through the whole game in a single episode, instead of one move per episode as with one-step
+ * Q-learning.
+ *
+ * By default this is Watkins's Q(lambda): the td error bootstraps from the best move in s', and the traces are cut whenever
+ * the agent plays an exploratory (non-greedy) move, since the moves before it are then no longer followed by the greedy
+ * policy. With {@code sarsa} set it is SARSA(lambda) instead, which bootstraps from the move actually played and never cuts
+ * the traces.
+ *
+ * The traces are kept in a sparse {@link TraceSet}, so each move costs O(episode length).
+ */
+public class QLambdaRule extends UpdateRule {
+
+	final double lambda;
+
+	final boolean sarsa;
+
+	/**
+	 * true for replacing traces, false for accumulating traces
+	 */
+	boolean replacing = true;
+
+	final TraceSet traces = new TraceSet(16);
+
+	/**
+	 * Watkins's Q(lambda) with replacing traces
+	 *
+	 * @param lambda the trace decay, between 0 (one-step Q-learning) and 1 (Monte Carlo)
+	 */
+	public QLambdaRule(double lambda) {
+		this(lambda, false);
+	}
+
+	/**
+	 * @param lambda the trace decay, between 0 and 1
+	 * @param sarsa  true for SARSA(lambda), false for Watkins's Q(lambda)
+	 */
+	public QLambdaRule(double lambda, boolean sarsa) {
+		if (lambda < 0 || lambda > 1)
+			throw new IllegalArgumentException("lambda must be between 0 and 1");
+		this.lambda = lambda;
+		this.sarsa = sarsa;
+	}
+
+	public void setReplacing(boolean replacing) {
+		this.replacing = replacing;
+	}
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		QTable table = agent.qTable;
+		double future = 0.0;
+		boolean greedyNext = true;
+		if (next != null) {
+			double max = maxQValue(table, o.sPrime);
+			double qNext = table.getQValue(o.sPrime, next);
+			future = sarsa ? qNext : max;
+			greedyNext = qNext >= max;
+		}
+
+		double tdError = o.localReward + agent.discount * future - table.getQValue(o.s, o.move);
+
+		// o.s is a copy made by the environment, so it is safe to keep
+		traces.visit(o.s, o.move, replacing);
+		for (int k = 0; k < traces.size(); k++) {
+			Game s = traces.getState(k);
+			Move a = traces.getMove(k);
+			table.addQValue(s, a, table.getQValue(s, a) + agent.alpha * tdError * traces.getTrace(k));
+		}
+
+		if (next == null || (!sarsa && !greedyNext))
+			traces.clear();
+		else
+			traces.decay(agent.discount * lambda);
+
+		return tdError;
+	}
+
+	@Override
+	void endEpisode(QLearningAgent agent) {
+		traces.clear();
+	}
+
+}
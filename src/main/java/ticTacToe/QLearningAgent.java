@@ -1,7 +1,9 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * A Q-Learning agent with a Q-Table, i.e. a table of Q-Values. This table is implemented in the {@link QTable} class.
@@ -38,10 +40,18 @@ public class QLearningAgent extends Agent {
 	double discount = 0.9;
 
 	/**
-	 * The epsilon in the epsilon greedy policy used during training.
+	 * The epsilon in the epsilon greedy policy used during training, unless a different
+	 * {@link #explorationPolicy} is set.
 	 */
 	double epsilon = 0.1;
 
+	/**
+	 * The policy the agent plays by while training. If it hasn't been set with
+	 * {@link #setExplorationPolicy}, {@link #train()} uses constant epsilon-greedy
+	 * exploration with {@link #epsilon}.
+	 */
+	EpsilonGreedyPolicy explorationPolicy = null;
+
 	/**
 	 * This is the Q-Table. To get an value for an (s,a) pair, i.e. a (game, move)
 	 * pair.
@@ -58,6 +68,67 @@ public class QLearningAgent extends Agent {
 	 */
 	TTTEnvironment env = new TTTEnvironment();
 
+	/**
+	 * An optional experience replay buffer. If not null, every outcome experienced during training is also stored here,
+	 * and after every move a batch of {@link #replayBatchSize} stored transitions is replayed.
+	 */
+	ReplayBuffer replayBuffer = null;
+
+	/**
+	 * The number of transitions replayed after every move when {@link #replayBuffer} is set
+	 */
+	int replayBatchSize = 32;
+
+	/**
+	 * The initial importance sampling correction for a prioritised {@link #replayBuffer}. It is annealed linearly to 1 over
+	 * the training episodes.
+	 */
+	double replayBeta = 0.4;
+
+	/**
+	 * This agent's random stream, used for exploration and to sample from the replay buffer. See {@link RandomSource}.
+	 */
+	SplittableRandom random = RandomSource.newStream();
+
+	/**
+	 * The rule used to update the q-table after every move. One-step Q-learning by default.
+	 */
+	UpdateRule updateRule = new QLearningRule();
+
+	/**
+	 * The number of moves (environment steps) played in training so far
+	 */
+	long envSteps = 0;
+
+	/**
+	 * Optional periodic checkpoints, which can stop training early once the greedy policy no longer changes and write
+	 * q-table snapshots. Null if there are none.
+	 */
+	TrainingCheckpoints checkpoints = null;
+
+	/**
+	 * The number of episodes played in training so far. {@link #train()} continues from here, which is not 0 if the agent
+	 * was resumed from a snapshot.
+	 */
+	int episodesPlayed = 0;
+
+	/**
+	 * Where training progress is reported to, see {@link TrainingMetrics}. Null if it isn't reported.
+	 */
+	TrainingMetrics metrics = TrainingMetrics.getDefault();
+
+	/**
+	 * reused between replay batches
+	 */
+	private int[] replayIndices;
+	private double[] replayWeights;
+	private double[] replayTargets;
+
+	/**
+	 * Games reconstructed from the hashes stored in the replay buffer, indexed by hash.
+	 */
+	private Game[] replayGames;
+
 	/**
 	 * Construct a Q-Learning agent that learns from interactions with
 	 * {@code opponent}.
@@ -77,6 +148,143 @@ public class QLearningAgent extends Agent {
 		train();
 	}
 
+	/**
+	 * Construct a Q-Learning agent that learns from interactions with {@code env}, but does not train it yet. Use this
+	 * constructor if you want to set further training options, such as {@link #setReplayBuffer}, before calling
+	 * {@link #train()} yourself.
+	 * 
+	 * @param env          the environment, which contains the opponent and the rewards
+	 * @param learningRate alpha
+	 * @param numEpisodes  The number of episodes (games) to train for
+	 * @param discount     the discount factor
+	 */
+	public QLearningAgent(TTTEnvironment env, double learningRate, int numEpisodes, double discount) {
+		this(env, learningRate, numEpisodes, discount, null);
+		initQTable();
+	}
+
+	/**
+	 * As above, but starting from {@code qTable} instead of a newly initialised q-table, e.g. for workers whose q-table is
+	 * replaced before they train anyway.
+	 */
+	QLearningAgent(TTTEnvironment env, double learningRate, int numEpisodes, double discount, QTable qTable) {
+		this.env = env;
+		this.alpha = learningRate;
+		this.numOfEpisodes = numEpisodes;
+		this.discount = discount;
+		if (qTable != null)
+			this.qTable = qTable;
+	}
+
+	/**
+	 * Makes {@link #train()} store every outcome in {@code buffer} and replay a batch of {@code batchSize} transitions
+	 * from it after every move.
+	 * 
+	 * @param buffer    the replay buffer, or null to turn experience replay off
+	 * @param batchSize the number of transitions replayed per move
+	 */
+	public void setReplayBuffer(ReplayBuffer buffer, int batchSize) {
+		this.replayBuffer = buffer;
+		this.replayBatchSize = batchSize;
+		this.replayIndices = new int[batchSize];
+		this.replayWeights = new double[batchSize];
+		this.replayTargets = new double[batchSize];
+	}
+
+	/**
+	 * Sets the policy the agent plays by while training, e.g. one with a decaying
+	 * epsilon or Boltzmann exploration. It is pointed at this agent's q-table when
+	 * training starts.
+	 * 
+	 * @param explorationPolicy
+	 */
+	public void setExplorationPolicy(EpsilonGreedyPolicy explorationPolicy) {
+		this.explorationPolicy = explorationPolicy;
+	}
+
+	/**
+	 * Sets the rule used to update the q-table while training, e.g. a {@link SarsaRule} or a {@link DoubleQRule}. Note that
+	 * transitions replayed from a {@link #replayBuffer} always use the one-step Q-learning update.
+	 * 
+	 * @param updateRule
+	 */
+	public void setUpdateRule(UpdateRule updateRule) {
+		this.updateRule = updateRule;
+	}
+
+	/**
+	 * @return the number of moves (environment steps) played in training so far, to compare how sample efficient the
+	 *         different update rules are.
+	 */
+	public long getEnvSteps() {
+		return envSteps;
+	}
+
+	/**
+	 * Makes {@link #train()} evaluate the greedy policy at the given checkpoints, and stop early when it has converged.
+	 * 
+	 * @param checkpoints the checkpoints, or null to always train for {@link #numOfEpisodes} episodes
+	 */
+	public void setCheckpoints(TrainingCheckpoints checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	/**
+	 * Sets where training progress is reported to.
+	 * 
+	 * @param metrics or null to not report it
+	 */
+	public void setMetrics(TrainingMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Loads the latest q-table snapshot from {@code directory}, which should be the directory of the
+	 * {@link TrainingCheckpoints} of an earlier, interrupted run, so that {@link #train()} continues that run from where
+	 * the snapshot was taken.
+	 * 
+	 * @param directory
+	 * @return true if a snapshot was found and loaded, false if training will start from scratch.
+	 * @throws IOException if the snapshot could not be read
+	 */
+	public boolean resume(File directory) throws IOException {
+		File snapshot = TrainingCheckpoints.latestSnapshot(directory);
+		if (snapshot == null)
+			return false;
+		this.episodesPlayed = TrainingCheckpoints.load(snapshot, this);
+		System.out.println("Resuming training from " + snapshot + " after " + episodesPlayed + " episodes.");
+		return true;
+	}
+
+	/**
+	 * Appends the q-table to a {@link TableSnapshot} file, with the number of episodes played so far.
+	 * 
+	 * @param file
+	 * @param quantise true to store the q-values as floats
+	 * @throws IOException
+	 */
+	public void saveQTable(File file, boolean quantise) throws IOException {
+		TableSnapshot.append(file, episodesPlayed, 9, TableSnapshot.qValues(qTable), quantise);
+	}
+
+	/**
+	 * Replaces the q-table with the latest one in a {@link TableSnapshot} file and extracts its policy, so the agent can
+	 * play, or continue training, without retraining from scratch.
+	 * 
+	 * @param file
+	 * @return false if the file has no complete snapshot
+	 * @throws IOException
+	 */
+	public boolean loadQTable(File file) throws IOException {
+		TableSnapshot s = TableSnapshot.open(file);
+		if (s == null)
+			return false;
+		this.qTable = s.toQTable();
+		this.episodesPlayed = (int) s.getStep();
+		this.policy = extractPolicy();
+		return true;
+	}
+
 	/**
 	 * Initialises all valid q-values -- Q(g,m) -- to 0.
 	 * 
@@ -99,10 +307,37 @@ public class QLearningAgent extends Agent {
 	/**
 	 * Uses default parameters for the opponent (a RandomAgent) and the learning
 	 * rate (0.2). Use other constructor to set these manually.
+	 * 
+	 * If a {@link RandomSource} seed is set, the agent, its environment and its
+	 * opponent draw from a {@link RandomSource#namedStream} of that seed, so
+	 * training only depends on the seed, not on which agents were created
+	 * before. The trained policy is then kept in the {@link PolicyCache}, and a
+	 * policy cached for the same seed and parameters is used instead of
+	 * training (leaving the q-table untrained). Without a seed training isn't
+	 * reproducible, so nothing is cached.
 	 */
 	public QLearningAgent() {
-		this(new RandomAgent(), 0.1, 100000, 0.9);
+		this(RandomSource.namedStream("QLearningAgent"));
+	}
 
+	private QLearningAgent(SplittableRandom streams) {
+		this(new TTTEnvironment(new RandomAgent(streams.split())), 0.1, 100000, 0.9);
+		this.env.random = streams.split();
+		this.random = streams.split();
+		PolicyCache.Key key = null;
+		if (RandomSource.isSeeded()) {
+			key = new PolicyCache.Key("QLearningAgent", discount, env.winReward, env.loseReward, env.livingReward,
+					env.drawReward, numOfEpisodes, RandomSource.getSeed(), "opponent="
+							+ env.getOpponent().getClass().getSimpleName() + ", alpha=" + alpha + ", epsilon=" + epsilon);
+			Policy cached = PolicyCache.lookup(key);
+			if (cached != null) {
+				this.policy = cached;
+				return;
+			}
+		}
+		train();
+		if (key != null)
+			PolicyCache.remember(key, policy);
 	}
 
 	/**
@@ -118,22 +353,36 @@ public class QLearningAgent extends Agent {
 	 */
 
 	public void train() {
+		trainEpisodes(numOfEpisodes - episodesPlayed);
+	}
+
+	/**
+	 * Plays {@code n} more training episodes, continuing from where training
+	 * left off (the exploration schedule carries on from
+	 * {@link #episodesPlayed}), and then extracts the policy. Training can be
+	 * continued in chunks this way, e.g. to evaluate the agent in between.
+	 * 
+	 * @param n the number of episodes to play, fewer if {@link #checkpoints}
+	 *          stop training early
+	 */
+	public void trainEpisodes(int n) {
+
+		if (this.explorationPolicy == null)
+			this.explorationPolicy = new EpsilonGreedyPolicy(this.qTable, EpsilonGreedyPolicy.Schedule.CONSTANT,
+					this.epsilon, this.epsilon, 1.0, false, this.random);
+		this.explorationPolicy.setQTable(this.qTable);
+		this.explorationPolicy.setEpisode(episodesPlayed);
 
 		// Loop through each training episode
-		for (int i = 0; i < numOfEpisodes; i++) {
-			// Continue to play the game until a terminal state is reached
-			while (!this.env.isTerminal()) {
+		this.updateRule.beginTraining(this);
 
-				// Get the current game state
-				Game g = this.env.getCurrentGameState();
+		for (int end = episodesPlayed + n; episodesPlayed < end;) {
+			// Pick the first move using the (by default epsilon-greedy) exploration policy
+			Move m = this.explorationPolicy.getMove(this.env.getCurrentGameState());
 
-				// If the game state is already terminal, skip to the next iteration
-				if (g.isTerminal()) {
-					continue;
-				}
+			// Continue to play the game until a terminal state is reached
+			while (!this.env.isTerminal()) {
 
-				// Pick a move using an epsilon-greedy strategy
-				Move m = epsilonMove(g);
 				Outcome outcome = null;
 
 				try {
@@ -143,22 +392,47 @@ public class QLearningAgent extends Agent {
 					// Handle an exception if the move is illegal
 					e.printStackTrace();
 				}
+				this.envSteps++;
+
+				// Pick the next move now, since on-policy rules such as SARSA need it for the update
+				Move next = outcome.sPrime.isTerminal() ? null : this.explorationPolicy.getMove(outcome.sPrime);
+
+				// Update the q-table, by default Q(g, m) = old Q(g, m) + alpha * (reward + discount * maxQvalue(g') - old Q(g, m))
+				double tdError = this.updateRule.update(this, outcome, next);
+				// NaN if the rule didn't update anything, which mustn't count towards the average td error
+				if (!Double.isNaN(tdError)) {
+					if (this.checkpoints != null)
+						this.checkpoints.recordTdError(tdError);
+					if (this.metrics != null)
+						this.metrics.recordTdError(tdError);
+				}
 
-				// Retrieve the Q-value for the current state and move
-				double qvalue = this.qTable.getQValue(outcome.s, outcome.move);
-				double newqvalue;
-
-				// Updated Q(g, m) = (1 - alpha) * old Q(g, m) + alpha * (reward + discount *
-				// maxQvalue(g'))
-				newqvalue = (1 - this.alpha) * qvalue
-						+ this.alpha * (outcome.localReward + this.discount * maxQvalue(outcome.sPrime));
+				if (this.replayBuffer != null) {
+					this.replayBuffer.add(outcome);
+					replay(Math.min(1.0, replayBeta + (1.0 - replayBeta) * episodesPlayed / numOfEpisodes));
+				}
 
-				// Store the updated Q-value in the Q-table
-				this.qTable.addQValue(outcome.s, outcome.move, newqvalue);
+				m = next;
 			}
 
+			this.updateRule.endEpisode(this);
+			if (this.metrics != null)
+				this.metrics.recordEpisode(this.env.getCurrentGameState().state);
+
 			// Reset the environment for the next episode
 			this.env.reset();
+			this.explorationPolicy.endEpisode();
+			episodesPlayed++;
+
+			boolean stop = this.checkpoints != null && this.checkpoints.isDue(episodesPlayed)
+					&& this.checkpoints.checkpoint(this, episodesPlayed);
+			if (this.metrics != null) {
+				if (this.checkpoints != null && this.checkpoints.isDue(episodesPlayed))
+					this.metrics.recordChurn(this.checkpoints.churn);
+				this.metrics.maybeReport();
+			}
+			if (stop)
+				break;
 		}
 
 		// --------------------------------------------------------
@@ -168,10 +442,61 @@ public class QLearningAgent extends Agent {
 			System.out.println("Unimplemented methods! First implement the train() & extractPolicy methods");
 			// System.exit(1);
 		}
+		if (this.metrics != null)
+			this.metrics.report();
 
 	}
 
-	
+	/**
+	 * Samples a batch of transitions from {@link #replayBuffer} and applies the Q-learning update to each of them. All
+	 * targets are computed from the q-values as they were before the batch, and only then are the updates applied. For a
+	 * prioritised buffer each update is scaled by its importance sampling weight, and the priorities are set to the new
+	 * td errors.
+	 * 
+	 * @param beta the importance sampling correction
+	 */
+	protected void replay(double beta) {
+		if (replayBuffer.size() < replayBatchSize)
+			return;
+
+		int n = replayBuffer.sample(replayIndices, replayWeights, beta, random);
+
+		for (int k = 0; k < n; k++) {
+			int i = replayIndices[k];
+			double future = replayBuffer.isDone(i) ? 0.0 : maxQvalue(replayState(replayBuffer.getNextState(i)));
+			replayTargets[k] = replayBuffer.getReward(i) + this.discount * future;
+		}
+
+		for (int k = 0; k < n; k++) {
+			int i = replayIndices[k];
+			Game g = replayState(replayBuffer.getState(i));
+			int a = replayBuffer.getAction(i);
+			Move m = Move.of('X', a);
+			double qvalue = this.qTable.getQValue(g, m);
+			double tdError = replayTargets[k] - qvalue;
+			this.qTable.addQValue(g, m, qvalue + this.alpha * replayWeights[k] * tdError);
+			replayBuffer.updatePriority(i, tdError);
+		}
+		if (this.metrics != null)
+			this.metrics.recordBackups(n);
+	}
+
+	/**
+	 * @param hash
+	 * @return the (evaluated) game with the given {@link Game#hashCode}, reconstructed once and then reused.
+	 */
+	private Game replayState(int hash) {
+		if (replayGames == null)
+			replayGames = new Game[59049];
+		Game g = replayGames[hash];
+		if (g == null) {
+			g = Game.inverseHash(hash);
+			g.evaluateGameState();
+			replayGames[hash] = g;
+		}
+		return g;
+	}
+
 	// Helper method to get the Q-value of sPrime
 	private Double maxQvalue(Game gPrime) {
 		// If the game state is terminal, return a Q-value of 0
@@ -194,52 +519,16 @@ public class QLearningAgent extends Agent {
 
 	}
 	
-	// Helper method for epsilon greedy policy
-		private Move epsilonMove(Game g) {
-			// Get all possible moves for the current game state
-			List<Move> moves = g.getPossibleMoves();
-			Move m = null;
-			Random r = new Random();
-
-			// Variables for tracking the Q-values
-			double qvalue = 0;
-			double max = -Integer.MAX_VALUE;
-
-			// Generate a random number to decide whether to explore or exploit
-			double random = r.nextDouble();
-
-			// Exploration: choose a random move with probability epsilon
-			if (random < epsilon) {
-				if (moves.size() != 0) {
-					Random random1 = new Random();
-					int num = random1.nextInt(moves.size()); // Pick a random move index
-					m = moves.get(num); // Select the random move
-				}
-			} else {
-				// Exploitation: choose the move with the highest Q-value
-				for (Move m1 : moves) {
-					qvalue = qTable.getQValue(g, m1);
-					if (qvalue >= max) {
-						max = qvalue; // Update the maximum Q-value
-						m = m1; // Select the move with the highest Q-value
-					}
-				}
-			}
-
-			return m; // Return the chosen move
-		}
-
-
 	/**
 	 * Implement this method. It should use the q-values in the {@code qTable} to
 	 * extract a policy and return it.
 	 *
 	 * @return the policy currently inherent in the QTable
 	 */
-	public Policy extractPolicy() {
+	public ArrayPolicy extractPolicy() {
 
 		// Create a new Policy object to store the optimal moves for each game state
-		Policy policy = new Policy();
+		ArrayPolicy policy = new ArrayPolicy();
 
 		// Iterate through all the game states present in the Q-table
 		for (Game game : this.qTable.keySet()) {
@@ -264,7 +553,8 @@ public class QLearningAgent extends Agent {
 			}
 
 			// Store the optimal move for the current game state in the policy
-			policy.policy.put(game, maxMove);
+			if (maxMove != null)
+				policy.setMove(game.hashCode(), maxMove.cell());
 		}
 
 		// Return the constructed Policy object
@@ -0,0 +1,15 @@
+package ticTacToe;
+
+/**
+ * The one-step Q-learning update: Q(s,a) is moved towards r + discount * max_a' Q(s',a'). This is off-policy: the target
+ * does not depend on the move the agent actually plays next.
+ */
+public class QLearningRule extends UpdateRule {
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		double target = o.localReward + agent.discount * maxQValue(agent.qTable, o.sPrime);
+		return moveTowards(agent.qTable, agent.alpha, o.s, o.move, target);
+	}
+
+}
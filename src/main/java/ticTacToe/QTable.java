@@ -1,6 +1,7 @@
 package ticTacToe;
 
 import java.util.HashMap;
+import java.util.Map;
 /**
  * This class a simple implementation of a Q-Table. It's a subclass of {@link java.util.HashMap}, so all the methods from 
  * that class are available. Two methods for adding and retrieving q-values to/from the table are provided.
@@ -54,6 +55,17 @@ public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 		this.get(g).put(m, v);
 	}
 	
+	/**
+	 * @return a copy of this table that shares the (immutable) game and move keys but not the maps of q-values, so it can be
+	 * updated independently.
+	 */
+	public QTable deepCopy()
+	{
+		QTable copy=new QTable();
+		for (Map.Entry<Game, HashMap<Move,Double>> e: entrySet())
+			copy.put(e.getKey(), new HashMap<Move,Double>(e.getValue()));
+		return copy;
+	}
 	
 
 }
@@ -0,0 +1,341 @@
+package ticTacToe;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, read-only copy of a value function or q-table, with each value quantised to 16 or 8 bits. The values are
+ * indexed like those of a {@link TableSnapshot}: {@link #width} per state of {@link StateIndex#xStates()}, by id (1 for
+ * state values, 9 for q-values, one per cell), NaN where there is none. They are dequantised on every read.
+ *
+ * Each value v is first mapped to {@code (v - offset) / scale} with a per-table offset and scale chosen from the range of
+ * the table, and then stored as:
+ * <ul>
+ * <li>{@link Mode#FLOAT16}: an IEEE half precision float, rounded by hand straight from the double since Java 8 has no
+ * float16 type (going through a float would round twice). The values are scaled into [-1, 1], so the error is at most half
+ * an ulp of a half in [0.5, 1), {@code scale * 2^-12}.</li>
+ * <li>{@link Mode#INT8}: a signed byte in [-127, 127], with -128 standing for NaN. The error is at most {@code scale / 2},
+ * i.e. 1/508 of the range of the table.</li>
+ * </ul>
+ * {@link #errorBound()} adds a few ulps of the largest value for the rounding of the double arithmetic around them.
+ *
+ * {@link #report} measures the actual error against the original values, and how often the greedy policy changes because of
+ * it, for a {@link ValueIterationAgent} or a {@link QLearningAgent}.
+ */
+public class QuantizedTable {
+
+	public enum Mode {
+		FLOAT16, INT8
+	}
+
+	/**
+	 * the byte standing for NaN in {@link Mode#INT8}
+	 */
+	static final byte INT8_NAN = Byte.MIN_VALUE;
+
+	final StateIndex index = StateIndex.xStates();
+
+	final Mode mode;
+
+	final int width;
+
+	final double offset;
+
+	final double scale;
+
+	/**
+	 * the quantised values, only one of which is used, depending on the {@link #mode}
+	 */
+	final short[] halves;
+	final byte[] bytes;
+
+	/**
+	 * Quantises a table.
+	 *
+	 * @param values the values by {@link StateIndex#xStates()} id, {@code width} per state, NaN where there is none, e.g.
+	 *               from {@link TableSnapshot#stateValues} or {@link TableSnapshot#qValues}
+	 * @param width  the number of values per state
+	 * @param mode
+	 */
+	public QuantizedTable(double[] values, int width, Mode mode) {
+		if (values.length != index.size() * width)
+			throw new IllegalArgumentException("Expected " + index.size() * width + " values, got " + values.length);
+		this.mode = mode;
+		this.width = width;
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (double v : values)
+			if (!Double.isNaN(v)) {
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+		if (min > max) {
+			min = 0;
+			max = 0;
+		}
+		this.offset = (min + max) / 2;
+		double halfRange = (max - min) / 2;
+		if (halfRange == 0)
+			halfRange = 1;
+		this.scale = (mode == Mode.INT8) ? halfRange / 127 : halfRange;
+
+		if (mode == Mode.INT8) {
+			this.bytes = new byte[values.length];
+			this.halves = null;
+			for (int i = 0; i < values.length; i++)
+				bytes[i] = Double.isNaN(values[i]) ? INT8_NAN
+						: (byte) Math.max(-127, Math.min(127, Math.round((values[i] - offset) / scale)));
+		} else {
+			this.halves = new short[values.length];
+			this.bytes = null;
+			for (int i = 0; i < values.length; i++)
+				halves[i] = toHalf((values[i] - offset) / scale);
+		}
+	}
+
+	/**
+	 * @param table a map of state values, such as a value function
+	 * @param mode
+	 * @return the table quantised
+	 */
+	public static QuantizedTable of(Map<Game, Double> table, Mode mode) {
+		return new QuantizedTable(TableSnapshot.stateValues(table), 1, mode);
+	}
+
+	/**
+	 * @param table
+	 * @param mode
+	 * @return the q-table quantised
+	 */
+	public static QuantizedTable of(QTable table, Mode mode) {
+		return new QuantizedTable(TableSnapshot.qValues(table), 9, mode);
+	}
+
+	/**
+	 * @param i the index of a value
+	 * @return the value, dequantised
+	 */
+	double get(int i) {
+		if (mode == Mode.INT8)
+			return (bytes[i] == INT8_NAN) ? Double.NaN : offset + scale * bytes[i];
+		return offset + scale * toFloat(halves[i]);
+	}
+
+	/**
+	 * @param hash   the {@link Game#hashCode} of a state
+	 * @param column 0 for a state value, the cell for a q-value
+	 * @return the value, dequantised, NaN if there is none
+	 */
+	public double getValue(int hash, int column) {
+		int id = index.id(hash);
+		return (id < 0) ? Double.NaN : get(id * width + column);
+	}
+
+	/**
+	 * @return all values, dequantised, in the order they were given
+	 */
+	public double[] toArray() {
+		int n = (mode == Mode.INT8) ? bytes.length : halves.length;
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++)
+			values[i] = get(i);
+		return values;
+	}
+
+	/**
+	 * @return the largest possible error of a dequantised value
+	 */
+	public double errorBound() {
+		double quantisation = (mode == Mode.INT8) ? scale / 2 : scale * 0x1p-12;
+		// the subtraction, division, multiplication and addition around the quantisation each round to half an ulp
+		double largest = Math.abs(offset) + ((mode == Mode.INT8) ? 127 * scale : scale);
+		return quantisation + 4 * Math.ulp(largest);
+	}
+
+	/**
+	 * @return the number of bytes taken by the values
+	 */
+	public long sizeInBytes() {
+		return (mode == Mode.INT8) ? bytes.length : 2L * halves.length;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Converts a double to the bits of the nearest half precision float, rounding to nearest in one step. Values too large
+	 * for a half become infinities, values too small become (signed) zeros.
+	 *
+	 * @param d
+	 * @return the half precision bits
+	 */
+	static short toHalf(double d) {
+		long bits = Double.doubleToLongBits(d);
+		int sign = (int) (bits >>> 48) & 0x8000;
+		long abs = bits & 0x7fffffffffffffffL;
+		if (abs >= 0x7ff0000000000000L) // infinity or NaN, keeping some of the NaN payload
+			return (short) (sign | 0x7c00 | ((abs > 0x7ff0000000000000L) ? 0x200 : 0));
+		// add half an ulp of the half, so that the truncation below rounds to nearest
+		long rounded = abs + (1L << 41);
+		if (rounded >= 0x40f0000000000000L) // too large: infinity
+			return (short) (sign | 0x7c00);
+		if (rounded >= 0x3f10000000000000L) // normal half: rebias the exponent from 1023 to 15
+			return (short) (sign | ((rounded - 0x3f00000000000000L) >>> 42));
+		if (abs < 0x3e60000000000000L) // below half the smallest subnormal half: zero
+			return (short) sign;
+		// subnormal half: shift the mantissa, with its implicit leading 1, into place
+		int exponent = (int) (abs >>> 52);
+		long mantissa = (abs & 0xfffffffffffffL) | 0x10000000000000L;
+		return (short) (sign | ((mantissa + (1L << (1050 - exponent))) >>> (1051 - exponent)));
+	}
+
+	/**
+	 * @param h the bits of a half precision float
+	 * @return its value
+	 */
+	static float toFloat(short h) {
+		int bits = h & 0xffff;
+		int sign = (bits & 0x8000) << 16;
+		int exponent = (bits >>> 10) & 0x1f;
+		int mantissa = bits & 0x3ff;
+		if (exponent == 0) { // zero or subnormal
+			float v = mantissa * 0x1p-24f;
+			return (sign == 0) ? v : -v;
+		}
+		if (exponent == 31) // infinity or NaN
+			return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+
+	/**
+	 * The effect of quantising an agent's table.
+	 */
+	public static class Report {
+		Mode mode;
+		double maxError;
+		double meanError;
+		double errorBound;
+		long bytes;
+		long doubleBytes;
+		/**
+		 * the fraction of states whose greedy move changes
+		 */
+		double disagreement;
+
+		public double getMaxError() {
+			return maxError;
+		}
+
+		public double getDisagreement() {
+			return disagreement;
+		}
+
+		@Override
+		public String toString() {
+			return mode + ": " + bytes + " bytes (" + doubleBytes + " as doubles), max error " + maxError
+					+ " (bound " + errorBound + "), mean error " + meanError + ", policy disagreement " + disagreement;
+		}
+	}
+
+	/**
+	 * Compares the dequantised values with the originals.
+	 */
+	Report measure(double[] original) {
+		Report r = new Report();
+		r.mode = mode;
+		r.errorBound = errorBound();
+		r.bytes = sizeInBytes();
+		r.doubleBytes = 8L * original.length;
+		int n = 0;
+		double sum = 0;
+		for (int i = 0; i < original.length; i++)
+			if (!Double.isNaN(original[i])) {
+				double e = Math.abs(get(i) - original[i]);
+				r.maxError = Math.max(r.maxError, e);
+				sum += e;
+				n++;
+			}
+		r.meanError = (n == 0) ? 0 : sum / n;
+		return r;
+	}
+
+	/**
+	 * Quantises a value iteration agent's value function, and compares the policy extracted from the dequantised values with
+	 * the agent's own.
+	 *
+	 * @param agent a trained agent
+	 * @param mode
+	 * @return the report
+	 */
+	public static Report report(ValueIterationAgent agent, Mode mode) {
+		double[] original = TableSnapshot.stateValues(agent.valueFunction);
+		QuantizedTable t = new QuantizedTable(original, 1, mode);
+		Report r = t.measure(original);
+
+		ValueIterationAgent quantised = new ValueIterationAgent(agent.discount, agent.mdp.winReward,
+				agent.mdp.loseReward, agent.mdp.livingReward, agent.mdp.drawReward);
+		quantised.valueFunction = new HashMap<Game, Double>();
+		for (Map.Entry<Game, Double> e : agent.valueFunction.entrySet())
+			quantised.valueFunction.put(e.getKey(), t.getValue(e.getKey().hashCode(), 0));
+		r.disagreement = quantised.extractPolicy().disagreement(agent.extractPolicy());
+		return r;
+	}
+
+	/**
+	 * Quantises a q-learning agent's q-table, and compares the greedy moves over the dequantised q-values with those over
+	 * the originals.
+	 *
+	 * @param agent a trained agent
+	 * @param mode
+	 * @return the report
+	 */
+	public static Report report(QLearningAgent agent, Mode mode) {
+		double[] original = TableSnapshot.qValues(agent.qTable);
+		QuantizedTable t = new QuantizedTable(original, 9, mode);
+		Report r = t.measure(original);
+		double[] dequantised = t.toArray();
+		int states = 0;
+		int changed = 0;
+		for (int id = 0; id < t.index.size(); id++) {
+			int a = greedy(original, id * 9);
+			if (a < 0)
+				continue;
+			states++;
+			if (greedy(dequantised, id * 9) != a)
+				changed++;
+		}
+		r.disagreement = (states == 0) ? 0 : (double) changed / states;
+		return r;
+	}
+
+	/**
+	 * @return the cell with the highest of the 9 q-values from {@code from}, the first one on ties, -1 if there are none
+	 */
+	static int greedy(double[] q, int from) {
+		int best = -1;
+		for (int c = 0; c < 9; c++)
+			if (!Double.isNaN(q[from + c]) && (best < 0 || q[from + c] > q[from + best]))
+				best = c;
+		return best;
+	}
+
+	/**
+	 * Prints the reports for a value iteration and a q-learning agent in both modes.
+	 */
+	public static void main(String[] args) {
+		PolicyCache.setDefault(null);
+		ValueIterationAgent vi = new ValueIterationAgent();
+		QLearningAgent ql = new QLearningAgent();
+		for (Mode mode : Mode.values()) {
+			System.out.println("Value iteration, " + report(vi, mode));
+			System.out.println("Q-learning, " + report(ql, mode));
+		}
+	}
+
+}
@@ -1,5 +1,6 @@
 package ticTacToe;
 
+import java.util.SplittableRandom;
 
 /**
  * A random agent, i.e. ones with a {@link RandomPolicy} that picks a move randomly from all available moves with equal probability.  
@@ -16,6 +17,14 @@ public class RandomAgent extends Agent {
 		
 	}
 	
+	/**
+	 * A random agent that draws its moves from {@code r}
+	 * @param r
+	 */
+	public RandomAgent(SplittableRandom r) {
+		super(new RandomPolicy(r));
+	}
+	
 	
 
 }
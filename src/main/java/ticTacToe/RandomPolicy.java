@@ -3,7 +3,7 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This is a Policy which picks an move randomly with equal probability from the available moves. 
@@ -12,7 +12,24 @@ import java.util.Random;
  */
 public class RandomPolicy extends Policy{
 
-	Random r = new Random();
+	SplittableRandom r;
+	
+	/**
+	 * A random policy with its own stream from {@link RandomSource}
+	 */
+	public RandomPolicy()
+	{
+		this(RandomSource.newStream());
+	}
+	
+	/**
+	 * A random policy that draws its moves from {@code r}
+	 * @param r
+	 */
+	public RandomPolicy(SplittableRandom r)
+	{
+		this.r=r;
+	}
 	
 	@Override
 	public Move getMove(Game g) {
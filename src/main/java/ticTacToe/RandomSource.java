@@ -0,0 +1,94 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * The central source of randomness for agents, policies and environments. Everything that needs random numbers takes its
+ * own independent {@link SplittableRandom} stream from here (or is handed one) instead of creating an unseeded
+ * {@link java.util.Random}. The streams are cheap to draw from, and since each one belongs to a single agent, policy or
+ * worker thread, they are never contended.
+ *
+ * If a seed is set, either with {@link #setSeed} or with the system property {@code ttt.seed}, every stream handed out
+ * afterwards is determined by that seed and the order in which the streams were requested, so training runs and
+ * tournaments can be reproduced exactly. Worker threads should be handed their streams up front, by the thread that creates
+ * them, e.g. with {@link #newStreams(int)}, so that the order does not depend on thread scheduling.
+ */
+public final class RandomSource {
+
+	/**
+	 * The name of the system property that can be used to set the seed
+	 */
+	public static final String SEED_PROPERTY = "ttt.seed";
+
+	private static SplittableRandom root;
+
+	private static Long seed;
+
+	static {
+		String s = System.getProperty(SEED_PROPERTY);
+		if (s != null)
+			setSeed(Long.parseLong(s.trim()));
+		else
+			root = new SplittableRandom();
+	}
+
+	private RandomSource() {
+	}
+
+	/**
+	 * Reseeds the source. All streams handed out after this call are determined by {@code seed}.
+	 *
+	 * @param seed
+	 */
+	public static synchronized void setSeed(long seed) {
+		RandomSource.seed = seed;
+		root = new SplittableRandom(seed);
+	}
+
+	/**
+	 * @return true if a seed has been set, i.e. if runs are reproducible
+	 */
+	public static synchronized boolean isSeeded() {
+		return seed != null;
+	}
+
+	/**
+	 * @return the seed that was set, or null if the source is unseeded
+	 */
+	public static synchronized Long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return a new random stream, independent from all other streams handed out.
+	 */
+	public static synchronized SplittableRandom newStream() {
+		return root.split();
+	}
+
+	/**
+	 * A stream that only depends on the seed and {@code name}, not on how many streams were handed out before, e.g. for an
+	 * agent whose training should be reproducible however the agents around it were created.
+	 *
+	 * @param name what the stream is for, e.g. the class of the agent
+	 * @return if a seed is set, a stream determined by the seed and {@code name}; otherwise a new stream, as
+	 *         {@link #newStream()}
+	 */
+	public static synchronized SplittableRandom namedStream(String name) {
+		if (seed == null)
+			return root.split();
+		return new SplittableRandom(seed * 31 + name.hashCode()).split();
+	}
+
+	/**
+	 * @param n
+	 * @return {@code n} new independent random streams, e.g. one for each worker thread.
+	 */
+	public static synchronized SplittableRandom[] newStreams(int n) {
+		SplittableRandom[] streams = new SplittableRandom[n];
+		for (int i = 0; i < n; i++)
+			streams[i] = root.split();
+		return streams;
+	}
+
+}
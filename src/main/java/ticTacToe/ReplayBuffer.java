@@ -0,0 +1,213 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * An experience replay buffer: a fixed-capacity ring buffer of (s,a,r,s',done) transitions, i.e. {@link Outcome}s, that a
+ * learning agent can sample from again and again instead of using each outcome once and throwing it away.
+ *
+ * Transitions are stored in primitive arrays rather than as {@link Outcome} objects. States are stored as their
+ * {@link Game#hashCode} (use {@link Game#inverseHash} to get the {@link Game} back), and actions as the index of the cell
+ * played, {@code 3*x+y}, the same scheme as used by {@link HumanAgent}. This means logged games can be replayed into the
+ * buffer with {@link #add(int, int, double, int, boolean)} without ever constructing the {@link Game} objects.
+ *
+ * The buffer supports uniform sampling, and prioritised sampling (Schaul et al. 2016), where transitions are sampled with
+ * probability proportional to {@code (|td error|+minPriority)^priorityExponent} using a {@link SumTree}. Once the buffer is full,
+ * the oldest transition is overwritten.
+ */
+public class ReplayBuffer {
+
+	final int capacity;
+
+	final int[] states;
+	final byte[] actions;
+	final double[] rewards;
+	final int[] nextStates;
+	final boolean[] done;
+
+	/**
+	 * index of the slot the next transition is written to
+	 */
+	int next = 0;
+
+	/**
+	 * number of transitions currently stored
+	 */
+	int size = 0;
+
+	/**
+	 * The priorities of the stored transitions. Null if this buffer samples uniformly.
+	 */
+	final SumTree priorities;
+
+	/**
+	 * How much prioritisation is used, alpha in the paper: 0 is uniform, 1 is fully proportional to the td error.
+	 */
+	double priorityExponent = 0.6;
+
+	/**
+	 * Added to the absolute td error so that no transition has zero probability of being replayed
+	 */
+	double minPriority = 0.01;
+
+	/**
+	 * New transitions get the largest priority seen so far, so that they are replayed at least once
+	 */
+	double maxPriority = 1.0;
+
+	/**
+	 * A buffer that samples transitions uniformly.
+	 *
+	 * @param capacity the maximum number of transitions stored
+	 */
+	public ReplayBuffer(int capacity) {
+		this(capacity, false, 0.0);
+	}
+
+	/**
+	 * A buffer that samples transitions proportionally to their priority.
+	 *
+	 * @param capacity         the maximum number of transitions stored
+	 * @param priorityExponent between 0 (uniform) and 1 (fully prioritised)
+	 */
+	public ReplayBuffer(int capacity, double priorityExponent) {
+		this(capacity, true, priorityExponent);
+	}
+
+	private ReplayBuffer(int capacity, boolean prioritised, double priorityExponent) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive");
+		this.capacity = capacity;
+		this.states = new int[capacity];
+		this.actions = new byte[capacity];
+		this.rewards = new double[capacity];
+		this.nextStates = new int[capacity];
+		this.done = new boolean[capacity];
+		this.priorities = prioritised ? new SumTree(capacity) : null;
+		if (prioritised)
+			this.priorityExponent = priorityExponent;
+	}
+
+	/**
+	 * Adds the transition {@code o} to the buffer.
+	 *
+	 * @param o
+	 */
+	public void add(Outcome o) {
+		add(o.s.hashCode(), 3 * o.move.x + o.move.y, o.localReward, o.sPrime.hashCode(), o.sPrime.isTerminal());
+	}
+
+	/**
+	 * Adds a transition in primitive form to the buffer, overwriting the oldest one if the buffer is full.
+	 *
+	 * @param s      the {@link Game#hashCode} of the source state
+	 * @param a      the cell played, {@code 3*x+y}
+	 * @param r      the reward received
+	 * @param sPrime the {@link Game#hashCode} of the target state
+	 * @param done   true if {@code sPrime} is terminal
+	 */
+	public void add(int s, int a, double r, int sPrime, boolean done) {
+		int i = next;
+		states[i] = s;
+		actions[i] = (byte) a;
+		rewards[i] = r;
+		nextStates[i] = sPrime;
+		this.done[i] = done;
+		if (priorities != null)
+			priorities.set(i, Math.pow(maxPriority, priorityExponent));
+
+		next = (next + 1) % capacity;
+		if (size < capacity)
+			size++;
+	}
+
+	/**
+	 * Samples {@code indices.length} transitions (with replacement) and writes their slots into {@code indices}. For a
+	 * prioritised buffer, the normalised importance-sampling weight of each sample is written into {@code weights}; for a
+	 * uniform buffer all weights are 1. Nothing is allocated.
+	 *
+	 * @param indices output: the slots of the sampled transitions
+	 * @param weights output: the importance sampling weights, same length as {@code indices}
+	 * @param beta    how much to correct for the prioritised sampling bias, between 0 (none) and 1 (fully)
+	 * @param r       the random number generator to sample with
+	 * @return the number of transitions sampled, which is 0 if the buffer is empty
+	 */
+	public int sample(int[] indices, double[] weights, double beta, SplittableRandom r) {
+		if (size == 0)
+			return 0;
+
+		if (priorities == null) {
+			for (int k = 0; k < indices.length; k++) {
+				indices[k] = r.nextInt(size);
+				weights[k] = 1.0;
+			}
+			return indices.length;
+		}
+
+		// stratified sampling: one sample from each of indices.length equal segments of the total priority
+		double total = priorities.total();
+		double segment = total / indices.length;
+		double maxWeight = 0.0;
+		for (int k = 0; k < indices.length; k++) {
+			int i = priorities.find(Math.min((k + r.nextDouble()) * segment, Math.nextDown(total)));
+			if (i >= size)
+				i = size - 1;
+			indices[k] = i;
+			double p = priorities.get(i) / total;
+			weights[k] = Math.pow(size * p, -beta);
+			maxWeight = Math.max(maxWeight, weights[k]);
+		}
+		for (int k = 0; k < indices.length; k++)
+			weights[k] /= maxWeight;
+
+		return indices.length;
+	}
+
+	/**
+	 * Sets the priority of the transition in slot {@code i} according to its latest td error. Does nothing for a uniform
+	 * buffer.
+	 *
+	 * @param i
+	 * @param tdError
+	 */
+	public void updatePriority(int i, double tdError) {
+		if (priorities == null)
+			return;
+		double p = Math.abs(tdError) + minPriority;
+		maxPriority = Math.max(maxPriority, p);
+		priorities.set(i, Math.pow(p, priorityExponent));
+	}
+
+	public boolean isPrioritised() {
+		return priorities != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int getState(int i) {
+		return states[i];
+	}
+
+	public int getAction(int i) {
+		return actions[i];
+	}
+
+	public double getReward(int i) {
+		return rewards[i];
+	}
+
+	public int getNextState(int i) {
+		return nextStates[i];
+	}
+
+	public boolean isDone(int i) {
+		return done[i];
+	}
+
+}
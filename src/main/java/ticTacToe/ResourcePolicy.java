@@ -0,0 +1,113 @@
+package ticTacToe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The optimal policy for the default {@link TTTMDP} rewards and discount factor, as computed by {@link ValueIterationAgent}.
+ * It never changes, so it is computed once by the build: in the process-classes phase Maven runs {@link #main}, which writes
+ * it as the {@link PolicyFile} {@link #RESOURCE} next to the compiled classes, and so it is packaged into the jar. It is
+ * read from the class path the first time a move is asked for (or {@link #isAvailable()} is called), and then shared by
+ * all instances.
+ */
+public class ResourcePolicy extends Policy {
+
+	/**
+	 * the name of the resource, relative to this class
+	 */
+	public static final String RESOURCE = "optimal-vi.pol";
+
+	/**
+	 * the discount factor the policy is computed with, that of {@link ValueIterationAgent#ValueIterationAgent()}
+	 */
+	public static final double DISCOUNT = 0.9;
+
+	/**
+	 * Loads the resource when this class is first used, which the JVM does exactly once, without any locking afterwards.
+	 */
+	private static final class Holder {
+		static final PolicyFile FILE = load(RESOURCE);
+	}
+
+	/**
+	 * @param resource the name of the resource, relative to this class
+	 * @return the policy file, or null if the resource is missing or can't be read, e.g. when running from classes that
+	 *         weren't built with Maven
+	 */
+	static PolicyFile load(String resource) {
+		InputStream in = ResourcePolicy.class.getResourceAsStream(resource);
+		if (in == null)
+			return null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			PolicyFile f = PolicyFile.read(ByteBuffer.wrap(bytes.toByteArray()), resource);
+			if (!f.matches(DISCOUNT, new TTTMDP()))
+				throw new IOException(resource + " was computed for other rewards or discount factor");
+			return f;
+		} catch (IOException e) {
+			System.out.println("WARNING: cannot load precomputed policy: " + e.getMessage());
+			return null;
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * @return true if the precomputed policy can be loaded
+	 */
+	public static boolean isAvailable() {
+		return Holder.FILE != null;
+	}
+
+	/**
+	 * @return the move of the precomputed policy, or null if there is none or the policy is not {@link #isAvailable()}
+	 */
+	@Override
+	public Move getMove(Game g) {
+		PolicyFile f = Holder.FILE;
+		return (f == null) ? null : f.getPolicy().getMove(g);
+	}
+
+	/**
+	 * @return a value iteration agent that plays the precomputed policy if it is available, and otherwise one that solves
+	 *         the MDP itself
+	 */
+	public static ValueIterationAgent agent() {
+		return agent(Holder.FILE);
+	}
+
+	static ValueIterationAgent agent(PolicyFile f) {
+		return (f == null) ? new ValueIterationAgent() : new ValueIterationAgent(f.getPolicy());
+	}
+
+	/**
+	 * Computes the policy and writes it under the given class output directory. Run by the build.
+	 *
+	 * @param args the class output directory, e.g. target/classes
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: ResourcePolicy <class output directory>");
+			return;
+		}
+		// always solve, never reuse a cached policy
+		PolicyCache.setDefault(null);
+		ValueIterationAgent agent = new ValueIterationAgent();
+
+		File file = new File(args[0], ResourcePolicy.class.getPackage().getName().replace('.', '/') + "/" + RESOURCE);
+		new PolicyFile(new ArrayPolicy(agent.getPolicy()), agent.discount, agent.mdp).write(file);
+		System.out.println("Wrote the optimal policy to " + file);
+	}
+
+}
@@ -0,0 +1,16 @@
+package ticTacToe;
+
+/**
+ * The SARSA update: Q(s,a) is moved towards r + discount * Q(s',a'), where a' is the move the agent actually plays next
+ * according to its exploration policy. This is on-policy: it learns the values of the exploring policy, and so tends to
+ * learn safer moves while exploration is still high.
+ */
+public class SarsaRule extends UpdateRule {
+
+	@Override
+	double update(QLearningAgent agent, Outcome o, Move next) {
+		double future = (next == null) ? 0.0 : agent.qTable.getQValue(o.sPrime, next);
+		return moveTowards(agent.qTable, agent.alpha, o.s, o.move, o.localReward + agent.discount * future);
+	}
+
+}
@@ -0,0 +1,171 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a Q-learning policy by self-play against an {@link OpponentLeague}, on several threads in parallel.
+ *
+ * Training proceeds in epochs. In each epoch every worker thread starts from a copy of the shared q-table and plays
+ * {@link #episodesPerEpoch} episodes with its own {@link QLearningAgent}, in its own {@link TTTEnvironment}, against
+ * opponents sampled from the league, who start half of the games. At the end of the epoch the workers' q-tables are
+ * averaged into the shared q-table, and its greedy policy is published to the league as a new frozen snapshot, so that
+ * later epochs also train against earlier versions of the agent itself. Since the workers share nothing but the
+ * (lock-free) league while they play, the wall-clock time per epoch stays roughly constant as workers are added.
+ */
+public class SelfPlayTrainer {
+
+	int workers = Runtime.getRuntime().availableProcessors();
+
+	int epochs = 20;
+
+	/**
+	 * the number of episodes each worker plays per epoch
+	 */
+	int episodesPerEpoch = 2000;
+
+	double alpha = 0.1;
+
+	double discount = 0.9;
+
+	double epsilon = 0.1;
+
+	/**
+	 * The probability that the opponent starts a training game, see {@link TTTEnvironment#setOpponentStarts}. The policy
+	 * published to the league is also played by snapshots in the O seat, on the mirrored board, so the learner has to play
+	 * the positions where O started as well.
+	 */
+	double opponentStarts = 0.5;
+
+	OpponentLeague league = new OpponentLeague();
+
+	/**
+	 * the shared q-table, the average of the workers' q-tables at the end of the last epoch
+	 */
+	QTable qTable;
+
+	/**
+	 * Self-play training with the default parameters, using all available processors.
+	 */
+	public SelfPlayTrainer() {
+	}
+
+	/**
+	 * @param workers          the number of worker threads
+	 * @param epochs           the number of epochs
+	 * @param episodesPerEpoch the number of episodes per worker per epoch
+	 * @param league           the league to sample opponents from and publish snapshots to
+	 */
+	public SelfPlayTrainer(int workers, int epochs, int episodesPerEpoch, OpponentLeague league) {
+		if (workers < 1)
+			throw new IllegalArgumentException("There must be at least 1 worker");
+		this.workers = workers;
+		this.epochs = epochs;
+		this.episodesPerEpoch = episodesPerEpoch;
+		this.league = league;
+	}
+
+	/**
+	 * Sets the Q-learning parameters used by the workers.
+	 *
+	 * @param alpha
+	 * @param discount
+	 * @param epsilon
+	 */
+	public void setLearningParameters(double alpha, double discount, double epsilon) {
+		this.alpha = alpha;
+		this.discount = discount;
+		this.epsilon = epsilon;
+	}
+
+	public OpponentLeague getLeague() {
+		return league;
+	}
+
+	/**
+	 * Runs the self-play training.
+	 *
+	 * @return a Q-learning agent with the trained (averaged) q-table and its greedy policy
+	 */
+	public QLearningAgent train() {
+		// hand out the random streams up front, so that they don't depend on thread scheduling
+		SplittableRandom[] streams = RandomSource.newStreams(workers);
+		final QLearningAgent[] learners = new QLearningAgent[workers];
+		for (int w = 0; w < workers; w++) {
+			TTTEnvironment env = new TTTEnvironment(league);
+			env.setOpponentStarts(opponentStarts);
+			// only the first learner initialises a q-table; every worker trains on a copy of the shared one
+			learners[w] = (w == 0) ? new QLearningAgent(env, alpha, epochs * episodesPerEpoch, discount)
+					: new QLearningAgent(env, alpha, epochs * episodesPerEpoch, discount, learners[0].qTable);
+			learners[w].epsilon = epsilon;
+			learners[w].random = streams[w];
+		}
+		qTable = learners[0].qTable;
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			for (int e = 0; e < epochs; e++) {
+				List<Callable<QTable>> tasks = new ArrayList<Callable<QTable>>();
+				for (int w = 0; w < workers; w++) {
+					final QLearningAgent learner = learners[w];
+					final QTable start = qTable.deepCopy();
+					tasks.add(new Callable<QTable>() {
+						public QTable call() {
+							learner.qTable = start;
+							learner.trainEpisodes(episodesPerEpoch);
+							return learner.qTable;
+						}
+					});
+				}
+
+				List<QTable> tables = new ArrayList<QTable>();
+				for (Future<QTable> f : pool.invokeAll(tasks))
+					tables.add(f.get());
+
+				qTable = average(tables);
+				learners[0].qTable = qTable;
+				league.publish(learners[0].extractPolicy());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Self-play training was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A self-play worker failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		QLearningAgent trained = learners[0];
+		trained.qTable = qTable;
+		trained.policy = trained.extractPolicy();
+		return trained;
+	}
+
+	/**
+	 * @param tables q-tables with the same (game, move) keys
+	 * @return a q-table with the mean of their q-values
+	 */
+	static QTable average(List<QTable> tables) {
+		QTable mean = new QTable();
+		for (Map.Entry<Game, HashMap<Move, Double>> e : tables.get(0).entrySet()) {
+			HashMap<Move, Double> moves = new HashMap<Move, Double>();
+			for (Move m : e.getValue().keySet()) {
+				double sum = 0.0;
+				for (QTable t : tables)
+					sum += t.getQValue(e.getKey(), m);
+				moves.put(m, sum / tables.size());
+			}
+			mean.put(e.getKey(), moves);
+		}
+		return mean;
+	}
+
+}
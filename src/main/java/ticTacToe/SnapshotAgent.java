@@ -0,0 +1,54 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * An agent playing a frozen snapshot of a learned policy. Learned policies ({@link Policy}) only know how to play as X, so
+ * when this agent plays as O it looks up the move for the mirrored game, in which the X's and O's are swapped and it is X's
+ * turn, and plays that move as O. This lets snapshots of a learning agent act as its opponents in self-play, see
+ * {@link OpponentLeague}. The mirrored games are positions in which O started, so the policy only plays well as O if it was
+ * trained on those too, e.g. with {@link TTTEnvironment#setOpponentStarts}.
+ *
+ * If the policy has no move for a game, a random available move is played.
+ */
+public class SnapshotAgent extends Agent {
+
+	SplittableRandom random;
+
+	/**
+	 * @param snapshot a policy for X, which is only read, never modified
+	 * @param random   the stream used when the policy has no move
+	 */
+	public SnapshotAgent(Policy snapshot, SplittableRandom random) {
+		super(snapshot);
+		this.random = random;
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		char me = g.whoseTurn.getName();
+		Move m = (me == 'X') ? policy.getMove(g) : policy.getMove(mirror(g));
+		if (m == null) {
+			java.util.List<Move> moves = g.getPossibleMoves();
+			return moves.get(random.nextInt(moves.size()));
+		}
+		return Move.of(me, m.cell());
+	}
+
+	/**
+	 * @param g
+	 * @return a copy of {@code g} with the X's and O's swapped, and the turn swapped accordingly.
+	 */
+	static Game mirror(Game g) {
+		Game m = new Game();
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++) {
+				char c = g.board[i][j];
+				m.board[i][j] = (c == 'X') ? 'O' : (c == 'O') ? 'X' : ' ';
+			}
+		m.whoseTurn = (g.whoseTurn == g.x) ? m.o : m.x;
+		m.evaluateGameState();
+		return m;
+	}
+
+}
@@ -0,0 +1,190 @@
+package ticTacToe;
+
+/**
+ * A dense index over a set of game states: maps each state's {@link Game#hashCode} (a number below {@link #HASH_SPACE})
+ * to a consecutive id 0, 1, ..., {@link #size()}-1 and back. Tables of values, moves etc. can then be stored in small
+ * primitive arrays indexed by the id, instead of in maps keyed by {@link Game} objects.
+ *
+ * The indexes are computed arithmetically from the hashes, without constructing any {@link Game} objects, once per JVM on
+ * first use. Two are provided: {@link #xStates()}, the states an agent playing X can be in (the same states as
+ * {@link Game#generateAllValidGames(char)} with 'X'), and {@link #afterstates()}, the states directly after X has moved.
+ */
+public final class StateIndex {
+
+	/**
+	 * the number of possible hashes, 3^10
+	 */
+	public static final int HASH_SPACE = 59049;
+
+	/**
+	 * POW3[k] = 3^k
+	 */
+	static final int[] POW3 = { 1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683, 59049 };
+
+	/**
+	 * the 8 lines of the board, as cell indices 3*x+y
+	 */
+	static final int[][] LINES = { { 0, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 }, { 0, 3, 6 }, { 1, 4, 7 }, { 2, 5, 8 },
+			{ 0, 4, 8 }, { 2, 4, 6 } };
+
+	/**
+	 * the id of each hash, -1 if it is not in the index
+	 */
+	final int[] ids = new int[HASH_SPACE];
+
+	/**
+	 * the hash of each id
+	 */
+	final int[] hashes;
+
+	private static class XStates {
+		static final StateIndex INDEX = new StateIndex('X');
+	}
+
+	private static class Afterstates {
+		static final StateIndex INDEX = new StateIndex('O');
+	}
+
+	/**
+	 * @return the index of all valid games where it is X's turn, or that are terminal, as in
+	 *         {@link Game#generateAllValidGames(char)}.
+	 */
+	public static StateIndex xStates() {
+		return XStates.INDEX;
+	}
+
+	/**
+	 * @return the index of all valid games where it is O's turn, or that are terminal, which includes all the states
+	 *         directly after a move by X.
+	 */
+	public static StateIndex afterstates() {
+		return Afterstates.INDEX;
+	}
+
+	private StateIndex(char xo) {
+		int turn = (xo == 'X') ? 1 : 2;
+		int[] found = new int[HASH_SPACE];
+		int n = 0;
+		// same range as Game.generateAllValidGames
+		for (int hash = 0; hash < HASH_SPACE - 1; hash++) {
+			ids[hash] = -1;
+			int t = hash % 3;
+			if (t == 0 || !isValid(hash))
+				continue;
+			if (t == turn || isTerminal(hash)) {
+				ids[hash] = n;
+				found[n++] = hash;
+			}
+		}
+		ids[HASH_SPACE - 1] = -1;
+		hashes = new int[n];
+		System.arraycopy(found, 0, hashes, 0, n);
+	}
+
+	/**
+	 * @param hash
+	 * @return the id of the game with this hash, -1 if it isn't in this index
+	 */
+	public int id(int hash) {
+		return ids[hash];
+	}
+
+	/**
+	 * @param g
+	 * @return the id of {@code g}, -1 if it isn't in this index
+	 */
+	public int id(Game g) {
+		return ids[g.hashCode()];
+	}
+
+	/**
+	 * @param id
+	 * @return the {@link Game#hashCode} of the game with this id
+	 */
+	public int hash(int id) {
+		return hashes[id];
+	}
+
+	/**
+	 * @param id
+	 * @return a new, evaluated game with this id, via {@link Game#inverseHash}
+	 */
+	public Game game(int id) {
+		Game g = Game.inverseHash(hashes[id]);
+		g.evaluateGameState();
+		return g;
+	}
+
+	/**
+	 * @return the number of states in this index
+	 */
+	public int size() {
+		return hashes.length;
+	}
+
+	/**
+	 * @param hash
+	 * @param cell 3*x+y
+	 * @return the content of {@code cell} in the game with this hash: 0 for empty, 1 for X and 2 for O
+	 */
+	public static int cell(int hash, int cell) {
+		return (hash / POW3[9 - cell]) % 3;
+	}
+
+	/**
+	 * @param hash the hash of a game where it's X's turn
+	 * @param cell an empty cell
+	 * @return the hash of the game after X plays in {@code cell}: the cell becomes 1 and the turn digit goes from 1 to 2.
+	 */
+	public static int afterXMove(int hash, int cell) {
+		return hash + POW3[9 - cell] + 1;
+	}
+
+	/**
+	 * @param hash the hash of a game where it's O's turn
+	 * @param cell an empty cell
+	 * @return the hash of the game after O plays in {@code cell}: the cell becomes 2 and the turn digit goes from 2 to 1.
+	 */
+	public static int afterOMove(int hash, int cell) {
+		return hash + 2 * POW3[9 - cell] - 1;
+	}
+
+	/**
+	 * The same as {@link Game#isValid()}, on the hash.
+	 */
+	static boolean isValid(int hash) {
+		int xs = 0;
+		int os = 0;
+		for (int c = 0; c < 9; c++) {
+			int d = cell(hash, c);
+			if (d == 1)
+				xs++;
+			else if (d == 2)
+				os++;
+		}
+		int turn = hash % 3;
+		if (Math.abs(xs - os) > 1)
+			return false;
+		if (xs > os && turn == 1)
+			return false;
+		else if (xs < os && turn == 2)
+			return false;
+		return true;
+	}
+
+	/**
+	 * @return true if the game with this hash has a line of X's or O's, or no empty cells, like {@link Game#isTerminal()}
+	 */
+	static boolean isTerminal(int hash) {
+		for (int[] line : LINES) {
+			int d = cell(hash, line[0]);
+			if (d != 0 && d == cell(hash, line[1]) && d == cell(hash, line[2]))
+				return true;
+		}
+		for (int c = 0; c < 9; c++)
+			if (cell(hash, c) == 0)
+				return false;
+		return true;
+	}
+
+}
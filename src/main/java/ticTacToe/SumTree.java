@@ -0,0 +1,73 @@
+package ticTacToe;
+
+/**
+ * A binary sum tree over a fixed number of non-negative priorities, stored in a flat array. Leaf {@code i} holds the
+ * priority of slot {@code i} and every internal node holds the sum of its two children, so that both updating a priority
+ * and finding the slot that a prefix sum falls into take O(log n). Used by {@link ReplayBuffer} for prioritised sampling.
+ */
+class SumTree {
+
+	/**
+	 * number of leaves, rounded up to a power of two
+	 */
+	final int leaves;
+
+	/**
+	 * node i has children 2i and 2i+1; the root is node 1 and the leaves are nodes [leaves, 2*leaves)
+	 */
+	final double[] tree;
+
+	SumTree(int capacity) {
+		int n = 1;
+		while (n < capacity)
+			n <<= 1;
+		this.leaves = n;
+		this.tree = new double[2 * n];
+	}
+
+	/**
+	 * Sets the priority of slot {@code i} to {@code p} and updates the sums on the path to the root.
+	 *
+	 * @param i
+	 * @param p
+	 */
+	void set(int i, double p) {
+		int node = i + leaves;
+		double delta = p - tree[node];
+		for (; node >= 1; node >>= 1)
+			tree[node] += delta;
+	}
+
+	double get(int i) {
+		return tree[i + leaves];
+	}
+
+	/**
+	 * @return the sum of all priorities
+	 */
+	double total() {
+		return tree[1];
+	}
+
+	/**
+	 * Finds the slot whose cumulative priority range contains {@code prefix}, i.e. the smallest {@code i} such that the
+	 * sum of priorities of slots 0..i is greater than {@code prefix}.
+	 *
+	 * @param prefix a value in [0, {@link #total()})
+	 * @return the slot index
+	 */
+	int find(double prefix) {
+		int node = 1;
+		while (node < leaves) {
+			int left = node << 1;
+			if (prefix < tree[left] || tree[left + 1] <= 0.0)
+				node = left;
+			else {
+				prefix -= tree[left];
+				node = left + 1;
+			}
+		}
+		return node - leaves;
+	}
+
+}
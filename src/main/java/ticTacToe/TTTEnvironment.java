@@ -3,6 +3,7 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * This is a Reinforcement Learning environment for TicTacToe, to be used in conjunction with Reinforcement Learning (RL) agents. Like everywhere else, 
@@ -27,6 +28,32 @@ public class TTTEnvironment {
 	double livingReward=-1.00;
 	double drawReward=0.0;
 	
+	/**
+	 * This environment's own random stream, see {@link RandomSource}. The opponents created by {@link #reset()} draw
+	 * their moves from streams split off this one.
+	 */
+	SplittableRandom random=RandomSource.newStream();
+	
+	/**
+	 * If not null, the opponent is sampled from this league at every {@link #reset()}, see {@link OpponentLeague#sample}.
+	 */
+	OpponentLeague league=null;
+	
+	/**
+	 * this environment's own instances of the league's fixed opponents
+	 */
+	Agent[] fixedOpponents;
+	
+	/**
+	 * the opponent set by {@link #setOpponent}, null if it hasn't been changed
+	 */
+	Agent nextOpponent=null;
+	
+	/**
+	 * The probability that the opponent plays first in a game, see {@link #setOpponentStarts}. 0 by default: X always starts.
+	 */
+	double opponentStarts=0.0;
+	
 	
 	/**
 	 * By default, the environment contains an opponent that plays randomly, i.e. a {@link RandomAgent}; and uses all the
@@ -34,7 +61,7 @@ public class TTTEnvironment {
 	 */
 	public TTTEnvironment()
 	{
-		game=new Game(new Agent(), new RandomAgent());
+		game=new Game(new Agent(), new RandomAgent(random.split()));
 	}
 	
 	public TTTEnvironment(Agent opponent)
@@ -42,6 +69,19 @@ public class TTTEnvironment {
 		game=new Game(new Agent(), opponent);
 	}
 	
+	/**
+	 * An environment whose opponent is sampled from {@code league} for every game: either one of the fixed opponents, of which
+	 * this environment has its own instances, or a snapshot of a learning agent published to the league. Use one environment per
+	 * thread.
+	 * @param league
+	 */
+	public TTTEnvironment(OpponentLeague league)
+	{
+		this.league=league;
+		this.fixedOpponents=league.newFixedOpponents(random);
+		game=new Game(new Agent(), league.sample(fixedOpponents, random));
+	}
+	
 	public TTTEnvironment(Agent opponent, double winReward, double loseReward, double livingReward, double drawReward)
 	{
 		game=new Game(new Agent(), opponent);
@@ -137,11 +177,59 @@ public class TTTEnvironment {
 	
 	
 	/**
-	 * Resets current game state to a new game state (empty board)
+	 * The opponent the next games are played against, from the next {@link #reset()} on.
+	 * @param opponent
+	 */
+	public void setOpponent(Agent opponent)
+	{
+		this.nextOpponent=opponent;
+	}
+	
+	public Agent getOpponent()
+	{
+		return game.o;
+	}
+	
+	/**
+	 * Makes the opponent play the first move in a fraction of the games, so that the agent (still X) also learns to play
+	 * positions in which O started, i.e. where O has one more piece than X. These are exactly the positions that a policy for
+	 * X is asked about when it plays as O on the mirrored board, see {@link SnapshotAgent}. If no move has been played in the
+	 * current game yet, it is restarted, so that the setting applies from the first game on.
+	 * @param probability the probability that the opponent starts a game, 0 for X to always start
+	 */
+	public void setOpponentStarts(double probability)
+	{
+		this.opponentStarts=probability;
+		if (game.getHistoryLength()==0)
+			reset();
+	}
+	
+	/**
+	 * Resets current game state to a new game state (empty board), against the same opponent, or a newly sampled one if this
+	 * environment has a {@link #league}. If the opponent starts (see {@link #setOpponentStarts}), it has played its first move
+	 * when this returns.
 	 */
 	public void reset()
 	{
-		this.game=new Game(new Agent(), new RandomAgent());
+		Agent opponent;
+		if (league!=null)
+			opponent=league.sample(fixedOpponents, random);
+		else if (nextOpponent!=null)
+			opponent=nextOpponent;
+		else
+			opponent=game.o;
+		nextOpponent=null;
+		if (opponentStarts>0 && random.nextDouble()<opponentStarts)
+		{
+			this.game=new Game(new Agent(), opponent, opponent);
+			try {
+				game.executeMove(opponent.getMove(game));
+			} catch (IllegalMoveException e) {
+				throw new IllegalStateException("Illegal first move by the opponent", e);
+			}
+		}
+		else
+			this.game=new Game(new Agent(), opponent);
 	}
 	
 	
@@ -0,0 +1,335 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A columnar snapshot of a value function or q-table, such as {@link ValueIterationAgent#valueFunction},
+ * {@link PolicyIterationAgent#policyValues} or {@link QLearningAgent#qTable}. A snapshot file is a sequence of segments, each
+ * a complete table: snapshots are appended as new segments with {@link #append} (or {@link #write} replaces the file with a
+ * single segment), and {@link #open} maps the latest complete one. Each segment is a {@link #HEADER_SIZE} byte header followed by two columns: the {@link Game#hashCode}
+ * of every row's state (in {@link StateIndex#xStates()} order), then the values, {@link #width} per row (1 for state values;
+ * 9 for q-values, one per cell, NaN where there is none). All numbers are little-endian, and the values are stored as
+ * doubles or, quantised, as floats. The header is:
+ *
+ * <pre>
+ * int    magic number {@link #MAGIC}
+ * short  format {@link #VERSION}
+ * short  header size
+ * byte   1 if the values are floats, 0 if doubles
+ * byte   reserved
+ * short  width: values per row
+ * int    number of rows
+ * long   step: the iteration or episode the snapshot was taken at
+ * long   payload size in bytes
+ * int    CRC32 of the payload
+ * (zero padding up to the header size)
+ * </pre>
+ *
+ * The values are read straight from the mapped file, without copying them into the heap, so several processes can share a
+ * table read-only through the page cache. A segment whose payload is incomplete or fails its checksum, e.g. because the
+ * process was killed while appending it, is ignored in favour of the one before.
+ */
+public class TableSnapshot {
+
+	public static final int MAGIC = 0x54545453; // "TTTS"
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+
+	final StateIndex index = StateIndex.xStates();
+
+	final int rows;
+	final int width;
+	final boolean floats;
+	final long step;
+
+	/**
+	 * the mapped columns
+	 */
+	final ByteBuffer hashes;
+	final ByteBuffer values;
+
+	/**
+	 * the row of each state id, or null if the rows are in id order
+	 */
+	private int[] rowOfId = null;
+
+	private TableSnapshot(ByteBuffer header, ByteBuffer payload) {
+		header.position(8);
+		this.floats = header.get() != 0;
+		header.get();
+		this.width = header.getShort();
+		this.rows = header.getInt();
+		this.step = header.getLong();
+
+		payload.order(ByteOrder.LITTLE_ENDIAN);
+		payload.limit(4 * rows);
+		this.hashes = payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+		payload.limit(payload.capacity()).position(4 * rows);
+		this.values = payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		boolean inOrder = rows == index.size();
+		for (int r = 0; r < rows && inOrder; r++)
+			inOrder = hashes.getInt(4 * r) == index.hash(r);
+		if (!inOrder) {
+			rowOfId = new int[index.size()];
+			Arrays.fill(rowOfId, -1);
+			for (int r = 0; r < rows; r++) {
+				int id = index.id(hashes.getInt(4 * r));
+				if (id >= 0)
+					rowOfId[id] = r;
+			}
+		}
+	}
+
+	/**
+	 * Appends a segment to a snapshot file, creating the file if it doesn't exist.
+	 * 
+	 * @param file
+	 * @param step   the iteration or episode of the snapshot
+	 * @param width  the number of values per state: 1 or 9
+	 * @param values the values by {@link StateIndex#xStates()} id, {@code width} per state, NaN where there is none
+	 * @param floats true to store the values as floats, false for doubles
+	 * @throws IOException
+	 */
+	public static void append(File file, long step, int width, double[] values, boolean floats) throws IOException {
+		ByteBuffer b = encode(step, width, values, floats);
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		try {
+			while (b.hasRemaining())
+				channel.write(b);
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Replaces a snapshot file with one that has a single segment, e.g. to keep only the latest of a series of checkpoints.
+	 * The segment is written to a temporary file first and then moved into place, so an interruption leaves the old file.
+	 * 
+	 * @param file
+	 * @param step   the iteration or episode of the snapshot
+	 * @param width  the number of values per state: 1 or 9
+	 * @param values the values by {@link StateIndex#xStates()} id, {@code width} per state, NaN where there is none
+	 * @param floats true to store the values as floats, false for doubles
+	 * @throws IOException
+	 */
+	public static void write(File file, long step, int width, double[] values, boolean floats) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		tmp.delete();
+		append(tmp, step, width, values, floats);
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return a segment: header and payload, ready to be written
+	 */
+	private static ByteBuffer encode(long step, int width, double[] values, boolean floats) {
+		StateIndex index = StateIndex.xStates();
+		int rows = index.size();
+		if (values.length != rows * width)
+			throw new IllegalArgumentException("Expected " + rows * width + " values, got " + values.length);
+		int payloadSize = 4 * rows + (floats ? 4 : 8) * rows * width;
+
+		ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + payloadSize).order(ByteOrder.LITTLE_ENDIAN);
+		b.position(HEADER_SIZE);
+		for (int r = 0; r < rows; r++)
+			b.putInt(index.hash(r));
+		for (double v : values)
+			if (floats)
+				b.putFloat((float) v);
+			else
+				b.putDouble(v);
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), HEADER_SIZE, payloadSize);
+
+		b.position(0);
+		b.putInt(MAGIC);
+		b.putShort(VERSION);
+		b.putShort((short) HEADER_SIZE);
+		b.put((byte) (floats ? 1 : 0));
+		b.put((byte) 0);
+		b.putShort((short) width);
+		b.putInt(rows);
+		b.putLong(step);
+		b.putLong(payloadSize);
+		b.putInt((int) crc.getValue());
+		b.position(0);
+		return b;
+	}
+
+	/**
+	 * Maps the latest complete segment of a snapshot file. Only the segment headers are read to find the segments; then the
+	 * checksums are verified from the last segment backwards, so normally only the latest segment is mapped and checked.
+	 * 
+	 * @param file
+	 * @return the snapshot, or null if the file has no complete segment
+	 * @throws IOException if the file can't be read, or is not a snapshot file
+	 */
+	public static TableSnapshot open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			long[] starts = new long[16];
+			int segments = 0;
+			for (long pos = 0; pos + HEADER_SIZE <= size;) {
+				readHeader(channel, header, pos);
+				if (header.getInt(0) != MAGIC) {
+					if (pos == 0)
+						throw new IOException(file + " is not a table snapshot");
+					break;
+				}
+				if (header.getShort(4) != VERSION)
+					throw new IOException(file + " has unsupported snapshot version " + header.getShort(4));
+				long payloadSize = header.getLong(24);
+				if (payloadSize < 0 || pos + HEADER_SIZE + payloadSize > size)
+					break;
+				if (segments == starts.length)
+					starts = Arrays.copyOf(starts, 2 * segments);
+				starts[segments++] = pos;
+				pos += HEADER_SIZE + payloadSize;
+			}
+
+			for (int k = segments - 1; k >= 0; k--) {
+				readHeader(channel, header, starts[k]);
+				MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, starts[k] + HEADER_SIZE,
+						header.getLong(24));
+				if (checksum(payload) == header.getInt(32))
+					return new TableSnapshot(header, payload);
+			}
+			return null;
+		} finally {
+			// the mappings stay valid after the channel is closed
+			channel.close();
+		}
+	}
+
+	private static void readHeader(FileChannel channel, ByteBuffer header, long pos) throws IOException {
+		header.clear();
+		while (header.hasRemaining() && channel.read(header, pos + header.position()) > 0)
+			;
+	}
+
+	private static int checksum(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[8192];
+		ByteBuffer b = payload.duplicate();
+		while (b.hasRemaining()) {
+			int n = Math.min(chunk.length, b.remaining());
+			b.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * @return the iteration or episode the snapshot was taken at
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public boolean isQuantised() {
+		return floats;
+	}
+
+	/**
+	 * @param hash   the {@link Game#hashCode} of a state
+	 * @param column 0 for a state value, the cell for a q-value
+	 * @return the stored value, NaN if there is none
+	 */
+	public double getValue(int hash, int column) {
+		int id = index.id(hash);
+		int row = (id < 0) ? -1 : (rowOfId == null) ? id : rowOfId[id];
+		if (row < 0)
+			return Double.NaN;
+		int i = row * width + column;
+		return floats ? values.getFloat(4 * i) : values.getDouble(8 * i);
+	}
+
+	/**
+	 * @param table a map of state values, such as a value function
+	 * @return its values by {@link StateIndex#xStates()} id, NaN for states not in the map
+	 */
+	public static double[] stateValues(Map<Game, Double> table) {
+		StateIndex index = StateIndex.xStates();
+		double[] values = new double[index.size()];
+		Arrays.fill(values, Double.NaN);
+		for (Map.Entry<Game, Double> e : table.entrySet()) {
+			int id = index.id(e.getKey());
+			if (id >= 0)
+				values[id] = e.getValue();
+		}
+		return values;
+	}
+
+	/**
+	 * @param table
+	 * @return its q-values, 9 per {@link StateIndex#xStates()} id, NaN for (state, cell) pairs not in the table
+	 */
+	public static double[] qValues(QTable table) {
+		StateIndex index = StateIndex.xStates();
+		double[] values = new double[index.size() * 9];
+		Arrays.fill(values, Double.NaN);
+		for (Map.Entry<Game, HashMap<Move, Double>> e : table.entrySet()) {
+			int id = index.id(e.getKey());
+			if (id < 0)
+				continue;
+			for (Map.Entry<Move, Double> q : e.getValue().entrySet())
+				values[id * 9 + q.getKey().cell()] = q.getValue();
+		}
+		return values;
+	}
+
+	/**
+	 * Sets the value of every state in {@code table} that has a value in this snapshot, reusing the map's game keys.
+	 * 
+	 * @param table a map of state values, such as a value function
+	 */
+	public void fillStateValues(Map<Game, Double> table) {
+		for (Map.Entry<Game, Double> e : table.entrySet()) {
+			double v = getValue(e.getKey().hashCode(), 0);
+			if (!Double.isNaN(v))
+				e.setValue(v);
+		}
+	}
+
+	/**
+	 * @return a q-table with the q-values of this snapshot
+	 */
+	public QTable toQTable() {
+		QTable table = new QTable();
+		for (int id = 0; id < index.size(); id++) {
+			int hash = index.hash(id);
+			Game g = null;
+			for (int c = 0; c < 9; c++) {
+				double v = getValue(hash, c);
+				if (Double.isNaN(v))
+					continue;
+				if (g == null)
+					g = index.game(id);
+				table.addQValue(g, Move.of('X', c), v);
+			}
+		}
+		return table;
+	}
+
+}
@@ -0,0 +1,116 @@
+package ticTacToe;
+
+/**
+ * A sparse set of eligibility traces: the (state, move) pairs visited recently, each with its trace. Only the pairs with a
+ * non-negligible trace are kept, in a small bounded array, so that updating all traced q-values after a move costs
+ * O(number of traced pairs), i.e. O(episode length), rather than O(size of the q-table). When the set is full the pair with
+ * the smallest trace is evicted.
+ */
+public class TraceSet {
+
+	/**
+	 * Traces that decay below this are dropped
+	 */
+	static final double MIN_TRACE = 1e-4;
+
+	final Game[] states;
+	final int[] hashes;
+	final Move[] moves;
+	final double[] traces;
+	int size = 0;
+
+	/**
+	 * @param capacity the maximum number of pairs traced at once. Tic-Tac-Toe episodes are at most 5 moves by X long.
+	 */
+	public TraceSet(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive");
+		states = new Game[capacity];
+		hashes = new int[capacity];
+		moves = new Move[capacity];
+		traces = new double[capacity];
+	}
+
+	/**
+	 * Marks (s,a) as just visited: its trace is set to 1 if {@code replacing}, or incremented by 1 otherwise (accumulating
+	 * traces).
+	 *
+	 * @param s the state, which must not be modified afterwards
+	 * @param a
+	 * @param replacing
+	 */
+	public void visit(Game s, Move a, boolean replacing) {
+		int hash = s.hashCode();
+		for (int k = 0; k < size; k++)
+			if (hashes[k] == hash && moves[k].equals(a)) {
+				traces[k] = replacing ? 1.0 : traces[k] + 1.0;
+				return;
+			}
+
+		int k = size;
+		if (size == traces.length) {
+			// evict the smallest trace
+			k = 0;
+			for (int j = 1; j < size; j++)
+				if (traces[j] < traces[k])
+					k = j;
+		} else
+			size++;
+
+		states[k] = s;
+		hashes[k] = hash;
+		moves[k] = a;
+		traces[k] = 1.0;
+	}
+
+	/**
+	 * Multiplies all traces by {@code factor}, and drops the ones that become negligible.
+	 *
+	 * @param factor
+	 */
+	public void decay(double factor) {
+		int k = 0;
+		while (k < size) {
+			traces[k] *= factor;
+			if (traces[k] < MIN_TRACE)
+				remove(k);
+			else
+				k++;
+		}
+	}
+
+	private void remove(int k) {
+		size--;
+		states[k] = states[size];
+		hashes[k] = hashes[size];
+		moves[k] = moves[size];
+		traces[k] = traces[size];
+		states[size] = null;
+		moves[size] = null;
+	}
+
+	public void clear() {
+		for (int k = 0; k < size; k++) {
+			states[k] = null;
+			moves[k] = null;
+		}
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Game getState(int k) {
+		return states[k];
+	}
+
+	public Move getMove(int k) {
+		return moves[k];
+	}
+
+	public double getTrace(int k) {
+		return traces[k];
+	}
+
+}
@@ -0,0 +1,200 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Periodic evaluation checkpoints for {@link QLearningAgent#train}. Every {@link #interval} episodes the greedy policy is
+ * extracted from the q-table and compared to the one at the previous checkpoint. Training stops early once, for
+ * {@link #patience} checkpoints in a row, both the fraction of states whose greedy move changed (the policy churn) is at most
+ * {@link #churnThreshold} and the moving average of the absolute td error is at most {@link #tdErrorThreshold}.
+ *
+ * If a {@link #directory} is set, the {@link TableSnapshot} file {@link #SNAPSHOT_FILE} there is replaced with a snapshot of
+ * the q-table at every checkpoint, so that an interrupted run can be resumed from the latest one with
+ * {@link QLearningAgent#resume(File)}. Only the latest snapshot is kept, so the file does not grow with the run.
+ */
+public class TrainingCheckpoints {
+
+	/**
+	 * the name of the snapshot file in the {@link #directory}
+	 */
+	public static final String SNAPSHOT_FILE = "qtable.snap";
+
+	/**
+	 * The number of episodes between two checkpoints
+	 */
+	int interval = 1000;
+
+	/**
+	 * Training may stop when at most this fraction of states changed their greedy move since the last checkpoint
+	 */
+	double churnThreshold = 0.01;
+
+	/**
+	 * Training may stop when the moving average of the absolute td error is at most this. Note that against a stochastic
+	 * opponent the td error does not go to 0 even when the q-values have converged.
+	 */
+	double tdErrorThreshold = 1.0;
+
+	/**
+	 * The number of consecutive checkpoints both thresholds have to be met at before training stops
+	 */
+	int patience = 3;
+
+	/**
+	 * The weight of the old average in the exponential moving average of the absolute td error, which is updated after every
+	 * q-value update.
+	 */
+	double tdAverageDecay = 0.999;
+
+	/**
+	 * The directory q-table snapshots are written to. Null if no snapshots are written.
+	 */
+	File directory = null;
+
+	/**
+	 * the moving average of the absolute td error
+	 */
+	double tdErrorAverage = 0.0;
+
+	/**
+	 * the fraction of states that changed their greedy move at the last checkpoint
+	 */
+	double churn = 1.0;
+
+	/**
+	 * the number of consecutive checkpoints the stopping criteria have been met at
+	 */
+	int stableCheckpoints = 0;
+
+	/**
+	 * the greedy policy at the last checkpoint
+	 */
+	ArrayPolicy lastPolicy = null;
+
+	/**
+	 * Checkpoints every {@code interval} episodes with the default thresholds.
+	 *
+	 * @param interval
+	 */
+	public TrainingCheckpoints(int interval) {
+		if (interval <= 0)
+			throw new IllegalArgumentException("Interval must be positive");
+		this.interval = interval;
+	}
+
+	/**
+	 * @param interval         the number of episodes between checkpoints
+	 * @param churnThreshold   the maximum fraction of states whose greedy move changes between checkpoints
+	 * @param tdErrorThreshold the maximum moving average of the absolute td error
+	 * @param patience         the number of checkpoints in a row both thresholds have to be met at to stop
+	 */
+	public TrainingCheckpoints(int interval, double churnThreshold, double tdErrorThreshold, int patience) {
+		this(interval);
+		this.churnThreshold = churnThreshold;
+		this.tdErrorThreshold = tdErrorThreshold;
+		this.patience = patience;
+	}
+
+	/**
+	 * Sets the directory q-table snapshots are written to at each checkpoint. It is created if it doesn't exist.
+	 *
+	 * @param directory or null to not write any snapshots
+	 */
+	public void setDirectory(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Adds the td error of a q-value update to the moving average.
+	 *
+	 * @param tdError
+	 */
+	void recordTdError(double tdError) {
+		tdErrorAverage = tdAverageDecay * tdErrorAverage + (1.0 - tdAverageDecay) * Math.abs(tdError);
+	}
+
+	/**
+	 * @param episode the number of episodes played so far
+	 * @return true if a checkpoint is due after {@code episode} episodes
+	 */
+	boolean isDue(int episode) {
+		return episode % interval == 0;
+	}
+
+	/**
+	 * Evaluates the agent's current greedy policy, writes a snapshot if a {@link #directory} is set, and decides whether training
+	 * should stop.
+	 *
+	 * @param agent   the agent being trained
+	 * @param episode the number of episodes played so far
+	 * @return true if training should stop
+	 */
+	boolean checkpoint(QLearningAgent agent, int episode) {
+		ArrayPolicy greedy = agent.extractPolicy();
+		churn = (lastPolicy == null) ? 1.0 : greedy.disagreement(lastPolicy);
+		lastPolicy = greedy;
+
+		if (churn <= churnThreshold && tdErrorAverage <= tdErrorThreshold)
+			stableCheckpoints++;
+		else
+			stableCheckpoints = 0;
+
+		System.out.println("Checkpoint after " + episode + " episodes: policy churn=" + churn + ", mean |td error|="
+				+ tdErrorAverage);
+
+		if (directory != null) {
+			try {
+				save(agent.qTable, episode);
+			} catch (IOException e) {
+				System.out.println("WARNING: could not write q-table snapshot: " + e.getMessage());
+			}
+		}
+
+		if (stableCheckpoints >= patience) {
+			System.out.println("Stopping early after " + episode + " episodes: the greedy policy has converged.");
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the snapshot file with a snapshot of {@code table} after {@code episode} episodes. If this is interrupted, the
+	 * previous snapshot file is left in place.
+	 *
+	 * @param table
+	 * @param episode
+	 * @throws IOException
+	 */
+	void save(QTable table, int episode) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory);
+		TableSnapshot.write(new File(directory, SNAPSHOT_FILE), episode, 9, TableSnapshot.qValues(table), false);
+	}
+
+	/**
+	 * @param directory
+	 * @return the snapshot file in {@code directory}, or null if there isn't one
+	 */
+	static File latestSnapshot(File directory) {
+		File f = new File(directory, SNAPSHOT_FILE);
+		return f.isFile() ? f : null;
+	}
+
+	/**
+	 * Reads the latest snapshot written by {@link #save} into {@code agent}'s q-table.
+	 *
+	 * @param snapshot
+	 * @param agent
+	 * @return the number of episodes played when the snapshot was written
+	 * @throws IOException
+	 */
+	static int load(File snapshot, QLearningAgent agent) throws IOException {
+		TableSnapshot s = TableSnapshot.open(snapshot);
+		if (s == null)
+			throw new IOException(snapshot + " has no complete snapshot");
+		agent.qTable = s.toQTable();
+		return (int) s.getStep();
+	}
+
+}
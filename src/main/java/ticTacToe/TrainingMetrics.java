@@ -0,0 +1,279 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live progress and performance metrics of a training run: backups (value or q-value updates) per second, episodes per
+ * second, the mean absolute td error, the greedy policy churn, the rolling win/draw/loss rate over the last episodes, and the
+ * heap allocated per episode. The trainers ({@link ValueIterationAgent#iterate}, {@link PolicyIterationAgent#train},
+ * {@link QLearningAgent#train} and {@link AfterstateAgent#train}) record into a metrics object if they have one, and it
+ * periodically writes a {@link Snapshot} to its {@link MetricsSink}.
+ *
+ * Recording is cheap enough to leave on, and takes no locks: counters are {@link LongAdder}s/{@link DoubleAdder}s, so several
+ * training threads can share one metrics object without contention, and the outcome of an episode is a single store into a
+ * primitive ring buffer, at the slot given by the episode counter. The rates, averages and allocation figures are only
+ * computed when a snapshot is reported, at most once per {@link #intervalNanos}.
+ *
+ * Agents created without explicitly setting metrics use {@link #getDefault()}, which can be set with {@link #setDefault} or
+ * with the system property {@code ttt.metrics=<file>}: CSV, or JSON lines if the file name ends in {@code .jsonl}.
+ */
+public class TrainingMetrics {
+
+	/**
+	 * The name of the system property that sets the file the default metrics are written to
+	 */
+	public static final String FILE_PROPERTY = "ttt.metrics";
+
+	/**
+	 * A point-in-time report of the metrics. The rates and averages are over the interval since the previous report.
+	 */
+	public static class Snapshot {
+		/**
+		 * the name of the metrics reporting: "train" for the default metrics written to {@code ttt.metrics}, which all agents
+		 * share, otherwise the name given to the constructor, e.g. "ql" for metrics set on a single Q-learning agent
+		 */
+		public String name;
+		public long timestampMillis;
+		public double elapsedSeconds;
+		public long backups;
+		public double backupsPerSecond;
+		public long episodes;
+		public double episodesPerSecond;
+		/**
+		 * sweeps for value iteration, improvement steps for policy iteration
+		 */
+		public long iterations;
+		public double meanAbsTdError;
+		/**
+		 * the fraction of states whose greedy move changed at the last evaluation, NaN if not known
+		 */
+		public double policyChurn;
+		public double winRate;
+		public double drawRate;
+		public double lossRate;
+		/**
+		 * heap allocated by the reporting thread per episode, -1 if not supported by the JVM
+		 */
+		public double bytesPerEpisode;
+	}
+
+	/**
+	 * the default metrics, see {@link #getDefault()}
+	 */
+	private static volatile TrainingMetrics defaultMetrics;
+
+	static {
+		String file = System.getProperty(FILE_PROPERTY);
+		if (file != null) {
+			try {
+				MetricsSink sink = file.endsWith(".jsonl") ? new JsonLinesMetricsSink(new File(file))
+						: new CsvMetricsSink(new File(file));
+				defaultMetrics = new TrainingMetrics("train", sink, 1000);
+			} catch (IOException e) {
+				System.out.println("WARNING: cannot write metrics to " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return the metrics new agents record into, or null if none are set
+	 */
+	public static TrainingMetrics getDefault() {
+		return defaultMetrics;
+	}
+
+	/**
+	 * Sets the metrics agents created from now on record into.
+	 *
+	 * @param metrics or null to record nothing by default
+	 */
+	public static void setDefault(TrainingMetrics metrics) {
+		defaultMetrics = metrics;
+	}
+
+	final String name;
+
+	final MetricsSink sink;
+
+	/**
+	 * the minimum time between two reports
+	 */
+	final long intervalNanos;
+
+	final LongAdder backups = new LongAdder();
+	/**
+	 * the number of episodes recorded, which also numbers the slots of {@link #outcomes}
+	 */
+	final AtomicLong episodes = new AtomicLong();
+	final LongAdder iterations = new LongAdder();
+	final DoubleAdder tdErrorSum = new DoubleAdder();
+	final LongAdder tdErrorCount = new LongAdder();
+
+	volatile double churn = Double.NaN;
+
+	/**
+	 * the outcomes of the last episodes, in a ring buffer indexed by episode number: {@link #WIN}, {@link #DRAW} or
+	 * {@link #LOSS}, 0 for a slot not written yet. Slots are written without synchronisation, so a report may miss the
+	 * outcomes of the episodes that ended while it was being made.
+	 */
+	final byte[] outcomes;
+
+	static final byte WIN = 1, DRAW = 2, LOSS = 3;
+
+	final long startNanos = System.nanoTime();
+	volatile long nextReportNanos;
+
+	// the state at the last report, guarded by this
+	long lastReportNanos = startNanos;
+	long lastBackups = 0;
+	long lastEpisodes = 0;
+	double lastTdErrorSum = 0.0;
+	long lastTdErrorCount = 0;
+	long lastAllocated = -1;
+	long lastAllocatingThread = -1;
+
+	/**
+	 * @param name            the name the snapshots are reported under
+	 * @param sink            where snapshots are written to
+	 * @param intervalMillis  the minimum time between two reports
+	 */
+	public TrainingMetrics(String name, MetricsSink sink, long intervalMillis) {
+		this(name, sink, intervalMillis, 1000);
+	}
+
+	/**
+	 * @param name           the name the snapshots are reported under
+	 * @param sink           where snapshots are written to
+	 * @param intervalMillis the minimum time between two reports
+	 * @param window         the number of recent episodes the win/draw/loss rates are computed over
+	 */
+	public TrainingMetrics(String name, MetricsSink sink, long intervalMillis, int window) {
+		this.name = name;
+		this.sink = sink;
+		this.intervalNanos = intervalMillis * 1000000L;
+		this.outcomes = new byte[window];
+		this.nextReportNanos = startNanos + intervalNanos;
+	}
+
+	/**
+	 * Records {@code n} value or q-value updates.
+	 */
+	public void recordBackups(long n) {
+		backups.add(n);
+	}
+
+	/**
+	 * Records one q-value (or value) update with the given td error.
+	 */
+	public void recordTdError(double tdError) {
+		backups.increment();
+		tdErrorSum.add(Math.abs(tdError));
+		tdErrorCount.increment();
+	}
+
+	/**
+	 * Records a sweep of value iteration or an improvement step of policy iteration.
+	 */
+	public void recordIteration() {
+		iterations.increment();
+	}
+
+	/**
+	 * @param churn the fraction of states whose greedy move changed at the latest evaluation
+	 */
+	public void recordChurn(double churn) {
+		this.churn = churn;
+	}
+
+	/**
+	 * Records the end of a training episode.
+	 *
+	 * @param gameState the final state of the episode's game, one of {@link Game#X_WON}, {@link Game#O_WON} or
+	 *                  {@link Game#DRAW}; the learner is X
+	 */
+	public void recordEpisode(int gameState) {
+		long episode = episodes.getAndIncrement();
+		outcomes[(int) (episode % outcomes.length)] = (gameState == Game.X_WON) ? WIN
+				: (gameState == Game.DRAW) ? DRAW : LOSS;
+	}
+
+	/**
+	 * Reports a snapshot if the report interval has passed. Call this regularly, e.g. after every episode.
+	 */
+	public void maybeReport() {
+		if (System.nanoTime() >= nextReportNanos)
+			report();
+	}
+
+	/**
+	 * Reports a snapshot now, e.g. at the end of training.
+	 */
+	public synchronized void report() {
+		long now = System.nanoTime();
+		nextReportNanos = now + intervalNanos;
+		double seconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+
+		Snapshot s = new Snapshot();
+		s.name = name;
+		s.timestampMillis = System.currentTimeMillis();
+		s.elapsedSeconds = (now - startNanos) / 1e9;
+		s.backups = backups.sum();
+		s.backupsPerSecond = (s.backups - lastBackups) / seconds;
+		s.episodes = episodes.get();
+		s.episodesPerSecond = (s.episodes - lastEpisodes) / seconds;
+		s.iterations = iterations.sum();
+		double tdSum = tdErrorSum.sum();
+		long tdCount = tdErrorCount.sum();
+		s.meanAbsTdError = (tdCount > lastTdErrorCount) ? (tdSum - lastTdErrorSum) / (tdCount - lastTdErrorCount)
+				: Double.NaN;
+		s.policyChurn = churn;
+		int[] counts = new int[4];
+		for (byte outcome : outcomes)
+			counts[outcome]++;
+		int stored = outcomes.length - counts[0];
+		s.winRate = (stored == 0) ? Double.NaN : (double) counts[WIN] / stored;
+		s.drawRate = (stored == 0) ? Double.NaN : (double) counts[DRAW] / stored;
+		s.lossRate = (stored == 0) ? Double.NaN : (double) counts[LOSS] / stored;
+
+		long allocated = allocatedBytes();
+		long thread = Thread.currentThread().getId();
+		if (allocated < 0 || lastAllocated < 0 || thread != lastAllocatingThread || s.episodes == lastEpisodes)
+			s.bytesPerEpisode = -1;
+		else
+			s.bytesPerEpisode = (double) (allocated - lastAllocated) / (s.episodes - lastEpisodes);
+
+		lastReportNanos = now;
+		lastBackups = s.backups;
+		lastEpisodes = s.episodes;
+		lastTdErrorSum = tdSum;
+		lastTdErrorCount = tdCount;
+		lastAllocated = allocated;
+		lastAllocatingThread = thread;
+
+		try {
+			sink.write(s);
+		} catch (IOException e) {
+			System.out.println("WARNING: could not write metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the heap allocated by the current thread so far, -1 if the JVM can't tell
+	 */
+	static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+			if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled())
+				return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,134 @@
+package ticTacToe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer queue of transitions, each packed into a single {@code long} by
+ * {@link #pack}, so that neither offering nor polling allocates. It is the array-based queue of D. Vyukov: every slot has a
+ * sequence number that tells producers and consumers whether it is free to write or ready to read, and the head and tail are
+ * claimed with a compare-and-set.
+ *
+ * {@link #offer} never blocks: if the queue is full the transition is dropped and counted, so a producer on a latency
+ * sensitive path (see {@link OnlineLearningAgent}) is never held up by a slow consumer.
+ */
+public class TransitionQueue {
+
+	/**
+	 * the kinds of transition, i.e. which reward was received
+	 */
+	public static final int ONGOING = 0, WIN = 1, LOSS = 2, DRAW = 3;
+
+	/**
+	 * returned by {@link #poll} when the queue is empty
+	 */
+	public static final long EMPTY = -1L;
+
+	final int mask;
+	final long[] slots;
+	final AtomicLongArray sequences;
+	final AtomicLong tail = new AtomicLong();
+	final AtomicLong head = new AtomicLong();
+	final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * @param capacity the maximum number of transitions queued, rounded up to a power of two
+	 */
+	public TransitionQueue(int capacity) {
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+		int n = 1;
+		while (n < capacity)
+			n <<= 1;
+		this.mask = n - 1;
+		this.slots = new long[n];
+		this.sequences = new AtomicLongArray(n);
+		for (int i = 0; i < n; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * Packs a transition into a long.
+	 * 
+	 * @param s      the {@link Game#hashCode} of the source state
+	 * @param cell   the cell played, {@code 3*x+y}
+	 * @param kind   {@link #ONGOING}, {@link #WIN}, {@link #LOSS} or {@link #DRAW}
+	 * @param sPrime the {@link Game#hashCode} of the target state
+	 * @return the packed transition, which is never negative
+	 */
+	public static long pack(int s, int cell, int kind, int sPrime) {
+		return (long) s | ((long) sPrime << 16) | ((long) cell << 32) | ((long) kind << 36);
+	}
+
+	public static int state(long t) {
+		return (int) (t & 0xFFFF);
+	}
+
+	public static int nextState(long t) {
+		return (int) ((t >>> 16) & 0xFFFF);
+	}
+
+	public static int cell(long t) {
+		return (int) ((t >>> 32) & 0xF);
+	}
+
+	public static int kind(long t) {
+		return (int) ((t >>> 36) & 0x3);
+	}
+
+	/**
+	 * Adds a packed transition to the queue, or drops it if the queue is full.
+	 * 
+	 * @param t
+	 * @return false if the transition was dropped
+	 */
+	public boolean offer(long t) {
+		while (true) {
+			long pos = tail.get();
+			int i = (int) pos & mask;
+			long diff = sequences.get(i) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					slots[i] = t;
+					sequences.lazySet(i, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				dropped.incrementAndGet();
+				return false;
+			}
+			// otherwise another producer claimed the slot first: retry with the new tail
+		}
+	}
+
+	/**
+	 * @return the oldest transition in the queue, or {@link #EMPTY} if there is none
+	 */
+	public long poll() {
+		while (true) {
+			long pos = head.get();
+			int i = (int) pos & mask;
+			long diff = sequences.get(i) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					long t = slots[i];
+					sequences.lazySet(i, pos + mask + 1);
+					return t;
+				}
+			} else if (diff < 0)
+				return EMPTY;
+		}
+	}
+
+	/**
+	 * @return the number of transitions dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+}
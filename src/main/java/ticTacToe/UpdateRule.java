@@ -0,0 +1,114 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * The update rule a {@link QLearningAgent} applies to its q-table after every move it plays while training. All rules share
+ * the same environment loop, in {@link QLearningAgent#train}: in each state the agent chooses a move with its exploration
+ * policy, executes it in the {@link TTTEnvironment}, chooses its next move in the resulting state, and then hands the
+ * {@link Outcome} (s,a,r,s') together with that next move a' to {@link #update}.
+ *
+ * The available rules are one-step Q-learning ({@link QLearningRule}, the default), {@link SarsaRule},
+ * {@link ExpectedSarsaRule}, {@link DoubleQRule}, n-step returns ({@link NStepRule}) and eligibility traces
+ * ({@link QLambdaRule}).
+ *
+ * {@link #stepsToScore} compares rules by sample efficiency: the number of environment steps an agent using the rule needs
+ * before its greedy policy reaches a target score.
+ */
+public abstract class UpdateRule {
+
+	/**
+	 * Called whenever {@link QLearningAgent#trainEpisodes} starts, before its first episode. Rules that keep tables of their
+	 * own should (re)synchronise them with the agent's q-table here, since it may have been replaced in between.
+	 *
+	 * @param agent
+	 */
+	void beginTraining(QLearningAgent agent) {
+	}
+
+	/**
+	 * Called after every move.
+	 *
+	 * @param agent the agent being trained, whose q-table is updated
+	 * @param o     the outcome (s,a,r,s') of the move. Note that {@code o.sPrime} is the environment's current game, and so
+	 *              changes when the next move is executed.
+	 * @param next  the move the agent is going to play in {@code o.sPrime}, or null if {@code o.sPrime} is terminal
+	 * @return the td error of the update applied, NaN if none was applied, e.g. while an {@link NStepRule} is still
+	 *         collecting its n moves
+	 */
+	abstract double update(QLearningAgent agent, Outcome o, Move next);
+
+	/**
+	 * Called at the end of every episode.
+	 *
+	 * @param agent
+	 */
+	void endEpisode(QLearningAgent agent) {
+	}
+
+	/**
+	 * Moves Q(s,a) towards {@code target} by the agent's learning rate.
+	 *
+	 * @return the td error, {@code target - Q(s,a)}
+	 */
+	static double moveTowards(QTable table, double alpha, Game s, Move a, double target) {
+		double q = table.getQValue(s, a);
+		double tdError = target - q;
+		table.addQValue(s, a, q + alpha * tdError);
+		return tdError;
+	}
+
+	/**
+	 * @return the maximum q-value in {@code g} according to {@code table}, 0 if {@code g} is terminal.
+	 */
+	static double maxQValue(QTable table, Game g) {
+		if (g.isTerminal())
+			return 0.0;
+		double max = Double.NEGATIVE_INFINITY;
+		char[][] board = g.getBoard();
+		char who = g.whoseTurn.getName();
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ')
+				max = Math.max(max, table.getQValue(g, Move.of(who, c)));
+		return max;
+	}
+
+	/**
+	 * Trains a {@link QLearningAgent} with {@code rule} against a random opponent in chunks of {@code chunk} episodes, scoring
+	 * its greedy policy after each chunk as {@link HyperparameterSearch} does (1 for a win, 0.5 for a draw, 0 for a loss, in
+	 * games as X against random, defensive and aggressive opponents).
+	 *
+	 * @param rule        the rule to train with
+	 * @param target      the score to reach
+	 * @param chunk       the number of episodes between two evaluations
+	 * @param maxEpisodes the maximum number of episodes
+	 * @param r           the random stream of the evaluation games
+	 * @return the number of environment steps played when the score was first reached, -1 if it wasn't
+	 */
+	public static long stepsToScore(UpdateRule rule, double target, int chunk, int maxEpisodes, SplittableRandom r) {
+		QLearningAgent agent = new QLearningAgent(new TTTEnvironment(), 0.1, maxEpisodes, 0.9);
+		agent.setUpdateRule(rule);
+		agent.setMetrics(null);
+		while (agent.episodesPlayed < maxEpisodes) {
+			agent.trainEpisodes(Math.min(chunk, maxEpisodes - agent.episodesPlayed));
+			if (HyperparameterSearch.evaluate(agent.getPolicy(), 100, r) >= target)
+				return agent.getEnvSteps();
+		}
+		return -1;
+	}
+
+	/**
+	 * Prints the number of environment steps each rule needs to reach a score. Usage: {@code UpdateRule [target score]}
+	 */
+	public static void main(String[] args) {
+		double target = (args.length > 0) ? Double.parseDouble(args[0]) : 0.85;
+		String[] names = { "q-learning", "sarsa", "expected sarsa", "double q", "3-step", "q(lambda)" };
+		UpdateRule[] rules = { new QLearningRule(), new SarsaRule(), new ExpectedSarsaRule(), new DoubleQRule(),
+				new NStepRule(3, false), new QLambdaRule(0.8) };
+		for (int k = 0; k < rules.length; k++) {
+			long steps = stepsToScore(rules[k], target, 1000, 100000, RandomSource.newStream());
+			System.out.println(names[k] + ": " + ((steps < 0) ? "not reached" : steps + " steps"));
+		}
+	}
+
+}
@@ -1,6 +1,8 @@
 package ticTacToe;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,17 +38,31 @@ public class ValueIterationAgent extends Agent {
 	 */
 	int k=50;
 	
+	/**
+	 * Where training progress is reported to, see {@link TrainingMetrics}. Null if it isn't reported.
+	 */
+	TrainingMetrics metrics=TrainingMetrics.getDefault();
+	
 	
 	/**
-	 * This constructor trains the agent offline first and sets its policy
+	 * This constructor trains the agent offline first and sets its policy. If a policy trained with the same parameters is
+	 * in the {@link PolicyCache}, that is used instead, and {@link #valueFunction} is left empty.
 	 */
 	public ValueIterationAgent()
 	{
 		super();
 		mdp=new TTTMDP();
 		this.discount=0.9;
+		PolicyCache.Key key=new PolicyCache.Key("ValueIterationAgent", discount, mdp, k);
+		Policy cached=PolicyCache.lookup(key);
+		if (cached!=null)
+		{
+			this.policy=cached;
+			return;
+		}
 		initValues();
 		train();
+		PolicyCache.remember(key, policy);
 	}
 	
 	
@@ -142,6 +158,12 @@ public class ValueIterationAgent extends Agent {
 			}
 			 // Update main value function after each iteration
 	        valueFunction.putAll(updatedValueFunction);
+	        if (metrics!=null)
+	        {
+	        	metrics.recordBackups(updatedValueFunction.size());
+	        	metrics.recordIteration();
+	        	metrics.maybeReport();
+	        }
 		 }
 		}
 	
@@ -151,9 +173,9 @@ public class ValueIterationAgent extends Agent {
 	 * 
 	 * @return the policy according to {@link ValueIterationAgent#valueFunction}
 	 */
-	public Policy extractPolicy()
+	public ArrayPolicy extractPolicy()
 	{
-		Policy policy = new Policy();
+		ArrayPolicy policy = new ArrayPolicy();
 		
 		for (Game state : valueFunction.keySet()) {
 			if (mdp.isTerminal(state))
@@ -188,7 +210,7 @@ public class ValueIterationAgent extends Agent {
 	        }
 
 	        if (bestMove != null) {
-	        	 policy.policy.put(state, bestMove);
+	        	 policy.setMove(state.hashCode(), bestMove.cell());
 	        }
 		}
 		
@@ -217,9 +239,40 @@ public class ValueIterationAgent extends Agent {
 			System.out.println("Unimplemented methods! First implement the iterate() & extractPolicy() methods");
 			//System.exit(1);
 		}
+		if (metrics!=null)
+			metrics.report();
 		
 		
 		
+	}
+	
+	/**
+	 * Appends the current {@link #valueFunction} to a {@link TableSnapshot} file, e.g. to warm-start another run.
+	 * @param file
+	 * @param quantise true to store the values as floats
+	 * @throws IOException
+	 */
+	public void saveValues(File file, boolean quantise) throws IOException
+	{
+		TableSnapshot.append(file, k, 1, TableSnapshot.stateValues(valueFunction), quantise);
+	}
+	
+	/**
+	 * Loads the latest values in a {@link TableSnapshot} file into {@link #valueFunction}, so that {@link #train} continues
+	 * from them, or {@link #extractPolicy} can be used straight away.
+	 * @param file
+	 * @return false if the file has no complete snapshot
+	 * @throws IOException
+	 */
+	public boolean loadValues(File file) throws IOException
+	{
+		TableSnapshot s=TableSnapshot.open(file);
+		if (s==null)
+			return false;
+		if (valueFunction.isEmpty())
+			initValues();
+		s.fillStateValues(valueFunction);
+		return true;
 	}
 
 	public static void main(String[] args) throws IllegalMoveException {
@@ -0,0 +1,348 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A small multilayer perceptron in plain Java, used as a value function by {@link NeuralValueAgent}: fully connected
+ * layers with tanh hidden units and a single linear output, trained by stochastic gradient descent on the squared error.
+ *
+ * All weights and biases are kept in one flat {@code float[]}, layer after layer, each weight matrix row-major with one row
+ * per input unit. Inputs are processed in batches, one row per example, so that a single pass evaluates many games; the
+ * matrix products are blocked into tiles of {@link #BLOCK} columns and rows so that the tiles of the weights stay in cache
+ * while a batch streams past them.
+ *
+ * The scratch space of a pass, the activations, deltas and gradients, is held in a {@link Workspace}, so that passes do not
+ * allocate. A workspace must only be used by one thread at a time, but any number of threads can run forward passes with
+ * their own workspaces at once. {@link #train} splits a mini-batch into shards that are run on {@link #threads} threads,
+ * each computing the gradient of its shard in its own workspace; the gradients are summed once all shards are done and only
+ * then are the weights updated.
+ */
+public class ValueNetwork {
+
+	/**
+	 * the tile size of the blocked matrix products
+	 */
+	static final int BLOCK = 64;
+
+	/**
+	 * the number of units in each layer, input first, output (1) last
+	 */
+	final int[] sizes;
+
+	/**
+	 * where the weights and biases of each layer start in {@link #params}
+	 */
+	final int[] weightOffsets;
+	final int[] biasOffsets;
+
+	/**
+	 * all weights and biases
+	 */
+	final float[] params;
+
+	/**
+	 * the number of threads {@link #train} uses
+	 */
+	int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * one workspace per training thread, grown as needed
+	 */
+	private final List<Workspace> trainingSpaces = new ArrayList<Workspace>();
+
+	private ExecutorService pool = null;
+
+	/**
+	 * The activations, deltas and gradient of one pass over a batch of at most {@link #capacity} rows
+	 */
+	public class Workspace {
+		final int capacity;
+
+		/**
+		 * activations[l] holds the outputs of layer l, row-major, one row per example; activations[0] is the input
+		 */
+		final float[][] activations;
+
+		/**
+		 * deltas[l] holds the derivatives of the loss with respect to the pre-activations of layer l
+		 */
+		final float[][] deltas;
+
+		/**
+		 * the gradient, laid out like {@link ValueNetwork#params}
+		 */
+		final float[] gradient;
+
+		Workspace(int capacity) {
+			this.capacity = capacity;
+			this.activations = new float[sizes.length][];
+			this.deltas = new float[sizes.length][];
+			for (int l = 0; l < sizes.length; l++) {
+				activations[l] = new float[capacity * sizes[l]];
+				deltas[l] = new float[capacity * sizes[l]];
+			}
+			this.gradient = new float[params.length];
+		}
+
+		/**
+		 * @return the input rows, to be filled before {@link ValueNetwork#forward}
+		 */
+		public float[] input() {
+			return activations[0];
+		}
+
+		/**
+		 * @return the outputs of the last forward pass, one per row
+		 */
+		public float[] output() {
+			return activations[sizes.length - 1];
+		}
+	}
+
+	/**
+	 * A network with the given layer sizes and small random initial weights (Xavier initialisation).
+	 * 
+	 * @param sizes the number of units in each layer, from the input to the output layer, which must have 1 unit
+	 * @param r     the random stream to initialise the weights with
+	 */
+	public ValueNetwork(int[] sizes, SplittableRandom r) {
+		if (sizes.length < 2 || sizes[sizes.length - 1] != 1)
+			throw new IllegalArgumentException("A value network needs at least an input layer and a single output");
+		this.sizes = sizes.clone();
+		this.weightOffsets = new int[sizes.length - 1];
+		this.biasOffsets = new int[sizes.length - 1];
+		int n = 0;
+		for (int l = 0; l < sizes.length - 1; l++) {
+			weightOffsets[l] = n;
+			n += sizes[l] * sizes[l + 1];
+			biasOffsets[l] = n;
+			n += sizes[l + 1];
+		}
+		this.params = new float[n];
+		for (int l = 0; l < sizes.length - 1; l++) {
+			double scale = Math.sqrt(6.0 / (sizes[l] + sizes[l + 1]));
+			for (int i = 0; i < sizes[l] * sizes[l + 1]; i++)
+				params[weightOffsets[l] + i] = (float) ((2.0 * r.nextDouble() - 1.0) * scale);
+		}
+	}
+
+	public int inputSize() {
+		return sizes[0];
+	}
+
+	/**
+	 * @return the weights and biases, laid out as described above; changes take effect from the next pass
+	 */
+	public float[] parameters() {
+		return params;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param capacity the maximum number of rows of a batch
+	 * @return a new workspace for batches of up to {@code capacity} rows
+	 */
+	public Workspace newWorkspace(int capacity) {
+		return new Workspace(capacity);
+	}
+
+	/**
+	 * Runs the first {@code batch} rows of {@code ws.input()} through the network; the results are in {@code ws.output()}.
+	 */
+	public void forward(Workspace ws, int batch) {
+		int last = sizes.length - 1;
+		for (int l = 0; l < last; l++) {
+			int in = sizes[l];
+			int out = sizes[l + 1];
+			float[] a = ws.activations[l];
+			float[] z = ws.activations[l + 1];
+			// start from the biases, then add the product
+			for (int i = 0; i < batch; i++)
+				System.arraycopy(params, biasOffsets[l], z, i * out, out);
+			multiply(a, params, weightOffsets[l], z, batch, in, out);
+			if (l + 1 < last)
+				for (int i = 0; i < batch * out; i++)
+					z[i] = (float) Math.tanh(z[i]);
+		}
+	}
+
+	/**
+	 * After a {@link #forward} pass over the same rows, adds the gradient of the loss sum over the rows of
+	 * 0.5 * (output - target)^2 to {@code ws.gradient}.
+	 * 
+	 * @return the loss
+	 */
+	double backward(Workspace ws, float[] targets, int targetOffset, int batch) {
+		int last = sizes.length - 1;
+		float[] out = ws.activations[last];
+		float[] d = ws.deltas[last];
+		double loss = 0.0;
+		for (int i = 0; i < batch; i++) {
+			d[i] = out[i] - targets[targetOffset + i];
+			loss += 0.5 * d[i] * d[i];
+		}
+		for (int l = last - 1; l >= 0; l--) {
+			int in = sizes[l];
+			int outs = sizes[l + 1];
+			float[] a = ws.activations[l];
+			float[] dz = ws.deltas[l + 1];
+			multiplyTransposedLeft(a, dz, ws.gradient, weightOffsets[l], batch, in, outs);
+			for (int i = 0; i < batch; i++)
+				for (int j = 0; j < outs; j++)
+					ws.gradient[biasOffsets[l] + j] += dz[i * outs + j];
+			if (l > 0) {
+				float[] da = ws.deltas[l];
+				multiplyTransposedRight(dz, params, weightOffsets[l], da, batch, in, outs);
+				// through the tanh of layer l
+				for (int i = 0; i < batch * in; i++)
+					da[i] *= 1.0f - a[i] * a[i];
+			}
+		}
+		return loss;
+	}
+
+	/**
+	 * One gradient descent step on the mean squared error of a mini-batch.
+	 * 
+	 * @param inputs       the input rows, {@link #inputSize()} floats each
+	 * @param targets      the target value of each row
+	 * @param batch        the number of rows
+	 * @param learningRate
+	 * @return the mean loss over the batch, before the step
+	 */
+	public double train(float[] inputs, float[] targets, int batch, float learningRate) {
+		// shards of at least 16 rows, one per thread
+		int shards = Math.max(1, Math.min(threads, batch / 16));
+		int per = (batch + shards - 1) / shards;
+		if (trainingSpaces.size() < shards || trainingSpaces.get(0).capacity < per) {
+			trainingSpaces.clear();
+			for (int s = 0; s < shards; s++)
+				trainingSpaces.add(new Workspace(Math.max(per, 64)));
+		}
+
+		double loss = 0.0;
+		if (shards == 1)
+			loss = shard(trainingSpaces.get(0), inputs, targets, 0, batch);
+		else {
+			if (pool == null)
+				pool = Executors.newFixedThreadPool(threads, r -> {
+					Thread t = new Thread(r, "value-network");
+					t.setDaemon(true);
+					return t;
+				});
+			List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+			for (int s = 0; s < shards; s++) {
+				final Workspace ws = trainingSpaces.get(s);
+				final int from = s * per;
+				final int n = Math.min(per, batch - from);
+				tasks.add(() -> shard(ws, inputs, targets, from, n));
+			}
+			try {
+				for (Future<Double> f : pool.invokeAll(tasks))
+					loss += f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return Double.NaN;
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		float step = learningRate / batch;
+		for (int s = 0; s < shards; s++) {
+			float[] g = trainingSpaces.get(s).gradient;
+			for (int i = 0; i < params.length; i++) {
+				params[i] -= step * g[i];
+				g[i] = 0.0f;
+			}
+		}
+		return loss / batch;
+	}
+
+	private double shard(Workspace ws, float[] inputs, float[] targets, int from, int n) {
+		System.arraycopy(inputs, from * sizes[0], ws.activations[0], 0, n * sizes[0]);
+		forward(ws, n);
+		return backward(ws, targets, from, n);
+	}
+
+	/**
+	 * c[n x m] += a[n x k] * w[k x m], with w starting at {@code wOff}
+	 */
+	static void multiply(float[] a, float[] w, int wOff, float[] c, int n, int k, int m) {
+		for (int p0 = 0; p0 < k; p0 += BLOCK) {
+			int p1 = Math.min(k, p0 + BLOCK);
+			for (int j0 = 0; j0 < m; j0 += BLOCK) {
+				int j1 = Math.min(m, j0 + BLOCK);
+				for (int i = 0; i < n; i++) {
+					int ci = i * m;
+					for (int p = p0; p < p1; p++) {
+						float aip = a[i * k + p];
+						if (aip == 0.0f)
+							continue;
+						int wp = wOff + p * m;
+						for (int j = j0; j < j1; j++)
+							c[ci + j] += aip * w[wp + j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * g[k x m] += a^T[k x n] * d[n x m], with g starting at {@code gOff}
+	 */
+	static void multiplyTransposedLeft(float[] a, float[] d, float[] g, int gOff, int n, int k, int m) {
+		for (int p0 = 0; p0 < k; p0 += BLOCK) {
+			int p1 = Math.min(k, p0 + BLOCK);
+			for (int j0 = 0; j0 < m; j0 += BLOCK) {
+				int j1 = Math.min(m, j0 + BLOCK);
+				for (int i = 0; i < n; i++) {
+					int di = i * m;
+					for (int p = p0; p < p1; p++) {
+						float aip = a[i * k + p];
+						if (aip == 0.0f)
+							continue;
+						int gp = gOff + p * m;
+						for (int j = j0; j < j1; j++)
+							g[gp + j] += aip * d[di + j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * c[n x k] = d[n x m] * w^T[m x k], with w (k x m) starting at {@code wOff}
+	 */
+	static void multiplyTransposedRight(float[] d, float[] w, int wOff, float[] c, int n, int k, int m) {
+		for (int i = 0; i < n * k; i++)
+			c[i] = 0.0f;
+		for (int p0 = 0; p0 < k; p0 += BLOCK) {
+			int p1 = Math.min(k, p0 + BLOCK);
+			for (int j0 = 0; j0 < m; j0 += BLOCK) {
+				int j1 = Math.min(m, j0 + BLOCK);
+				for (int i = 0; i < n; i++) {
+					int di = i * m;
+					for (int p = p0; p < p1; p++) {
+						int wp = wOff + p * m;
+						float sum = 0.0f;
+						for (int j = j0; j < j1; j++)
+							sum += d[di + j] * w[wp + j];
+						c[i * k + p] += sum;
+					}
+				}
+			}
+		}
+	}
+
+}
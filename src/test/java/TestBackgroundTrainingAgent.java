@@ -0,0 +1,43 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ticTacToe.BackgroundTrainingAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomPolicy;
+import ticTacToe.TTTEnvironment;
+import ticTacToe.ValueIterationAgent;
+
+public class TestBackgroundTrainingAgent {
+	@Test
+	public void testPlaysWhileTraining() throws InterruptedException {
+		System.out.println("Against Random Agent, while training:");
+		BackgroundTrainingAgent agent=new BackgroundTrainingAgent(ValueIterationAgent::new);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(50, results[0]+results[1]+results[2]);
+		
+		assertTrue(agent.awaitTraining(5, TimeUnit.MINUTES));
+		results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+	
+	@Test
+	public void testQLearningChunks() throws InterruptedException {
+		System.out.println("Against Defensive Agent, q-learning in chunks:");
+		QLearningAgent learner=new QLearningAgent(new TTTEnvironment(), 0.1, 100000, 0.9);
+		BackgroundTrainingAgent agent=new BackgroundTrainingAgent(new RandomPolicy(), learner, 10000);
+		assertTrue(agent.awaitTraining(5, TimeUnit.MINUTES));
+		assertEquals(null, agent.getFailure());
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
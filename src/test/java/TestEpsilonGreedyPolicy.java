@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.EpsilonGreedyPolicy;
+import ticTacToe.EpsilonGreedyPolicy.Schedule;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.QTable;
+
+public class TestEpsilonGreedyPolicy {
+
+	static EpsilonGreedyPolicy policy(QTable q, Schedule schedule, double start, double end, double decay,
+			boolean boltzmann) {
+		return new EpsilonGreedyPolicy(q, schedule, start, end, decay, boltzmann, new SplittableRandom(7));
+	}
+
+	@Test
+	public void testLinear() {
+		Game g = new Game();
+		EpsilonGreedyPolicy p = policy(new QTable(), Schedule.LINEAR, 1.0, 0.1, 10, false);
+		assertEquals(1.0, p.getEpsilon(g), 1e-12);
+		for (int i = 0; i < 5; i++)
+			p.endEpisode();
+		assertEquals(0.55, p.getEpsilon(g), 1e-12);
+		for (int i = 0; i < 10; i++)
+			p.endEpisode();
+		assertEquals(0.1, p.getEpsilon(g), 1e-12);
+	}
+
+	@Test
+	public void testExponential() {
+		Game g = new Game();
+		EpsilonGreedyPolicy p = policy(new QTable(), Schedule.EXPONENTIAL, 1.0, 0.1, 100, false);
+		assertEquals(1.0, p.getEpsilon(g), 1e-12);
+		p.setEpisode(100);
+		assertEquals(0.1 + 0.9 / Math.E, p.getEpsilon(g), 1e-12);
+		p.setEpisode(100000);
+		assertEquals(0.1, p.getEpsilon(g), 1e-12);
+	}
+
+	@Test
+	public void testConstantAndVisitCount() {
+		Game g = new Game();
+		EpsilonGreedyPolicy constant = policy(new QTable(), Schedule.CONSTANT, 0.2, 0.0, 1, false);
+		constant.setEpisode(1000);
+		assertEquals(0.2, constant.getEpsilon(g), 0.0);
+
+		// epsilon is halved after decay visits of a state, and never drops below end
+		EpsilonGreedyPolicy visits = policy(new QTable(), Schedule.VISIT_COUNT, 0.8, 0.1, 4, false);
+		assertEquals(0.8, visits.getEpsilon(g), 1e-12);
+		for (int i = 0; i < 4; i++)
+			visits.getMove(g);
+		assertEquals(0.4, visits.getEpsilon(g), 1e-12);
+		for (int i = 0; i < 100; i++)
+			visits.getMove(g);
+		assertEquals(0.1, visits.getEpsilon(g), 1e-12);
+		// other states have their own counts
+		assertEquals(0.8, visits.getEpsilon(new Game('O')), 1e-12);
+	}
+
+	/**
+	 * Checks that the moves chosen by {@code p} in {@code g} follow {@link EpsilonGreedyPolicy#getProbabilities}, and
+	 * returns those.
+	 */
+	static double[] checkFrequencies(EpsilonGreedyPolicy p, Game g) {
+		double[] probabilities = new double[9];
+		assertEquals(9, p.getProbabilities(g, probabilities));
+		double sum = 0;
+		for (double q : probabilities)
+			sum += q;
+		assertEquals(1.0, sum, 1e-9);
+
+		int samples = 100000;
+		double[] counts = new double[9];
+		for (int i = 0; i < samples; i++)
+			counts[p.getMove(g).cell()]++;
+		for (int c = 0; c < 9; c++)
+			assertEquals("cell " + c, probabilities[c], counts[c] / samples, 0.01);
+		return probabilities;
+	}
+
+	@Test
+	public void testEpsilonGreedy() {
+		Game g = new Game();
+		QTable q = new QTable();
+		q.addQValue(g, Move.of('X', 4), 1.0);
+		double[] probabilities = checkFrequencies(policy(q, Schedule.CONSTANT, 0.3, 0.3, 1, false), g);
+		assertEquals(0.7 + 0.3 / 9, probabilities[4], 1e-12);
+		assertEquals(0.3 / 9, probabilities[0], 1e-12);
+
+		// without exploration the greedy move is always played
+		EpsilonGreedyPolicy greedy = policy(q, Schedule.CONSTANT, 0.0, 0.0, 1, false);
+		for (int i = 0; i < 100; i++)
+			assertEquals(4, greedy.getMove(g).cell());
+	}
+
+	@Test
+	public void testBoltzmann() {
+		Game g = new Game();
+		QTable q = new QTable();
+		q.addQValue(g, Move.of('X', 0), 1.0);
+		double[] probabilities = checkFrequencies(policy(q, Schedule.CONSTANT, 0.5, 0.5, 1, true), g);
+		// exp(1 / 0.5) times more likely than each of the other 8 cells
+		double e = Math.exp(2);
+		assertEquals(e / (e + 8), probabilities[0], 1e-3);
+		assertEquals(1 / (e + 8), probabilities[1], 1e-3);
+	}
+
+}
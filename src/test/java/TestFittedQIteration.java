@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.FittedQIteration;
+import ticTacToe.Game;
+import ticTacToe.GameRecordWriter;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.StateIndex;
+
+public class TestFittedQIteration {
+
+	/**
+	 * @return the game after the given moves, X moving first
+	 */
+	static Game play(int... cells) throws IllegalMoveException {
+		Game g = new Game(new Agent(), new Agent());
+		char who = 'X';
+		for (int c : cells) {
+			g.executeMove(Move.of(who, c));
+			who = (who == 'X') ? 'O' : 'X';
+		}
+		return g;
+	}
+
+	static File log(Game... games) throws IOException {
+		File file = File.createTempFile("games", ".log");
+		file.delete();
+		GameRecordWriter writer = new GameRecordWriter(file);
+		try {
+			for (Game g : games)
+				assertTrue(writer.append(g));
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Two games that share their first two moves by X: one X wins, one O wins. With rewards 10 for a win, -50 for a loss and
+	 * -1 per move, and a discount of 0.9, the first sweep gives every move that doesn't end the game its living reward, and
+	 * the second bootstraps from those.
+	 */
+	@Test
+	public void testBellmanTargets() throws IOException, IllegalMoveException {
+		Game won = play(0, 3, 1, 4, 2);
+		Game lost = play(0, 3, 1, 2, 8, 4, 7, 5);
+		assertEquals(Game.X_WON, won.getState());
+		assertEquals(Game.O_WON, lost.getState());
+		File file = log(won, lost);
+		try {
+			Game s0 = play();
+			Game s2 = play(0, 3);
+			Game wonS4 = play(0, 3, 1, 4);
+			Game lostS4 = play(0, 3, 1, 2);
+			Game lostS6 = play(0, 3, 1, 2, 8, 4);
+
+			FittedQIteration fqi = new FittedQIteration(0.9, 1, 0.0);
+			fqi.setRewards(10, -50, -1, 0);
+			assertEquals(1, fqi.fit(file));
+			assertEquals(-1.0, fqi.getQValue(s0, Move.of('X', 0)), 1e-12);
+			assertEquals(-1.0, fqi.getQValue(s2, Move.of('X', 1)), 1e-12);
+			assertEquals(10.0, fqi.getQValue(wonS4, Move.of('X', 2)), 1e-12);
+			assertEquals(-1.0, fqi.getQValue(lostS4, Move.of('X', 8)), 1e-12);
+			assertEquals(-50.0, fqi.getQValue(lostS6, Move.of('X', 7)), 1e-12);
+			// a move that never occurs
+			assertEquals(0.0, fqi.getQValue(s0, Move.of('X', 4)), 0.0);
+
+			fqi = new FittedQIteration(0.9, 2, 0.0);
+			fqi.setRewards(10, -50, -1, 0);
+			assertEquals(2, fqi.fit(file));
+			// both games reach s2 after this move, whose only move in the log is worth -1
+			assertEquals(-1.0 + 0.9 * -1.0, fqi.getQValue(s0, Move.of('X', 0)), 1e-12);
+			// the average of the targets of the two games, which continue to different states
+			assertEquals(((-1.0 + 0.9 * 10.0) + (-1.0 + 0.9 * -1.0)) / 2, fqi.getQValue(s2, Move.of('X', 1)), 1e-12);
+			assertEquals(10.0, fqi.getQValue(wonS4, Move.of('X', 2)), 1e-12);
+			assertEquals(-1.0 + 0.9 * -50.0, fqi.getQValue(lostS4, Move.of('X', 8)), 1e-12);
+			assertEquals(-50.0, fqi.getQValue(lostS6, Move.of('X', 7)), 1e-12);
+
+			assertEquals(2, fqi.extractPolicy().getMove(wonS4).cell());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testParallelSweepsMatchSingleThread() throws IOException, IllegalMoveException {
+		SplittableRandom random = new SplittableRandom(3);
+		Game[] games = new Game[3000];
+		for (int i = 0; i < games.length; i++) {
+			Game g = new Game(new Agent(), new Agent());
+			while (!g.isTerminal()) {
+				List<Move> moves = g.getPossibleMoves();
+				g.executeMove(moves.get(random.nextInt(moves.size())));
+			}
+			games[i] = g;
+		}
+		File file = log(games);
+		try {
+			FittedQIteration single = new FittedQIteration(0.9, 5, 0.0);
+			single.setThreads(1);
+			FittedQIteration parallel = new FittedQIteration(0.9, 5, 0.0);
+			parallel.setThreads(4);
+			assertEquals(single.fit(file), parallel.fit(file));
+
+			StateIndex index = StateIndex.xStates();
+			int nonZero = 0;
+			for (int id = 0; id < index.size(); id++) {
+				Game g = index.game(id);
+				if (g.isTerminal())
+					continue;
+				for (Move m : g.getPossibleMoves()) {
+					double q = single.getQValue(g, m);
+					assertEquals(q, parallel.getQValue(g, m), 1e-9);
+					if (q != 0.0)
+						nonZero++;
+				}
+			}
+			assertTrue(nonZero > 1000);
+		} finally {
+			file.delete();
+		}
+	}
+
+}
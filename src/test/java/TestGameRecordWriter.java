@@ -0,0 +1,103 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.FittedQIteration;
+import ticTacToe.Game;
+import ticTacToe.GameRecord;
+import ticTacToe.GameRecordReader;
+import ticTacToe.GameRecordWriter;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomPolicy;
+
+public class TestGameRecordWriter {
+
+	/**
+	 * Plays {@code n} games, O starting every other one, appends them to {@code writer} and adds them to {@code games}.
+	 */
+	static void play(GameRecordWriter writer, List<Game> games, Agent x, Agent o, int n)
+			throws IOException, IllegalMoveException {
+		for (int i = 0; i < n; i++) {
+			Game g = new Game(x, o, (i % 2 == 0) ? x : o);
+			g.playOut();
+			assertTrue(writer.append(g));
+			games.add(g);
+		}
+	}
+
+	@Test
+	public void testRoundTripWithTornTail() throws IOException, IllegalMoveException {
+		File file = File.createTempFile("games", ".log");
+		file.delete();
+		try {
+			List<Game> games = new ArrayList<Game>();
+			SplittableRandom random = new SplittableRandom(7);
+			// a batch smaller than the number of games, so some are written before the log is closed
+			GameRecordWriter writer = new GameRecordWriter(file, 3);
+			play(writer, games, new RandomAgent(random.split()), new DefensiveAgent(random.split()), 10);
+			writer.close();
+			assertEquals(GameRecord.HEADER_SIZE + 10L * GameRecord.RECORD_SIZE, file.length());
+
+			// a record cut off halfway, as after a crash
+			FileOutputStream out = new FileOutputStream(file, true);
+			try {
+				out.write(new byte[GameRecord.RECORD_SIZE / 2]);
+			} finally {
+				out.close();
+			}
+
+			// reopening cuts it off, and appends after the last whole record
+			writer = new GameRecordWriter(file, 3);
+			play(writer, games, new FittedQIteration.FittedQAgent(new RandomPolicy(random.split())),
+					new RandomAgent(random.split()), 5);
+			writer.close();
+			assertEquals(GameRecord.HEADER_SIZE + 15L * GameRecord.RECORD_SIZE, file.length());
+
+			GameRecordReader reader = new GameRecordReader(file);
+			try {
+				assertEquals((long) games.size(), reader.size());
+				GameRecordReader.Cursor cursor = reader.cursor();
+				GameRecord r = new GameRecord();
+				for (int i = 0; i < games.size(); i++) {
+					assertTrue(cursor.next(r));
+					Game g = games.get(i);
+					assertEquals(i < 10 ? GameRecord.RANDOM : GameRecord.FITTED_Q, r.getXPlayer());
+					assertEquals(i < 10 ? GameRecord.DEFENSIVE : GameRecord.RANDOM, r.getOPlayer());
+					assertEquals(i % 2 == 0 ? 'X' : 'O', r.getStarter());
+					assertEquals(g.getState(), r.getOutcome());
+					assertEquals(g.getHistoryLength(), r.getMoveCount());
+					for (int k = 0; k < r.getMoveCount(); k++)
+						assertEquals(g.getHistoryMove(k), r.getMove(k));
+					assertEquals(g, r.toGame());
+				}
+				assertFalse(cursor.next(r));
+			} finally {
+				reader.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testPlayerNames() {
+		assertEquals("mc", GameRecord.playerName(GameRecord.MONTE_CARLO));
+		assertEquals("lin", GameRecord.playerName(GameRecord.LINEAR_Q));
+		assertEquals("nn", GameRecord.playerName(GameRecord.NEURAL_VALUE));
+		assertEquals("fqi", GameRecord.playerName(GameRecord.playerCode(new FittedQIteration.FittedQAgent(null))));
+		assertEquals("other", GameRecord.playerName(GameRecord.playerCode(new Agent())));
+	}
+
+}
@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.LineFeatures;
+import ticTacToe.LinearQAgent;
+import ticTacToe.Move;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomSource;
+import ticTacToe.StateIndex;
+
+public class TestLinearQAgent {
+
+	/**
+	 * @return the game after the given moves, X moving first
+	 */
+	static Game play(int... cells) throws IllegalMoveException {
+		Game g = new Game(new Agent(), new Agent());
+		char who = 'X';
+		for (int c : cells) {
+			g.executeMove(Move.of(who, c));
+			who = (who == 'X') ? 'O' : 'X';
+		}
+		return g;
+	}
+
+	/**
+	 * @return the features of the game, as a dense vector
+	 */
+	static double[] features(Game g) {
+		int[] indices = new int[LineFeatures.SIZE];
+		double[] values = new double[LineFeatures.SIZE];
+		int n = new LineFeatures().extract(g.hashCode(), indices, values);
+		double[] dense = new double[LineFeatures.SIZE];
+		for (int k = 0; k < n; k++) {
+			// in order, and only the non-zero ones
+			assertTrue(k == 0 || indices[k] > indices[k - 1]);
+			assertTrue(values[k] != 0.0);
+			dense[indices[k]] = values[k];
+		}
+		return dense;
+	}
+
+	/**
+	 * @return a dense vector with the bias and the given pairs of feature index and value
+	 */
+	static double[] expected(int... pairs) {
+		double[] dense = new double[LineFeatures.SIZE];
+		dense[LineFeatures.BIAS] = 1.0;
+		for (int k = 0; k < pairs.length; k += 2)
+			dense[pairs[k]] = pairs[k + 1];
+		return dense;
+	}
+
+	static void assertFeatures(double[] expected, Game g) {
+		assertEquals(Arrays.toString(expected), Arrays.toString(features(g)));
+	}
+
+	@Test
+	public void testEmptyBoard() throws IllegalMoveException {
+		assertFeatures(expected(), play());
+	}
+
+	@Test
+	public void testCentreAndCorner() throws IllegalMoveException {
+		// X in the centre, O in a corner: X has three lines to itself, O two, and they share a diagonal
+		assertFeatures(expected(LineFeatures.X_ONE, 3, LineFeatures.O_ONE, 2, LineFeatures.BLOCKED, 1,
+				LineFeatures.X_CENTRE, 1, LineFeatures.O_CORNERS, 1), play(4, 0));
+	}
+
+	@Test
+	public void testForks() throws IllegalMoveException {
+		// X in opposite corners around O in the centre: playing 2 or 6 would give X two lines of two
+		assertFeatures(expected(LineFeatures.X_ONE, 4, LineFeatures.O_ONE, 3, LineFeatures.BLOCKED, 1,
+				LineFeatures.X_FORKS, 2, LineFeatures.O_CENTRE, 1, LineFeatures.X_CORNERS, 2), play(0, 4, 8));
+	}
+
+	@Test
+	public void testTwoAndThreeInALine() throws IllegalMoveException {
+		// X has won along the top row, O has two in the middle row, and four lines hold both
+		assertFeatures(expected(LineFeatures.X_ONE, 1, LineFeatures.X_THREE, 1, LineFeatures.O_TWO, 1, LineFeatures.BLOCKED,
+				4, LineFeatures.O_CENTRE, 1, LineFeatures.X_CORNERS, 2), play(0, 3, 1, 4, 2));
+	}
+
+	@Test
+	public void testDotMatchesDenseProduct() {
+		SplittableRandom r = new SplittableRandom(1);
+		double[] weights = new double[LineFeatures.SIZE];
+		for (int f = 0; f < weights.length; f++)
+			weights[f] = 2.0 * r.nextDouble() - 1.0;
+		LineFeatures features = new LineFeatures();
+		int[] indices = new int[LineFeatures.SIZE];
+		double[] values = new double[LineFeatures.SIZE];
+		StateIndex states = StateIndex.xStates();
+		for (int id = 0; id < states.size(); id++) {
+			Game g = states.game(id);
+			int n = features.extract(g.hashCode(), indices, values);
+			double[] dense = features(g);
+			double product = 0.0;
+			for (int f = 0; f < LineFeatures.SIZE; f++)
+				product += weights[f] * dense[f];
+			assertEquals(product, LineFeatures.dot(weights, indices, values, n), 1e-12);
+		}
+	}
+
+	/**
+	 * Lines and forks don't tell every position apart, so how well the agent plays depends on its training run: the seed,
+	 * set before the opponent is created, makes the run and the games reproducible.
+	 */
+	static final long SEED = 1;
+
+	static int[] play(Agent opponent) {
+		int[] results = TestPolicyIterationAgent.playAgainstEachOther(new LinearQAgent(), opponent, 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		return results;
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		RandomSource.setSeed(SEED);
+		assertEquals(0, play(new DefensiveAgent())[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Against Aggressive Agent:");
+		RandomSource.setSeed(SEED);
+		assertEquals(0, play(new AggressiveAgent())[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		RandomSource.setSeed(SEED);
+		assertEquals(0, play(new RandomAgent())[1]);
+	}
+
+}
@@ -0,0 +1,229 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.FittedQIteration;
+import ticTacToe.Game;
+import ticTacToe.GameRecord;
+import ticTacToe.GameRecordReader;
+import ticTacToe.GameRecordWriter;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.MatchHistoryStore;
+import ticTacToe.Move;
+import ticTacToe.RandomAgent;
+import ticTacToe.StateIndex;
+
+public class TestMatchHistoryStore {
+
+	static final int GAMES = 2000;
+
+	static final int[] OPENINGS = { MatchHistoryStore.CORNER, MatchHistoryStore.EDGE, MatchHistoryStore.CENTRE,
+			MatchHistoryStore.ANY_OPENING, 1 << 9 };
+
+	/**
+	 * Writes a log of random games between players of a few types, some with O starting and some stopped before the end.
+	 */
+	static File log() throws IOException, IllegalMoveException {
+		File file = File.createTempFile("games", ".log");
+		file.delete();
+		SplittableRandom random = new SplittableRandom(11);
+		Agent[] players = { new RandomAgent(random.split()), new DefensiveAgent(random.split()), new Agent(),
+				new FittedQIteration.FittedQAgent(null) };
+		GameRecordWriter writer = new GameRecordWriter(file);
+		try {
+			for (int i = 0; i < GAMES; i++) {
+				Agent x = players[random.nextInt(players.length)];
+				Agent o = players[random.nextInt(players.length)];
+				if (x == o)
+					o = new Agent();
+				Game g = new Game(x, o, random.nextBoolean() ? x : o);
+				int stop = (random.nextInt(10) == 0) ? random.nextInt(9) : 9;
+				for (int k = 0; k < stop && !g.isTerminal(); k++) {
+					List<Move> moves = g.getPossibleMoves();
+					g.executeMove(moves.get(random.nextInt(moves.size())));
+				}
+				assertTrue(writer.append(g));
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * The games of the log, decoded, and the positions each reached, by brute force.
+	 */
+	final List<GameRecord> records = new ArrayList<GameRecord>();
+	final List<List<Integer>> positions = new ArrayList<List<Integer>>();
+
+	void scan(File log) throws IOException, IllegalMoveException {
+		GameRecordReader reader = new GameRecordReader(log);
+		try {
+			GameRecordReader.Cursor cursor = reader.cursor();
+			GameRecord r = new GameRecord();
+			while (cursor.next(r)) {
+				records.add(r);
+				List<Integer> reached = new ArrayList<Integer>();
+				char who = r.getStarter();
+				Game g = new Game(who);
+				reached.add(g.hashCode());
+				for (int k = 0; k < r.getMoveCount(); k++) {
+					g.executeMove(Move.of(who, r.getMove(k)));
+					reached.add(g.hashCode());
+					who = (who == 'X') ? 'O' : 'X';
+				}
+				positions.add(reached);
+				r = new GameRecord();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	static int opening(GameRecord r) {
+		int k = (r.getStarter() == 'X') ? 0 : 1;
+		return (k < r.getMoveCount()) ? r.getMove(k) : 9;
+	}
+
+	long count(int x, int o, int openings, int outcome) {
+		long n = 0;
+		for (GameRecord r : records)
+			if ((x == MatchHistoryStore.ANY || r.getXPlayer() == x) && (o == MatchHistoryStore.ANY || r.getOPlayer() == o)
+					&& (openings & (1 << opening(r))) != 0
+					&& (outcome == MatchHistoryStore.ANY || r.getOutcome() == outcome))
+				n++;
+		return n;
+	}
+
+	static File tempDirectory() throws IOException {
+		File dir = File.createTempFile("store", "");
+		assertTrue(dir.delete() && dir.mkdir());
+		return dir;
+	}
+
+	static void delete(File dir) {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testQueriesMatchScan() throws IOException, IllegalMoveException {
+		File log = log();
+		File dir = tempDirectory();
+		try {
+			scan(log);
+			MatchHistoryStore store = MatchHistoryStore.build(log, dir);
+			try {
+				assertEquals((long) GAMES, store.size());
+
+				int[] players = { MatchHistoryStore.ANY, GameRecord.OTHER, GameRecord.RANDOM, GameRecord.DEFENSIVE,
+						GameRecord.FITTED_Q, GameRecord.HUMAN };
+				int[] outcomes = { MatchHistoryStore.ANY, Game.ONGOING, Game.X_WON, Game.O_WON, Game.DRAW };
+				for (int x : players)
+					for (int o : players)
+						for (int openings : OPENINGS) {
+							for (int outcome : outcomes)
+								assertEquals(count(x, o, openings, outcome), store.count(x, o, openings, outcome));
+							long all = count(x, o, openings, MatchHistoryStore.ANY);
+							double rate = store.winRate(x, o, openings);
+							if (all == 0)
+								assertTrue(Double.isNaN(rate));
+							else
+								assertEquals((double) count(x, o, openings, Game.X_WON) / all, rate, 1e-12);
+						}
+
+				// every position reached, and the games that reached it in log order
+				List<List<Long>> reaching = new ArrayList<List<Long>>();
+				for (int h = 0; h < StateIndex.HASH_SPACE; h++)
+					reaching.add(null);
+				for (int g = 0; g < positions.size(); g++)
+					for (int h : positions.get(g)) {
+						if (reaching.get(h) == null)
+							reaching.set(h, new ArrayList<Long>());
+						reaching.get(h).add((long) g);
+					}
+				for (int h = 0; h < StateIndex.HASH_SPACE; h++) {
+					List<Long> games = reaching.get(h);
+					assertEquals(games == null ? 0L : (long) games.size(), store.countReaching(h));
+					if (games == null)
+						continue;
+					long[] expected = new long[Math.min(5, games.size())];
+					for (int i = 0; i < expected.length; i++)
+						expected[i] = games.get(i);
+					assertEquals(Arrays.toString(expected), Arrays.toString(store.gamesReaching(h, 5)));
+				}
+
+				// out of range hashes reach no games, and a limit can't be negative
+				for (int h : new int[] { -1, StateIndex.HASH_SPACE - 1, StateIndex.HASH_SPACE, Integer.MAX_VALUE }) {
+					assertEquals(0L, store.countReaching(h));
+					assertEquals(0, store.gamesReaching(h, 5).length);
+				}
+				assertEquals(0, store.gamesReaching(new Game().hashCode(), 0).length);
+				try {
+					store.gamesReaching(new Game().hashCode(), -1);
+					fail("Returned games for a negative limit");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+
+				GameRecord r = new GameRecord();
+				for (int g = 0; g < GAMES; g += 7) {
+					store.read(g, r);
+					GameRecord expected = records.get(g);
+					assertEquals(expected.getXPlayer(), r.getXPlayer());
+					assertEquals(expected.getOPlayer(), r.getOPlayer());
+					assertEquals(expected.getStarter(), r.getStarter());
+					assertEquals(expected.getOutcome(), r.getOutcome());
+					assertEquals(expected.getMoveCount(), r.getMoveCount());
+					for (int k = 0; k < r.getMoveCount(); k++)
+						assertEquals(expected.getMove(k), r.getMove(k));
+					assertEquals(expected.getTimestamp(), r.getTimestamp());
+				}
+			} finally {
+				store.close();
+			}
+		} finally {
+			log.delete();
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testClosed() throws IOException, IllegalMoveException {
+		File log = log();
+		File dir = tempDirectory();
+		try {
+			MatchHistoryStore store = MatchHistoryStore.build(log, dir);
+			store.close();
+			try {
+				store.count(MatchHistoryStore.ANY, MatchHistoryStore.ANY, MatchHistoryStore.ANY_OPENING,
+						MatchHistoryStore.ANY);
+				fail("Counted games in a closed store");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			try {
+				store.countReaching(new Game().hashCode());
+				fail("Counted positions in a closed store");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			log.delete();
+			delete(dir);
+		}
+	}
+
+}
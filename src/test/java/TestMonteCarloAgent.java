@@ -0,0 +1,81 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.MonteCarloAgent;
+import ticTacToe.Move;
+import ticTacToe.RandomAgent;
+import ticTacToe.StateIndex;
+
+public class TestMonteCarloAgent {
+
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MonteCarloAgent(), new RandomAgent(), 50);
+
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	/**
+	 * Every episode visits the empty board exactly once, so however the episodes were split into batches and between workers,
+	 * the merged visit counts of the first moves add up to the number of episodes.
+	 */
+	@Test
+	public void testMergedVisits() {
+		int episodes = 4999;
+		MonteCarloAgent agent = new MonteCarloAgent(RandomAgent::new, episodes, 0.9, 0.1, true);
+		Game empty = new Game();
+		long visits = 0;
+		for (int c = 0; c < 9; c++)
+			visits += agent.getVisits(empty, Move.of('X', c));
+		assertEquals((long) episodes, visits);
+	}
+
+	/**
+	 * A move that ends the game is always followed by the same return, its reward, so its q-value, the average return, is
+	 * exactly that reward, with none of the bias or noise of a bootstrapped estimate.
+	 */
+	@Test
+	public void testFinalMoveReturns() throws IllegalMoveException {
+		MonteCarloAgent agent = new MonteCarloAgent(RandomAgent::new, 20000, 0.9, 0.3, true);
+		StateIndex index = StateIndex.xStates();
+		int checked = 0;
+		for (int id = 0; id < index.size(); id++) {
+			Game g = index.game(id);
+			if (g.isTerminal())
+				continue;
+			for (Move m : g.getPossibleMoves()) {
+				if (agent.getVisits(g, m) == 0)
+					continue;
+				int state = g.simulateMove(m).getState();
+				if (state == Game.X_WON) {
+					assertEquals(10.0, agent.getQValue(g, m), 0.0);
+					checked++;
+				} else if (state == Game.DRAW) {
+					assertEquals(0.0, agent.getQValue(g, m), 0.0);
+					checked++;
+				}
+			}
+		}
+		assertTrue(checked > 100);
+	}
+
+	@Test
+	public void testInterrupted() {
+		Thread.currentThread().interrupt();
+		try {
+			new MonteCarloAgent(RandomAgent::new, 10000, 0.9, 0.1, true);
+			fail("Training should fail when interrupted");
+		} catch (IllegalStateException e) {
+			// the interrupt is passed on, not swallowed
+			assertTrue(Thread.interrupted());
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.OnlineLearner;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+
+public class TestOnlineLearning {
+	@Test
+	public void testLearnsFromPlayedGames() throws InterruptedException {
+		System.out.println("Against Random Agent, learning online:");
+		QLearningAgent trained=new QLearningAgent(new RandomAgent(), 0.1, 1000, 0.9);
+		OnlineLearner learner=new OnlineLearner(trained, 1024, 10);
+		learner.start();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(learner.newAgent(), new RandomAgent(), 50);
+		learner.stop();
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(50, results[0]+results[1]+results[2]);
+		// every game has at least 3 moves by X, and all of them are learned from unless the queue overflowed
+		assertTrue(learner.getUpdates()+learner.getDropped()>=150);
+		assertTrue(learner.getUpdates()>0);
+	}
+
+}
@@ -0,0 +1,154 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import ticTacToe.ArrayPolicy;
+import ticTacToe.PolicyCache;
+import ticTacToe.PolicyFile;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomSource;
+import ticTacToe.StateIndex;
+
+public class TestPolicyCache {
+
+	static File tempDirectory() throws IOException {
+		File dir = File.createTempFile("cache", "");
+		assertTrue(dir.delete() && dir.mkdir());
+		return dir;
+	}
+
+	static PolicyCache.Key key(double discount, Long seed, String parameters) {
+		return new PolicyCache.Key("Test", discount, 10, -50, -1, 0, 1000, seed, parameters);
+	}
+
+	/**
+	 * @return a policy that plays the same cell everywhere
+	 */
+	static ArrayPolicy policy(int cell) {
+		ArrayPolicy p = new ArrayPolicy();
+		StateIndex index = StateIndex.xStates();
+		for (int id = 0; id < index.size(); id++)
+			p.setMove(index.hash(id), cell);
+		return p;
+	}
+
+	static File onlyFile(File dir) {
+		File[] files = dir.listFiles();
+		assertEquals(1, files.length);
+		return files[0];
+	}
+
+	@Test
+	public void testHitAndMiss() throws IOException {
+		File dir = tempDirectory();
+		try {
+			PolicyCache cache = new PolicyCache(dir);
+			PolicyCache.Key key = key(0.9, 1L, "alpha=0.1");
+			assertNull(cache.load(key));
+			cache.store(key, policy(4));
+
+			ArrayPolicy hit = (ArrayPolicy) cache.load(key(0.9, 1L, "alpha=0.1"));
+			assertEquals(0.0, policy(4).disagreement(hit), 0.0);
+			// any other parameter is a different entry
+			assertNull(cache.load(key(0.8, 1L, "alpha=0.1")));
+			assertNull(cache.load(key(0.9, 2L, "alpha=0.1")));
+			assertNull(cache.load(key(0.9, 1L, "alpha=0.2")));
+			assertNull(cache.load(key(0.9, null, "alpha=0.1")));
+
+			cache.clear();
+			assertNull(cache.load(key));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testInvalidation() throws IOException {
+		File dir = tempDirectory();
+		try {
+			PolicyCache cache = new PolicyCache(dir);
+			PolicyCache.Key key = key(0.9, 1L, "");
+
+			// a file that was written for other rewards is deleted
+			cache.store(key, policy(0));
+			File file = onlyFile(dir);
+			PolicyFile f = PolicyFile.read(file);
+			new PolicyFile(f.getPolicy(), 0.9, 1, -1, 0, 0).write(file);
+			assertNull(cache.load(key));
+			assertFalse(file.exists());
+
+			// as is a corrupt file
+			cache.store(key, policy(0));
+			file = onlyFile(dir);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(PolicyFile.HEADER_SIZE + 1);
+				raf.write(7);
+			} finally {
+				raf.close();
+			}
+			assertNull(cache.load(key));
+			assertFalse(file.exists());
+		} finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * The cached policy of a seeded Q-learning agent must be the one this run would train, whatever was created before it.
+	 */
+	@Test
+	public void testSeededQLearningIgnoresEarlierStreams() {
+		PolicyCache.setDefault(null);
+		RandomSource.setSeed(42);
+		ArrayPolicy first = (ArrayPolicy) new QLearningAgent().getPolicy();
+		RandomSource.setSeed(42);
+		RandomSource.newStreams(3);
+		ArrayPolicy second = (ArrayPolicy) new QLearningAgent().getPolicy();
+		assertEquals(0.0, first.disagreement(second), 0.0);
+	}
+
+	/**
+	 * The initial policy of policy iteration is random, so its cache entry is per seed, and must hold the policy this seed
+	 * finds whatever was created before it.
+	 */
+	@Test
+	public void testPolicyIterationIsCachedPerSeed() throws IOException {
+		File dir = tempDirectory();
+		try {
+			PolicyCache.setDefault(new PolicyCache(dir));
+			RandomSource.setSeed(7);
+			ArrayPolicy cached = new ArrayPolicy(new PolicyIterationAgent().getPolicy());
+			assertEquals(1, dir.listFiles().length);
+
+			PolicyCache.setDefault(null);
+			RandomSource.setSeed(7);
+			RandomSource.newStreams(3);
+			ArrayPolicy solved = new ArrayPolicy(new PolicyIterationAgent().getPolicy());
+			assertEquals(0.0, cached.disagreement(solved), 0.0);
+
+			PolicyCache.setDefault(new PolicyCache(dir));
+			RandomSource.setSeed(8);
+			new PolicyIterationAgent();
+			assertEquals(2, dir.listFiles().length);
+		} finally {
+			PolicyCache.setDefault(null);
+			delete(dir);
+		}
+	}
+
+	static void delete(File dir) {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+}
@@ -0,0 +1,66 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ticTacToe.ArrayPolicy;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.PolicyCompiler;
+import ticTacToe.StateIndex;
+
+public class TestPolicyCompiler {
+
+	/**
+	 * @return a policy with a different move in most states: the empty cell after the id modulo 9
+	 */
+	static ArrayPolicy policy() {
+		ArrayPolicy p = new ArrayPolicy();
+		StateIndex index = StateIndex.xStates();
+		for (int id = 0; id < index.size(); id++) {
+			Game g = index.game(id);
+			if (g.isTerminal())
+				continue;
+			char[][] board = g.getBoard();
+			for (int k = 0; k < 9; k++) {
+				int c = (id + k) % 9;
+				if (board[c / 3][c % 3] == ' ') {
+					p.setMove(index.hash(id), c);
+					break;
+				}
+			}
+		}
+		return p;
+	}
+
+	@Test
+	public void testGenerate() {
+		String source = PolicyCompiler.generate(policy(), "generated.TestPolicy");
+		assertTrue(source.startsWith("package generated;"));
+		assertTrue(source.contains("public final class TestPolicy extends Policy"));
+	}
+
+	@Test
+	public void testCompiledPolicyMatches() throws IOException {
+		ArrayPolicy p = policy();
+		Policy compiled = PolicyCompiler.compile(p, "generated.CompiledTestPolicy");
+		assertEquals(0.0, p.disagreement(new ArrayPolicy(compiled)), 0.0);
+
+		StateIndex index = StateIndex.xStates();
+		for (int id = 0; id < index.size(); id++) {
+			Game g = index.game(id);
+			Move m = compiled.getMove(g);
+			if (g.isTerminal())
+				assertNull(m);
+			else {
+				assertEquals('X', m.who.getName());
+				assertEquals(p.getCell(index.hash(id)), m.cell());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import ticTacToe.ArrayPolicy;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.PolicyFile;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTMDP;
+
+public class TestPolicyFile {
+
+	/**
+	 * A deterministic policy that plays the last empty cell.
+	 */
+	static class LastEmptyCell extends Policy {
+		@Override
+		public Move getMove(Game g) {
+			if (g.isTerminal())
+				return null;
+			char[][] board = g.getBoard();
+			for (int c = 8; c >= 0; c--)
+				if (board[c / 3][c % 3] == ' ')
+					return Move.of('X', c);
+			return null;
+		}
+	}
+
+	static File write(ArrayPolicy p) throws IOException {
+		File file = File.createTempFile("policy", ".pol");
+		new PolicyFile(p, 0.9, new TTTMDP()).write(file);
+		return file;
+	}
+
+	static void assertFails(File file, String message) {
+		try {
+			PolicyFile.read(file);
+			fail("Read a bad policy file");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ArrayPolicy p = new ArrayPolicy(new LastEmptyCell());
+		File file = write(p);
+		try {
+			PolicyFile f = PolicyFile.read(file);
+			assertTrue(f.matches(0.9, new TTTMDP()));
+			assertEquals(0.9, f.getDiscount(), 0.0);
+			ArrayPolicy read = f.getPolicy();
+			assertEquals(p.size(), read.size());
+			assertEquals(0.0, p.disagreement(read), 0.0);
+			assertEquals(0.0, read.disagreement(p), 0.0);
+
+			// and as a map based policy
+			Policy map = new Policy(file.getPath());
+			assertEquals(0.0, p.disagreement(new ArrayPolicy(map)), 0.0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCorruptMoves() throws IOException {
+		File file = write(new ArrayPolicy(new LastEmptyCell()));
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(PolicyFile.HEADER_SIZE + 100);
+				int b = raf.read();
+				raf.seek(PolicyFile.HEADER_SIZE + 100);
+				raf.write(b ^ 1);
+			} finally {
+				raf.close();
+			}
+			assertFails(file, "checksum");
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		File file = write(new ArrayPolicy(new LastEmptyCell()));
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(PolicyFile.HEADER_SIZE + 10);
+				assertFails(file, "states");
+				raf.setLength(PolicyFile.HEADER_SIZE / 2);
+				assertFails(file, "not a policy file");
+			} finally {
+				raf.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testArrayPolicyConversion() {
+		StateIndex index = StateIndex.xStates();
+		Policy last = new LastEmptyCell();
+		HashMap<Game, Move> map = new HashMap<Game, Move>();
+		for (int id = 0; id < index.size(); id++) {
+			Game g = index.game(id);
+			if (!g.isTerminal())
+				map.put(g, last.getMove(g));
+		}
+
+		ArrayPolicy fromPolicy = new ArrayPolicy(last);
+		ArrayPolicy fromMap = new ArrayPolicy(new Policy(map));
+		ArrayPolicy copy = new ArrayPolicy(fromPolicy);
+		assertEquals(map.size(), fromPolicy.size());
+		assertEquals(0.0, fromPolicy.disagreement(fromMap), 0.0);
+		assertEquals(0.0, fromPolicy.disagreement(copy), 0.0);
+
+		for (int id = 0; id < index.size(); id += 97) {
+			Game g = index.game(id);
+			Move m = fromPolicy.getMove(g);
+			if (g.isTerminal())
+				assertNull(m);
+			else
+				assertEquals(last.getMove(g).cell(), m.cell());
+		}
+
+		// the copy is independent, and a changed move counts towards the disagreement
+		int hash = index.hash(0);
+		copy.setMove(hash, (fromPolicy.getCell(hash) + 1) % 9);
+		assertEquals(1.0 / map.size(), fromPolicy.disagreement(copy), 1e-12);
+	}
+
+}
@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.QuantizedTable;
+import ticTacToe.StateIndex;
+
+public class TestQuantizedTable {
+
+	/**
+	 * @return q-values uniform in [-100, 100], with some missing, and some so close to the middle of the range that they
+	 *         become subnormal halves
+	 */
+	static double[] values() {
+		SplittableRandom random = new SplittableRandom(5);
+		double[] values = new double[StateIndex.xStates().size() * 9];
+		for (int i = 0; i < values.length; i++) {
+			if (i % 9 == 4)
+				values[i] = Double.NaN;
+			else if (i % 97 == 0)
+				values[i] = random.nextDouble(-1, 1) * 100 * 0x1p-16;
+			else
+				values[i] = random.nextDouble(-100, 100);
+		}
+		values[0] = -100;
+		values[1] = 100;
+		return values;
+	}
+
+	static void assertWithinBound(QuantizedTable.Mode mode) {
+		double[] values = values();
+		QuantizedTable t = new QuantizedTable(values, 9, mode);
+		double[] dequantised = t.toArray();
+		double maxError = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (Double.isNaN(values[i])) {
+				assertTrue(Double.isNaN(dequantised[i]));
+				continue;
+			}
+			maxError = Math.max(maxError, Math.abs(dequantised[i] - values[i]));
+		}
+		assertTrue(mode + ": max error " + maxError + " above the bound " + t.errorBound(), maxError <= t.errorBound());
+		// and the bound is not so loose as to say nothing
+		assertTrue(maxError > t.errorBound() / 2);
+	}
+
+	@Test
+	public void testFloat16ErrorBound() {
+		assertWithinBound(QuantizedTable.Mode.FLOAT16);
+	}
+
+	@Test
+	public void testInt8ErrorBound() {
+		assertWithinBound(QuantizedTable.Mode.INT8);
+	}
+
+	@Test
+	public void testExactValues() {
+		// the ends and the middle of the range, and halves of the scale, are represented exactly
+		double[] values = new double[StateIndex.xStates().size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = (i % 5 - 2) * 25.0;
+		for (QuantizedTable.Mode mode : QuantizedTable.Mode.values()) {
+			double[] dequantised = new QuantizedTable(values, 1, mode).toArray();
+			for (int i = 0; i < 5; i++)
+				assertEquals(mode.toString(), values[i], dequantised[i], mode == QuantizedTable.Mode.INT8 ? 0.2 : 0.0);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.ArrayPolicy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomSource;
+
+public class TestRandomSource {
+
+	static long[] draw(SplittableRandom r) {
+		long[] values = new long[16];
+		for (int i = 0; i < values.length; i++)
+			values[i] = r.nextLong();
+		return values;
+	}
+
+	static void assertSame(long[] a, long[] b) {
+		assertEquals(a.length, b.length);
+		for (int i = 0; i < a.length; i++)
+			assertEquals(a[i], b[i]);
+	}
+
+	@Test
+	public void testStreamsAreReproducible() {
+		RandomSource.setSeed(1234);
+		assertTrue(RandomSource.isSeeded());
+		assertEquals(Long.valueOf(1234), RandomSource.getSeed());
+		long[] first = draw(RandomSource.newStream());
+		long[] second = draw(RandomSource.newStream());
+		SplittableRandom[] workers = RandomSource.newStreams(2);
+
+		RandomSource.setSeed(1234);
+		assertSame(first, draw(RandomSource.newStream()));
+		assertSame(second, draw(RandomSource.newStream()));
+		// newStreams hands out the same streams as the same number of calls to newStream
+		SplittableRandom[] again = RandomSource.newStreams(2);
+		for (int i = 0; i < 2; i++)
+			assertSame(draw(workers[i]), draw(again[i]));
+
+		// the streams are independent of each other
+		assertFalse(first[0] == second[0] && first[1] == second[1]);
+	}
+
+	@Test
+	public void testTrainingIsReproducible() {
+		RandomSource.setSeed(99);
+		QLearningAgent a = new QLearningAgent(new RandomAgent(), 0.1, 2000, 0.9);
+		RandomSource.setSeed(99);
+		QLearningAgent b = new QLearningAgent(new RandomAgent(), 0.1, 2000, 0.9);
+		assertEquals(0.0, ((ArrayPolicy) a.getPolicy()).disagreement((ArrayPolicy) b.getPolicy()), 0.0);
+	}
+
+}
@@ -0,0 +1,99 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.ReplayBuffer;
+
+public class TestReplayBuffer {
+
+	static final int SAMPLES = 200000;
+
+	/**
+	 * @return how often each slot of {@code buffer} is sampled, as fractions of {@link #SAMPLES}
+	 */
+	static double[] frequencies(ReplayBuffer buffer) {
+		SplittableRandom r = new SplittableRandom(42);
+		int[] indices = new int[1];
+		double[] weights = new double[1];
+		double[] counts = new double[buffer.capacity()];
+		for (int k = 0; k < SAMPLES; k++) {
+			assertEquals(1, buffer.sample(indices, weights, 1.0, r));
+			counts[indices[0]]++;
+		}
+		for (int i = 0; i < counts.length; i++)
+			counts[i] /= SAMPLES;
+		return counts;
+	}
+
+	static ReplayBuffer prioritised(double... tdErrors) {
+		ReplayBuffer buffer = new ReplayBuffer(tdErrors.length, 1.0);
+		for (int i = 0; i < tdErrors.length; i++) {
+			buffer.add(i, i, 0.0, i + 1, false);
+			buffer.updatePriority(i, tdErrors[i]);
+		}
+		return buffer;
+	}
+
+	@Test
+	public void testProportionalSampling() {
+		// with an exponent of 1 the priorities are |td error| + 0.01, i.e. 1, 2, 3 and 5
+		ReplayBuffer buffer = prioritised(0.99, -1.99, 2.99, 4.99);
+		double[] f = frequencies(buffer);
+		double[] expected = { 1 / 11.0, 2 / 11.0, 3 / 11.0, 5 / 11.0 };
+		for (int i = 0; i < f.length; i++)
+			assertEquals("slot " + i, expected[i], f[i], 0.01);
+	}
+
+	@Test
+	public void testUpdatePriority() {
+		ReplayBuffer buffer = prioritised(0.99, 0.99, 0.99, 0.99);
+		buffer.updatePriority(2, 6.99);
+		double[] f = frequencies(buffer);
+		assertEquals(0.7, f[2], 0.01);
+		assertEquals(0.1, f[0], 0.01);
+
+		// a new transition overwrites the oldest, slot 0, and gets the largest priority seen so far, 7
+		buffer.add(9, 4, 1.0, 10, true);
+		assertEquals(9, buffer.getState(0));
+		f = frequencies(buffer);
+		assertEquals(7 / 16.0, f[0], 0.01);
+		assertEquals(7 / 16.0, f[2], 0.01);
+	}
+
+	@Test
+	public void testImportanceWeights() {
+		ReplayBuffer buffer = prioritised(0.99, 3.99);
+		SplittableRandom r = new SplittableRandom(1);
+		int[] indices = new int[2];
+		double[] weights = new double[2];
+		for (int k = 0; k < 100; k++) {
+			buffer.sample(indices, weights, 1.0, r);
+			for (int j = 0; j < 2; j++) {
+				// the weights are normalised by the largest in the batch; the rarer transition is weighted 4 times more
+				assertTrue(weights[j] > 0 && weights[j] <= 1.0);
+				if (indices[0] != indices[1])
+					assertEquals(indices[j] == 0 ? 1.0 : 0.25, weights[j], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testUniformRing() {
+		ReplayBuffer buffer = new ReplayBuffer(3);
+		assertEquals(0, buffer.sample(new int[1], new double[1], 1.0, new SplittableRandom(0)));
+		for (int i = 0; i < 5; i++)
+			buffer.add(i, i, i, i + 1, i == 4);
+		assertEquals(3, buffer.size());
+		assertEquals(3, buffer.getState(0));
+		assertEquals(4, buffer.getState(1));
+		assertEquals(2, buffer.getState(2));
+		assertTrue(buffer.isDone(1));
+		double[] f = frequencies(buffer);
+		for (int i = 0; i < 3; i++)
+			assertEquals(1 / 3.0, f[i], 0.01);
+	}
+
+}
@@ -0,0 +1,54 @@
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.OpponentLeague;
+import ticTacToe.Policy;
+import ticTacToe.RandomAgent;
+import ticTacToe.SelfPlayTrainer;
+import ticTacToe.SnapshotAgent;
+
+public class TestSelfPlayTrainer {
+
+	static int firstEmptyCell(Game g) {
+		char[][] board = g.getBoard();
+		for (int c = 0; c < 9; c++)
+			if (board[c / 3][c % 3] == ' ')
+				return c;
+		return -1;
+	}
+
+	@Test
+	public void testSnapshotPlaysO() throws IllegalMoveException {
+		OpponentLeague league = new OpponentLeague();
+		new SelfPlayTrainer(2, 5, 2000, league).train();
+		Policy[] snapshots = league.getSnapshots();
+		assertTrue(snapshots.length > 0);
+
+		Agent snapshot = new SnapshotAgent(snapshots[snapshots.length - 1], new SplittableRandom(1));
+		int moves = 0;
+		int firstEmpty = 0;
+		for (int i = 0; i < 200; i++) {
+			Agent x = new RandomAgent(new SplittableRandom(i));
+			Game g = new Game(x, snapshot);
+			for (int k = 0; !g.isTerminal(); k++) {
+				Move m = (k % 2 == 0) ? x.getMove(g) : snapshot.getMove(g);
+				if (k % 2 == 1) {
+					moves++;
+					if (m.cell() == firstEmptyCell(g))
+						firstEmpty++;
+				}
+				g.executeMove(m);
+			}
+		}
+		System.out.println("The snapshot played the first empty cell in " + firstEmpty + " of its " + moves + " moves as O");
+		assertTrue(firstEmpty < moves / 2);
+	}
+
+}
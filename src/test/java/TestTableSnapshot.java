@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import ticTacToe.StateIndex;
+import ticTacToe.TableSnapshot;
+
+public class TestTableSnapshot {
+
+	static final StateIndex INDEX = StateIndex.xStates();
+
+	/**
+	 * the size of a segment of state values stored as doubles
+	 */
+	static final long SEGMENT = TableSnapshot.HEADER_SIZE + 12L * INDEX.size();
+
+	/**
+	 * @return state values that are different for every step
+	 */
+	static double[] values(long step) {
+		double[] values = new double[INDEX.size()];
+		for (int id = 0; id < values.length; id++)
+			values[id] = step * 1000 + id;
+		return values;
+	}
+
+	static void assertSnapshot(long step, TableSnapshot s) {
+		assertEquals(step, s.getStep());
+		for (int id = 0; id < INDEX.size(); id += 101)
+			assertEquals(step * 1000 + id, s.getValue(INDEX.hash(id), 0), 0.0);
+	}
+
+	static File appendSegments(int n) throws IOException {
+		File file = File.createTempFile("table", ".snap");
+		file.delete();
+		for (int step = 1; step <= n; step++)
+			TableSnapshot.append(file, step, 1, values(step), false);
+		assertEquals(n * SEGMENT, file.length());
+		return file;
+	}
+
+	@Test
+	public void testLatestSegment() throws IOException {
+		File file = appendSegments(3);
+		try {
+			assertSnapshot(3, TableSnapshot.open(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCorruptTail() throws IOException {
+		File file = appendSegments(3);
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				// a flipped bit in the last segment's values: it fails its checksum, and the one before is used
+				long pos = 2 * SEGMENT + TableSnapshot.HEADER_SIZE + 4 * INDEX.size() + 8 * 10;
+				raf.seek(pos);
+				int b = raf.read();
+				raf.seek(pos);
+				raf.write(b ^ 0x10);
+				assertSnapshot(2, TableSnapshot.open(file));
+
+				// a partly written last segment is skipped too
+				raf.setLength(2 * SEGMENT + SEGMENT / 2);
+				assertSnapshot(2, TableSnapshot.open(file));
+				raf.setLength(SEGMENT + 10);
+				assertSnapshot(1, TableSnapshot.open(file));
+				raf.setLength(SEGMENT - 1);
+				assertNull(TableSnapshot.open(file));
+			} finally {
+				raf.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testWriteKeepsOneSegment() throws IOException {
+		File file = appendSegments(3);
+		try {
+			TableSnapshot.write(file, 4, 1, values(4), false);
+			assertEquals(SEGMENT, file.length());
+			assertSnapshot(4, TableSnapshot.open(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testQuantised() throws IOException {
+		File file = File.createTempFile("table", ".snap");
+		try {
+			double[] q = new double[INDEX.size() * 9];
+			for (int i = 0; i < q.length; i++)
+				q[i] = (i % 9 == 4) ? Double.NaN : i * 0.5;
+			TableSnapshot.write(file, 7, 9, q, true);
+			TableSnapshot s = TableSnapshot.open(file);
+			assertEquals(7L, s.getStep());
+			assertEquals(9, s.getWidth());
+			assertEquals((3 * 9 + 2) * 0.5, s.getValue(INDEX.hash(3), 2), 0.0);
+			assertTrue(Double.isNaN(s.getValue(INDEX.hash(3), 4)));
+		} finally {
+			file.delete();
+		}
+	}
+
+}
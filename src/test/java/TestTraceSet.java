@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.TraceSet;
+
+public class TestTraceSet {
+
+	/**
+	 * @return the game after the given moves, X moving first
+	 */
+	static Game play(int... cells) throws IllegalMoveException {
+		Game g = new Game(new Agent(), new Agent());
+		char who = 'X';
+		for (int c : cells) {
+			g.executeMove(Move.of(who, c));
+			who = (who == 'X') ? 'O' : 'X';
+		}
+		return g;
+	}
+
+	/**
+	 * @return the trace of (s,a), 0 if it isn't traced
+	 */
+	static double trace(TraceSet t, Game s, int cell) {
+		for (int k = 0; k < t.size(); k++)
+			if (t.getState(k).equals(s) && t.getMove(k).equals(Move.of('X', cell)))
+				return t.getTrace(k);
+		return 0.0;
+	}
+
+	@Test
+	public void testVisitAndDecay() throws IllegalMoveException {
+		TraceSet t = new TraceSet(4);
+		Game s = play();
+		t.visit(s, Move.of('X', 4), true);
+		t.decay(0.5);
+		t.visit(s, Move.of('X', 4), true);
+		assertEquals(1, t.size());
+		assertEquals(1.0, trace(t, s, 4), 0.0);
+		t.decay(0.5);
+		// accumulating traces add up
+		t.visit(s, Move.of('X', 4), false);
+		assertEquals(1.5, trace(t, s, 4), 0.0);
+	}
+
+	@Test
+	public void testNegligibleTracesAreDropped() throws IllegalMoveException {
+		TraceSet t = new TraceSet(4);
+		t.visit(play(), Move.of('X', 0), true);
+		// 2^-13 is still above the minimum of 1e-4, 2^-14 is not
+		for (int k = 0; k < 13; k++)
+			t.decay(0.5);
+		assertEquals(1, t.size());
+		t.decay(0.5);
+		assertEquals(0, t.size());
+	}
+
+	@Test
+	public void testOldestIsEvictedWhenFull() throws IllegalMoveException {
+		TraceSet t = new TraceSet(3);
+		Game[] states = { play(), play(0, 4), play(0, 4, 8, 2), play(0, 4, 8, 2, 6, 3) };
+		int[] cells = { 0, 8, 6, 7 };
+		for (int k = 0; k < states.length; k++) {
+			t.visit(states[k], Move.of('X', cells[k]), true);
+			t.decay(0.5);
+		}
+		assertEquals(3, t.size());
+		assertEquals(0.0, trace(t, states[0], 0), 0.0);
+		assertEquals(0.125, trace(t, states[1], 8), 0.0);
+		assertEquals(0.25, trace(t, states[2], 6), 0.0);
+		assertEquals(0.5, trace(t, states[3], 7), 0.0);
+
+		t.clear();
+		assertEquals(0, t.size());
+		assertEquals(0.0, trace(t, states[3], 7), 0.0);
+	}
+
+}
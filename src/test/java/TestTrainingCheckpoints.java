@@ -0,0 +1,76 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ticTacToe.ArrayPolicy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.TTTEnvironment;
+import ticTacToe.TrainingCheckpoints;
+
+public class TestTrainingCheckpoints {
+
+	static File tempDirectory() throws IOException {
+		File dir = File.createTempFile("checkpoints", "");
+		assertTrue(dir.delete() && dir.mkdir());
+		return dir;
+	}
+
+	static void delete(File dir) {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		File dir = tempDirectory();
+		try {
+			// thresholds that are never met, so training runs for all its episodes
+			TrainingCheckpoints checkpoints = new TrainingCheckpoints(500, -1, -1, 1);
+			checkpoints.setDirectory(dir);
+			QLearningAgent trained = new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 2000, 0.9);
+			trained.setCheckpoints(checkpoints);
+			trained.train();
+			assertTrue(new File(dir, TrainingCheckpoints.SNAPSHOT_FILE).isFile());
+
+			QLearningAgent resumed = new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 2000, 0.9);
+			assertTrue(resumed.resume(dir));
+			// the snapshot was taken after the last episode, so there is nothing left to train
+			resumed.train();
+			assertEquals(0L, resumed.getEnvSteps());
+			assertEquals(0.0, ((ArrayPolicy) resumed.getPolicy()).disagreement((ArrayPolicy) trained.getPolicy()), 0.0);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testNothingToResume() throws IOException {
+		File dir = tempDirectory();
+		try {
+			QLearningAgent agent = new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 10, 0.9);
+			assertFalse(agent.resume(dir));
+			agent.train();
+			assertTrue(agent.getEnvSteps() > 0);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testEarlyStopping() {
+		// thresholds that are always met: stop at the first checkpoint, after 100 episodes of at most 5 moves
+		TrainingCheckpoints checkpoints = new TrainingCheckpoints(100, 1.0, Double.MAX_VALUE, 1);
+		QLearningAgent agent = new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 100000, 0.9);
+		agent.setCheckpoints(checkpoints);
+		agent.train();
+		assertTrue(agent.getEnvSteps() <= 100 * 5);
+	}
+
+}
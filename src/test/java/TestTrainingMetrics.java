@@ -0,0 +1,151 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import ticTacToe.CsvMetricsSink;
+import ticTacToe.Game;
+import ticTacToe.JsonLinesMetricsSink;
+import ticTacToe.QLearningAgent;
+import ticTacToe.ReplayBuffer;
+import ticTacToe.TTTEnvironment;
+import ticTacToe.TrainingMetrics;
+
+public class TestTrainingMetrics {
+
+	/**
+	 * @return the value of a field of the last JSON line written to {@code out}
+	 */
+	static String field(StringWriter out, String name) {
+		String[] lines = out.toString().split("\n");
+		Matcher m = Pattern.compile("\"" + name + "\":([^,}]*)").matcher(lines[lines.length - 1]);
+		assertTrue(name, m.find());
+		return m.group(1);
+	}
+
+	static double number(StringWriter out, String name) {
+		return Double.parseDouble(field(out, name));
+	}
+
+	/**
+	 * metrics that only report when asked to
+	 */
+	static TrainingMetrics metrics(StringWriter out, int window) {
+		return new TrainingMetrics("test", new JsonLinesMetricsSink(out), 1000000, window);
+	}
+
+	@Test
+	public void testCounters() {
+		StringWriter out = new StringWriter();
+		TrainingMetrics metrics = metrics(out, 4);
+		metrics.recordBackups(5);
+		metrics.recordTdError(1.0);
+		metrics.recordTdError(-3.0);
+		metrics.recordIteration();
+		int[] outcomes = { Game.X_WON, Game.DRAW, Game.O_WON, Game.X_WON, Game.DRAW, Game.X_WON };
+		for (int outcome : outcomes)
+			metrics.recordEpisode(outcome);
+		metrics.report();
+
+		assertEquals("\"test\"", field(out, "name"));
+		assertEquals(7L, Long.parseLong(field(out, "backups")));
+		assertEquals(6L, Long.parseLong(field(out, "episodes")));
+		assertEquals(1L, Long.parseLong(field(out, "iterations")));
+		assertEquals(2.0, number(out, "mean_abs_td_error"), 1e-6);
+		// the last 4 episodes: 2 wins, 1 draw, 1 loss
+		assertEquals(0.5, number(out, "win_rate"), 1e-6);
+		assertEquals(0.25, number(out, "draw_rate"), 1e-6);
+		assertEquals(0.25, number(out, "loss_rate"), 1e-6);
+
+		// the td error is averaged over the interval since the last report
+		metrics.recordTdError(0.5);
+		metrics.report();
+		assertEquals(0.5, number(out, "mean_abs_td_error"), 1e-6);
+		assertEquals(8L, Long.parseLong(field(out, "backups")));
+	}
+
+	@Test
+	public void testConcurrentEpisodes() throws InterruptedException {
+		StringWriter out = new StringWriter();
+		final TrainingMetrics metrics = metrics(out, 100);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					metrics.recordEpisode(Game.DRAW);
+					metrics.recordBackups(1);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		metrics.report();
+		assertEquals(40000L, Long.parseLong(field(out, "episodes")));
+		assertEquals(40000L, Long.parseLong(field(out, "backups")));
+		assertEquals(1.0, number(out, "draw_rate"), 0.0);
+	}
+
+	@Test
+	public void testJsonUnknownValuesAreNull() {
+		StringWriter out = new StringWriter();
+		metrics(out, 10).report();
+		assertEquals("null", field(out, "mean_abs_td_error"));
+		assertEquals("null", field(out, "policy_churn"));
+		assertEquals("null", field(out, "win_rate"));
+		assertEquals(0L, Long.parseLong(field(out, "episodes")));
+	}
+
+	@Test
+	public void testCsvHeaderWrittenOnce() throws IOException {
+		StringWriter out = new StringWriter();
+		TrainingMetrics metrics = new TrainingMetrics("test", new CsvMetricsSink(out), 1000000);
+		metrics.report();
+		metrics.report();
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("name,"));
+		assertTrue(lines[1].startsWith("test,"));
+		assertEquals(lines[0].split(",").length, lines[1].split(",").length);
+
+		// nor again when appending to a file that has one
+		File file = File.createTempFile("metrics", ".csv");
+		try {
+			for (int k = 0; k < 2; k++) {
+				CsvMetricsSink sink = new CsvMetricsSink(file);
+				new TrainingMetrics("test", sink, 1000000).report();
+				sink.close();
+			}
+			List<String> written = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+			assertEquals(3, written.size());
+			assertTrue(written.get(0).startsWith("name,"));
+			assertTrue(written.get(2).startsWith("test,"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Every move is one backup, plus one per transition replayed after it once the buffer holds a batch.
+	 */
+	@Test
+	public void testReplayBackupsAreCounted() {
+		StringWriter out = new StringWriter();
+		QLearningAgent agent = new QLearningAgent(new TTTEnvironment(), 0.1, 50, 0.9);
+		agent.setReplayBuffer(new ReplayBuffer(1000), 8);
+		agent.setMetrics(metrics(out, 10));
+		agent.train();
+		long steps = agent.getEnvSteps();
+		assertEquals(steps + 8 * (steps - 7), Long.parseLong(field(out, "backups")));
+	}
+
+}
@@ -0,0 +1,180 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.NeuralValueAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomSource;
+import ticTacToe.ValueNetwork;
+
+public class TestValueNetwork {
+
+	/**
+	 * layer sizes wider than the tiles of the blocked products, and with two hidden layers so the deltas are passed back
+	 * through a tanh
+	 */
+	static final int[] SIZES = { 70, 130, 3, 1 };
+
+	static float[] random(int n, SplittableRandom r) {
+		float[] a = new float[n];
+		for (int i = 0; i < n; i++)
+			a[i] = (float) (2.0 * r.nextDouble() - 1.0);
+		return a;
+	}
+
+	/**
+	 * The output for one row, computed directly from the parameter layout, in doubles.
+	 */
+	static double naiveForward(float[] params, float[] input, int from) {
+		double[] a = new double[SIZES[0]];
+		for (int p = 0; p < a.length; p++)
+			a[p] = input[from + p];
+		int offset = 0;
+		for (int l = 0; l < SIZES.length - 1; l++) {
+			int k = SIZES[l];
+			int m = SIZES[l + 1];
+			double[] z = new double[m];
+			for (int j = 0; j < m; j++) {
+				z[j] = params[offset + k * m + j];
+				for (int p = 0; p < k; p++)
+					z[j] += a[p] * params[offset + p * m + j];
+				if (l + 1 < SIZES.length - 1)
+					z[j] = Math.tanh(z[j]);
+			}
+			offset += k * m + m;
+			a = z;
+		}
+		return a[0];
+	}
+
+	/**
+	 * @return the sum over the rows of 0.5 * (output - target)^2
+	 */
+	static double loss(ValueNetwork net, float[] inputs, float[] targets, int batch) {
+		ValueNetwork.Workspace ws = net.newWorkspace(batch);
+		System.arraycopy(inputs, 0, ws.input(), 0, batch * SIZES[0]);
+		net.forward(ws, batch);
+		double loss = 0.0;
+		for (int i = 0; i < batch; i++) {
+			double d = ws.output()[i] - targets[i];
+			loss += 0.5 * d * d;
+		}
+		return loss;
+	}
+
+	@Test
+	public void testForward() {
+		SplittableRandom r = new SplittableRandom(1);
+		ValueNetwork net = new ValueNetwork(SIZES, r.split());
+		int batch = 10;
+		float[] inputs = random(batch * SIZES[0], r);
+
+		ValueNetwork.Workspace ws = net.newWorkspace(batch);
+		System.arraycopy(inputs, 0, ws.input(), 0, inputs.length);
+		net.forward(ws, batch);
+
+		ValueNetwork.Workspace one = net.newWorkspace(1);
+		for (int i = 0; i < batch; i++) {
+			System.arraycopy(inputs, i * SIZES[0], one.input(), 0, SIZES[0]);
+			net.forward(one, 1);
+			// a row's output doesn't depend on the rows it is batched with
+			assertEquals(one.output()[0], ws.output()[i], 0.0);
+			assertEquals(naiveForward(net.parameters(), inputs, i * SIZES[0]), ws.output()[i], 1e-4);
+		}
+	}
+
+	/**
+	 * With a learning rate equal to the batch size, a step subtracts the gradient itself from the parameters, which must match
+	 * central finite differences of the loss.
+	 */
+	@Test
+	public void testGradient() {
+		SplittableRandom r = new SplittableRandom(2);
+		ValueNetwork net = new ValueNetwork(SIZES, r.split());
+		net.setThreads(1);
+		int batch = 3;
+		float[] inputs = random(batch * SIZES[0], r);
+		float[] targets = random(batch, r);
+		float[] params = net.parameters();
+
+		double[] numeric = new double[params.length];
+		float eps = 1e-2f;
+		for (int i = 0; i < params.length; i++) {
+			// every bias and weight of the small layers, and a sample of the large one
+			if (i < SIZES[0] * SIZES[1] && i % 37 != 0)
+				continue;
+			float p = params[i];
+			params[i] = p + eps;
+			double plus = loss(net, inputs, targets, batch);
+			params[i] = p - eps;
+			double minus = loss(net, inputs, targets, batch);
+			params[i] = p;
+			numeric[i] = (plus - minus) / (2 * eps);
+		}
+
+		float[] before = params.clone();
+		double expected = loss(net, inputs, targets, batch) / batch;
+		assertEquals(expected, net.train(inputs, targets, batch, batch), 1e-6);
+		int checked = 0;
+		for (int i = 0; i < params.length; i++) {
+			if (i < SIZES[0] * SIZES[1] && i % 37 != 0)
+				continue;
+			double gradient = before[i] - params[i];
+			assertEquals("parameter " + i, numeric[i], gradient, 2e-3 + 1e-2 * Math.abs(numeric[i]));
+			checked++;
+		}
+		assertTrue(checked > 500);
+	}
+
+	@Test
+	public void testShardedStepMatchesSingleThread() {
+		SplittableRandom r = new SplittableRandom(3);
+		ValueNetwork sharded = new ValueNetwork(SIZES, new SplittableRandom(4));
+		ValueNetwork single = new ValueNetwork(SIZES, new SplittableRandom(4));
+		sharded.setThreads(4);
+		single.setThreads(1);
+		int batch = 64;
+		for (int step = 0; step < 5; step++) {
+			float[] inputs = random(batch * SIZES[0], r);
+			float[] targets = random(batch, r);
+			assertEquals(single.train(inputs, targets, batch, 0.1f), sharded.train(inputs, targets, batch, 0.1f), 1e-6);
+		}
+		float[] a = sharded.parameters();
+		float[] b = single.parameters();
+		for (int i = 0; i < a.length; i++)
+			assertEquals(b[i], a[i], 1e-5);
+	}
+
+	@Test
+	public void testLearns() {
+		// a network fitting a fixed batch drives its loss down
+		SplittableRandom r = new SplittableRandom(5);
+		ValueNetwork net = new ValueNetwork(SIZES, r.split());
+		int batch = 32;
+		float[] inputs = random(batch * SIZES[0], r);
+		float[] targets = random(batch, r);
+		double first = net.train(inputs, targets, batch, 0.05f);
+		double last = first;
+		for (int step = 0; step < 200; step++)
+			last = net.train(inputs, targets, batch, 0.05f);
+		assertTrue(first + " -> " + last, last < first / 10);
+	}
+
+	/**
+	 * The network doesn't learn a perfect policy from every training run: unseeded, the agent loses about 1 game in 100
+	 * against random play. The seed, set before the opponent is created, fixes the run and the games, so the test checks one
+	 * reproducible run rather than failing at random.
+	 */
+	@Test
+	public void testAgentAgainstRandom() {
+		System.out.println("Against Random Agent:");
+		RandomSource.setSeed(3);
+		int[] results = TestPolicyIterationAgent.playAgainstEachOther(new NeuralValueAgent(), new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
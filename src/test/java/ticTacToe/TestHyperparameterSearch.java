@@ -0,0 +1,113 @@
+package ticTacToe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Successive halving with a scoring stub, so no evaluation games are played. In the package, since the scoring hook
+ * {@link HyperparameterSearch#score} is not public.
+ */
+public class TestHyperparameterSearch {
+
+	/**
+	 * Scores configuration i, trained for b episodes, (7i + b) mod 10, so that each rung ranks the configurations
+	 * differently, and records what it scored.
+	 */
+	static class StubSearch extends HyperparameterSearch {
+		/**
+		 * for each budget, the configurations scored with it
+		 */
+		final TreeMap<Integer, List<Integer>> scored = new TreeMap<Integer, List<Integer>>();
+
+		StubSearch(List<Config> configs, int minEpisodes, int eta, int rungs) {
+			super(configs, minEpisodes, eta, rungs);
+		}
+
+		@Override
+		double score(Trial t) {
+			int i = configs.indexOf(t.config);
+			int budget = t.agent.episodesPlayed;
+			synchronized (scored) {
+				if (!scored.containsKey(budget))
+					scored.put(budget, new ArrayList<Integer>());
+				scored.get(budget).add(i);
+			}
+			return score(i, budget);
+		}
+
+		static double score(int i, int budget) {
+			return (7 * i + budget) % 10;
+		}
+	}
+
+	static List<HyperparameterSearch.Config> configs(int n) {
+		List<HyperparameterSearch.Config> configs = new ArrayList<HyperparameterSearch.Config>();
+		for (int i = 0; i < n; i++)
+			configs.add(new HyperparameterSearch.Config(0.01 * (i + 1), 0.9, 0.1));
+		return configs;
+	}
+
+	/**
+	 * @return the best {@code keep} of the configurations, by their score after {@code budget} episodes
+	 */
+	static List<Integer> best(List<Integer> ids, int budget, int keep) {
+		List<Integer> sorted = new ArrayList<Integer>(ids);
+		Collections.sort(sorted, (a, b) -> Double.compare(StubSearch.score(b, budget), StubSearch.score(a, budget)));
+		return sorted.subList(0, keep);
+	}
+
+	@Test
+	public void testRungs() throws InterruptedException {
+		List<HyperparameterSearch.Config> configs = configs(10);
+		StubSearch search = new StubSearch(configs, 2, 3, 4);
+		search.setThreads(3);
+		HyperparameterSearch.Config winner = search.run();
+
+		// the budget grows by eta per rung, and each rung keeps ceil(n / eta) of its n configurations
+		assertEquals("[2, 6, 18, 54]", search.scored.keySet().toString());
+		int[] sizes = { 10, 4, 2, 1 };
+		List<Integer> survivors = null;
+		int rung = 0;
+		for (int budget : search.scored.keySet()) {
+			List<Integer> ids = new ArrayList<Integer>(search.scored.get(budget));
+			Collections.sort(ids);
+			assertEquals(sizes[rung], ids.size());
+			if (survivors != null) {
+				// the best of the previous rung, by its scores
+				Collections.sort(survivors);
+				assertEquals(survivors, ids);
+			}
+			if (rung + 1 < sizes.length)
+				survivors = new ArrayList<Integer>(best(ids, budget, sizes[rung + 1]));
+			else
+				survivors = best(ids, budget, 1);
+			rung++;
+		}
+
+		// the winner is the best survivor of the last rung
+		assertSame(configs.get(survivors.get(0)), winner);
+		assertSame(search.best.agent, search.getBestAgent());
+		assertEquals(54, search.getBestAgent().episodesPlayed);
+	}
+
+	@Test
+	public void testKeepsBestOfLastRung() throws InterruptedException {
+		// 5 configurations and eta 2: 5, 3, then 2 scored after 4 episodes, of which the better wins
+		List<HyperparameterSearch.Config> configs = configs(5);
+		StubSearch search = new StubSearch(configs, 1, 2, 3);
+		search.setThreads(1);
+		HyperparameterSearch.Config winner = search.run();
+		List<Integer> last = search.scored.get(4);
+		assertEquals(2, last.size());
+		assertEquals(3, search.scored.get(2).size());
+		assertSame(configs.get(best(last, 4, 1).get(0)), winner);
+	}
+
+}
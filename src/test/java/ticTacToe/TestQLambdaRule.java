@@ -0,0 +1,64 @@
+package ticTacToe;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Q(lambda) on the hand-built episode of {@link TestUpdateRules}, with no reward before the win, so only the final td error
+ * changes any q-value. In the package, since {@link UpdateRule#update} is not public.
+ */
+public class TestQLambdaRule {
+
+	static final double DECAY = 0.9 * 0.8;
+
+	static Outcome[] episode() throws IllegalMoveException {
+		Outcome[] e = TestUpdateRules.episode();
+		for (int k = 0; k < e.length - 1; k++)
+			e[k].localReward = 0.0;
+		return e;
+	}
+
+	static void run(QLambdaRule rule, QLearningAgent agent, Outcome[] e) {
+		for (int k = 0; k < e.length; k++)
+			rule.update(agent, e[k], (k + 1 < e.length) ? e[k + 1].move : null);
+		rule.endEpisode(agent);
+	}
+
+	@Test
+	public void testRewardReachesEarlierMoves() throws IllegalMoveException {
+		QLearningAgent agent = TestUpdateRules.agent();
+		Outcome[] e = episode();
+		run(new QLambdaRule(0.8), agent, e);
+		// alpha * td error * (discount * lambda)^k, k moves back from the win
+		for (int k = 0; k < e.length; k++)
+			assertEquals(0.5 * 10.0 * Math.pow(DECAY, e.length - 1 - k),
+					TestUpdateRules.q(agent.qTable, e[k].s, e[k].move.cell()), 1e-12);
+	}
+
+	@Test
+	public void testExploratoryMoveCutsTraces() throws IllegalMoveException {
+		QLearningAgent agent = TestUpdateRules.agent();
+		Outcome[] e = episode();
+		// in s3, 5 is the greedy move, so playing 6 there explores
+		TestUpdateRules.set(agent.qTable, e[2].s, 5, 1.0);
+		run(new QLambdaRule(0.8), agent, e);
+
+		// the move into s3 still bootstraps from the best move there, but the win is not traced back past the exploratory move
+		assertEquals(0.5 * 0.9 * DECAY, TestUpdateRules.q(agent.qTable, e[0].s, 0), 1e-12);
+		assertEquals(0.5 * 0.9, TestUpdateRules.q(agent.qTable, e[1].s, 8), 1e-12);
+		assertEquals(0.5 * 10.0 * DECAY, TestUpdateRules.q(agent.qTable, e[2].s, 6), 1e-12);
+		assertEquals(0.5 * 10.0, TestUpdateRules.q(agent.qTable, e[3].s, 7), 1e-12);
+	}
+
+	@Test
+	public void testSarsaLambdaKeepsTraces() throws IllegalMoveException {
+		QLearningAgent agent = TestUpdateRules.agent();
+		Outcome[] e = episode();
+		TestUpdateRules.set(agent.qTable, e[2].s, 5, 1.0);
+		run(new QLambdaRule(0.8, true), agent, e);
+		// SARSA(lambda) bootstraps from the move played, 0, so only the win counts, and it reaches the first move
+		assertEquals(0.5 * 10.0 * Math.pow(DECAY, 3), TestUpdateRules.q(agent.qTable, e[0].s, 0), 1e-12);
+	}
+
+}
@@ -0,0 +1,51 @@
+package ticTacToe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * The policy the build precomputes, and what happens without it. In the package, since {@link ResourcePolicy#load} is not
+ * public.
+ */
+public class TestResourcePolicy {
+
+	/**
+	 * @return the policy of value iteration, solved now rather than read from a cache
+	 */
+	static ArrayPolicy solved() {
+		PolicyCache.setDefault(null);
+		return new ArrayPolicy(new ValueIterationAgent().getPolicy());
+	}
+
+	@Test
+	public void testPackagedPolicyIsOptimal() {
+		// written to the class output directory by the build, before the tests run
+		assertTrue(ResourcePolicy.isAvailable());
+		PolicyFile f = ResourcePolicy.load(ResourcePolicy.RESOURCE);
+		assertNotNull(f);
+		ArrayPolicy solved = solved();
+		assertEquals(0.0, solved.disagreement(f.getPolicy()), 0.0);
+
+		ResourcePolicy resource = new ResourcePolicy();
+		StateIndex states = StateIndex.xStates();
+		for (int id = 0; id < states.size(); id++) {
+			Game g = states.game(id);
+			if (!g.isTerminal())
+				assertEquals(solved.getMove(g).cell(), resource.getMove(g).cell());
+		}
+		assertEquals(0.0, solved.disagreement(new ArrayPolicy(ResourcePolicy.agent().getPolicy())), 0.0);
+	}
+
+	@Test
+	public void testMissingResource() {
+		assertNull(ResourcePolicy.load("missing.pol"));
+		// the agent then solves the MDP itself
+		ValueIterationAgent agent = ResourcePolicy.agent(null);
+		assertEquals(0.0, solved().disagreement(new ArrayPolicy(agent.getPolicy())), 0.0);
+	}
+
+}
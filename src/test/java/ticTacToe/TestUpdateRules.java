@@ -0,0 +1,165 @@
+package ticTacToe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * One backup of each rule on hand-built transitions. In the package, since {@link UpdateRule#update} is not public.
+ */
+public class TestUpdateRules {
+
+	/**
+	 * @return the game after the given moves, X moving first
+	 */
+	static Game play(int... cells) throws IllegalMoveException {
+		Game g = new Game(new Agent(), new Agent());
+		char who = 'X';
+		for (int c : cells) {
+			g.executeMove(Move.of(who, c));
+			who = (who == 'X') ? 'O' : 'X';
+		}
+		return g;
+	}
+
+	static QLearningAgent agent() {
+		QLearningAgent agent = new QLearningAgent(new TTTEnvironment(), 0.5, 0, 0.9);
+		agent.setMetrics(null);
+		return agent;
+	}
+
+	static double q(QTable table, Game g, int cell) {
+		return table.getQValue(g, Move.of('X', cell));
+	}
+
+	static void set(QTable table, Game g, int cell, double v) {
+		table.addQValue(g, Move.of('X', cell), v);
+	}
+
+	/**
+	 * X plays 8 from s, O replies 2, reaching s' where X can play 1, 3, 5, 6 or 7; the move is worth 1, and in s' the moves 6
+	 * and 1 are worth 5 and 2, the others 0.
+	 */
+	static Outcome transition(QLearningAgent agent) throws IllegalMoveException {
+		Game s = play(0, 4);
+		Game sPrime = play(0, 4, 8, 2);
+		set(agent.qTable, s, 8, 1.0);
+		set(agent.qTable, sPrime, 6, 5.0);
+		set(agent.qTable, sPrime, 1, 2.0);
+		return new Outcome(s, Move.of('X', 8), -1.0, sPrime);
+	}
+
+	@Test
+	public void testQLearning() throws IllegalMoveException {
+		QLearningAgent agent = agent();
+		Outcome o = transition(agent);
+		// towards -1 + 0.9 * 5
+		assertEquals(2.5, new QLearningRule().update(agent, o, Move.of('X', 1)), 1e-12);
+		assertEquals(1.0 + 0.5 * 2.5, q(agent.qTable, o.s, 8), 1e-12);
+	}
+
+	@Test
+	public void testSarsa() throws IllegalMoveException {
+		QLearningAgent agent = agent();
+		Outcome o = transition(agent);
+		// towards -1 + 0.9 * Q(s', 1), the move actually played next
+		assertEquals(-0.2, new SarsaRule().update(agent, o, Move.of('X', 1)), 1e-12);
+		assertEquals(1.0 + 0.5 * -0.2, q(agent.qTable, o.s, 8), 1e-12);
+	}
+
+	@Test
+	public void testExpectedSarsa() throws IllegalMoveException {
+		QLearningAgent agent = agent();
+		agent.explorationPolicy = new EpsilonGreedyPolicy(agent.qTable, 0.5);
+		Outcome o = transition(agent);
+		// the greedy move 6 is played with probability 0.5 + 0.5 / 5, each of the other four with 0.5 / 5
+		double expected = 0.6 * 5.0 + 0.1 * 2.0;
+		double tdError = -1.0 + 0.9 * expected - 1.0;
+		assertEquals(tdError, new ExpectedSarsaRule().update(agent, o, Move.of('X', 1)), 1e-12);
+		assertEquals(1.0 + 0.5 * tdError, q(agent.qTable, o.s, 8), 1e-12);
+	}
+
+	@Test
+	public void testDoubleQUpdatesOneTable() throws IllegalMoveException {
+		QLearningAgent agent = agent();
+		agent.random = new SplittableRandom(1);
+		Outcome o = transition(agent);
+		DoubleQRule rule = new DoubleQRule();
+		rule.beginTraining(agent);
+		int updatedA = 0;
+		int updatedB = 0;
+		for (int k = 0; k < 20; k++) {
+			// A prefers 6 in s', which B values at -3; B prefers 1, which A values at 2
+			set(rule.a, o.s, 8, 1.0);
+			set(rule.b, o.s, 8, 1.0);
+			set(rule.a, o.sPrime, 6, 5.0);
+			set(rule.a, o.sPrime, 1, 2.0);
+			set(rule.b, o.sPrime, 6, -3.0);
+			set(rule.b, o.sPrime, 1, 7.0);
+			double tdError = rule.update(agent, o, null);
+			double a = q(rule.a, o.s, 8);
+			double b = q(rule.b, o.s, 8);
+			if (a != 1.0) {
+				assertEquals(-1.0 + 0.9 * -3.0 - 1.0, tdError, 1e-12);
+				assertEquals(1.0 + 0.5 * tdError, a, 1e-12);
+				assertEquals(1.0, b, 0.0);
+				updatedA++;
+			} else {
+				assertEquals(-1.0 + 0.9 * 2.0 - 1.0, tdError, 1e-12);
+				assertEquals(1.0 + 0.5 * tdError, b, 1e-12);
+				updatedB++;
+			}
+			assertEquals((a + b) / 2, q(agent.qTable, o.s, 8), 1e-12);
+		}
+		assertTrue(updatedA > 0 && updatedB > 0);
+	}
+
+	/**
+	 * A won episode of four moves by X: three that cost 1 each, then a win worth 10.
+	 */
+	static Outcome[] episode() throws IllegalMoveException {
+		Game s1 = play();
+		Game s2 = play(0, 4);
+		Game s3 = play(0, 4, 8, 2);
+		Game s4 = play(0, 4, 8, 2, 6, 3);
+		Game end = play(0, 4, 8, 2, 6, 3, 7);
+		assertEquals(Game.X_WON, end.getState());
+		return new Outcome[] { new Outcome(s1, Move.of('X', 0), -1.0, s2), new Outcome(s2, Move.of('X', 8), -1.0, s3),
+				new Outcome(s3, Move.of('X', 6), -1.0, s4), new Outcome(s4, Move.of('X', 7), 10.0, end) };
+	}
+
+	@Test
+	public void testNStep() throws IllegalMoveException {
+		QLearningAgent agent = agent();
+		Outcome[] e = episode();
+		NStepRule rule = new NStepRule(3, false);
+
+		// nothing is written before 3 moves have been played
+		assertTrue(Double.isNaN(rule.update(agent, e[0], e[1].move)));
+		assertTrue(Double.isNaN(rule.update(agent, e[1], e[2].move)));
+		assertEquals(0.0, q(agent.qTable, e[0].s, 0), 0.0);
+
+		// then the first move gets the 3-step return, bootstrapping from max Q(s4) = 0
+		rule.update(agent, e[2], e[3].move);
+		assertEquals(0.5 * (-1.0 - 0.9 - 0.81), q(agent.qTable, e[0].s, 0), 1e-12);
+		assertEquals(0.0, q(agent.qTable, e[1].s, 8), 0.0);
+
+		// and at the end of the episode the remaining moves get their truncated returns
+		assertEquals(10.0, rule.update(agent, e[3], null), 1e-12);
+		assertEquals(0.5 * (-1.0 - 0.9 + 0.81 * 10.0), q(agent.qTable, e[1].s, 8), 1e-12);
+		assertEquals(0.5 * (-1.0 + 0.9 * 10.0), q(agent.qTable, e[2].s, 6), 1e-12);
+		assertEquals(0.5 * 10.0, q(agent.qTable, e[3].s, 7), 1e-12);
+		assertTrue(Double.isNaN(rule.update(agent, e[0], e[1].move)));
+	}
+
+	@Test
+	public void testStepsToScore() {
+		// any policy scores at least 0, so the first chunk reaches it
+		long steps = UpdateRule.stepsToScore(new SarsaRule(), 0.0, 50, 100, new SplittableRandom(1));
+		assertTrue(steps >= 50 * 3 && steps <= 50 * 5);
+	}
+
+}